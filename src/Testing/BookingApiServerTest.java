@@ -0,0 +1,84 @@
+package Testing;
+
+import bcu.cmp5332.bookingsystem.api.BookingApiServer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link BookingApiServer}.
+ * <p>
+ * The server is started on a free loopback port against an in-memory
+ * system. Only read-only and rejected requests are sent, so nothing is
+ * written to the data files.
+ * </p>
+ *
+ * @author Ashok
+ */
+public class BookingApiServerTest {
+
+    /**
+     * Tests that flights and customers are served as JSON and that unknown
+     * resources, wrong methods and malformed bodies get error responses.
+     */
+    @Test
+    public void testServesJsonAndRejectsBadRequests() throws Exception {
+        FlightBookingSystem system = new FlightBookingSystem();
+        Flight flight = system.addFlight("AB1", "Test Air", "Kathmandu", "Pokhara",
+                LocalDate.now().plusDays(3), LocalTime.NOON, LocalTime.of(13, 0),
+                LocalDate.now().plusDays(3), false);
+        system.addCustomer("Jane \"JD\" Doe", "0123456789");
+
+        BookingApiServer server = new BookingApiServer(system,
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        try {
+            String base = "http://localhost:" + server.getPort() + "/api";
+            HttpClient client = HttpClient.newHttpClient();
+
+            HttpResponse<String> response = get(client, base + "/flights/" + flight.getId());
+            assertEquals(200, response.statusCode());
+            assertTrue(response.body().startsWith("{\"id\":" + flight.getId() + ",\"flightNumber\":\"AB1\""));
+            assertTrue(response.body().contains("\"ECONOMY\":{\"capacity\":60,\"available\":60"));
+
+            response = get(client, base + "/flights?origin=kathmandu&from=" + LocalDate.now());
+            assertEquals(200, response.statusCode());
+            assertTrue(response.body().startsWith("[{\"id\":" + flight.getId()));
+            assertEquals("[]", get(client, base + "/flights?destination=Delhi").body());
+
+            response = get(client, base + "/customers?q=jane");
+            assertTrue(response.body().contains("\"name\":\"Jane \\\"JD\\\" Doe\""));
+
+            assertEquals(404, get(client, base + "/flights/99").statusCode());
+            assertEquals("{\"error\":\"Flight with ID 99 not found.\"}", get(client, base + "/flights/99").body());
+            assertEquals(400, get(client, base + "/customers/abc").statusCode());
+            assertEquals(404, get(client, base + "/bookings/1/refund").statusCode());
+
+            HttpResponse<String> rejected = client.send(HttpRequest.newBuilder(URI.create(base + "/bookings"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"customerId\": 1,")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(400, rejected.statusCode());
+            rejected = client.send(HttpRequest.newBuilder(URI.create(base + "/flights"))
+                    .DELETE().build(), HttpResponse.BodyHandlers.ofString());
+            assertEquals(405, rejected.statusCode());
+            assertTrue(system.getAllBookings().isEmpty());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static HttpResponse<String> get(HttpClient client, String uri) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(uri)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
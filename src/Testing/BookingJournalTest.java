@@ -0,0 +1,82 @@
+package Testing;
+
+import bcu.cmp5332.bookingsystem.data.BookingJournal;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link BookingJournal}.
+ * <p>
+ * The journal is backed by a temporary file, so the application's data
+ * files are not touched.
+ * </p>
+ *
+ * @author Ashok
+ */
+public class BookingJournalTest {
+
+    /**
+     * Tests that a line torn by a crash is cut off before the next append,
+     * so the appended event starts on a line of its own and the earlier
+     * complete events are kept.
+     */
+    @Test
+    public void testTornTailIsDroppedBeforeAppend() throws Exception {
+        Path file = Files.createTempFile("bookings", ".journal");
+        try {
+            String complete = "REMOVE::3";
+            Files.write(file, (complete + "\nEDIT::7::8::2::2025-05-10::ECON").getBytes(StandardCharsets.UTF_8));
+
+            Flight flight = new Flight(2, "AB1", "Test Air", "Kathmandu", "Pokhara",
+                    LocalDate.now().plusDays(3), LocalTime.NOON, LocalTime.of(13, 0),
+                    LocalDate.now().plusDays(3), false);
+            Booking booking = new Booking(new Customer(8, "Journal", "0000000000"), flight, LocalDate.now(),
+                    Booking.SeatClass.ECONOMY, 100.0, "1A", 0, false, "None", 0);
+            booking.setBookingId(27);
+
+            BookingJournal journal = new BookingJournal(file);
+            journal.append(BookingJournal.Event.CREATE, booking);
+
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            assertEquals(2, lines.size());
+            assertEquals(complete, lines.get(0));
+            assertTrue(lines.get(1).startsWith("CREATE::27::8::2::"));
+            assertEquals(2, journal.size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Tests that the journal counts only complete lines, and keeps the count
+     * as events are appended instead of reading the file again.
+     */
+    @Test
+    public void testSizeCountsCompleteLinesAndAppends() throws Exception {
+        Path file = Files.createTempFile("bookings", ".journal");
+        try {
+            Files.write(file, "REMOVE::3\nREMOVE::4\nREMOVE::".getBytes(StandardCharsets.UTF_8));
+
+            BookingJournal journal = new BookingJournal(file);
+            assertEquals(2, journal.size());
+
+            journal.appendRemoval(5);
+            journal.appendRemoval(6);
+            assertEquals(4, journal.size());
+            assertEquals(4, Files.readAllLines(file, StandardCharsets.UTF_8).size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -204,6 +204,31 @@ public class CustomerTest {
 
         assertTrue(customer.hasBooking(flight));
     }
+    /**
+     * Tests the per-flight booking lookups, including ignoring cancelled
+     * bookings when looking for one that can be cancelled.
+     *
+     * @throws FlightBookingSystemException if booking operations fail
+     */
+    @Test
+    public void testBookingLookupByFlight() throws FlightBookingSystemException {
+        Booking booking = new Booking(customer, flight, LocalDate.now(), SeatClass.ECONOMY,
+                100.0, "2B", 0.0, false, null, 0.0);
+
+        assertNull(customer.getBookingForFlight(flight.getId()));
+        customer.addBooking(booking);
+
+        assertEquals(booking, customer.getBookingForFlight(flight.getId()));
+        assertEquals(booking, customer.getActiveBookingForFlight(flight.getId()));
+
+        booking.setStatus(Booking.Status.CANCELLED);
+        assertEquals(booking, customer.getBookingForFlight(flight.getId()));
+        assertNull(customer.getActiveBookingForFlight(flight.getId()));
+
+        customer.removeBooking(booking);
+        assertNull(customer.getBookingForFlight(flight.getId()));
+        assertTrue(customer.getBookings().isEmpty());
+    }
     /**
      * Tests the output of {@code getDetailsShort()} and {@code getDetailsLong()}.
      * Ensures that key customer data is correctly included in both views.
@@ -1,13 +1,31 @@
 package Testing;
 
+import bcu.cmp5332.bookingsystem.data.BookingDataManager;
+import bcu.cmp5332.bookingsystem.data.BookingJournal;
+import bcu.cmp5332.bookingsystem.data.DataFiles;
+import bcu.cmp5332.bookingsystem.data.DataManager;
+import bcu.cmp5332.bookingsystem.data.FlightBookingSystemData;
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 import bcu.cmp5332.bookingsystem.model.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -116,4 +134,444 @@ public class FlightBookingSystemTest {
         assertTrue(discountedBooking.getDiscountPercent() >= 15.0); // age + disability
         assertEquals("Cat", discountedBooking.getPetType());
     }
+
+    @Test
+    public void testChangeTracking() {
+        assertTrue(system.hasUnsavedCustomerChanges());
+        assertTrue(system.hasUnsavedFlightChanges());
+        assertEquals(1, system.getUnsavedBookings().size());
+
+        system.markCustomersSaved();
+        system.markFlightsSaved();
+        system.markBookingsSaved();
+        assertFalse(system.hasUnsavedCustomerChanges());
+        assertFalse(system.hasUnsavedFlightChanges());
+        assertTrue(system.getUnsavedBookings().isEmpty());
+
+        customer.setPhone("0123456789");
+        booking.setSeatNumber("11B");
+        assertTrue(system.hasUnsavedCustomerChanges());
+        assertFalse(system.hasUnsavedFlightChanges());
+        assertEquals(List.of(booking), system.getUnsavedBookings());
+
+        customer.removeBooking(booking);
+        assertEquals(List.of(1), system.getRemovedBookingIds());
+
+        system.removeFlight(flight);
+        assertTrue(system.hasUnsavedFlightChanges());
+    }
+
+    @Test
+    public void testChangeLogHoldsOnlyUnsavedChanges() throws FlightBookingSystemException {
+        system.markCustomersSaved();
+        system.markFlightsSaved();
+        system.markBookingsSaved();
+        assertFalse(system.hasUnsavedBookingChanges());
+
+        flight.setAirlineName("Other Air");
+        assertTrue(system.hasUnsavedFlightChanges());
+        system.markFlightsSaved();
+        assertFalse(flight.isDirty());
+        assertFalse(system.hasUnsavedFlightChanges());
+
+        // A booking removed before it was ever saved leaves nothing to remove
+        Customer other = system.addCustomer("Other", "0123456789");
+        Booking added = system.bookFlight(other.getId(), flight.getId(), LocalDate.now(),
+                Booking.SeatClass.ECONOMY, null, 0.0);
+        assertEquals(List.of(added), system.getUnsavedBookings());
+        system.removeBooking(added);
+        assertFalse(system.hasUnsavedBookingChanges());
+
+        booking.setPrice(250.0);
+        system.markBookingSaved(booking);
+        assertFalse(booking.isDirty());
+        assertFalse(system.hasUnsavedBookingChanges());
+        system.removeBooking(booking);
+        assertEquals(List.of(1), system.getRemovedBookingIds());
+    }
+
+    @Test
+    public void testBookingIndexes() throws FlightBookingSystemException {
+        assertEquals(List.of(booking), system.getBookingsForCustomer(1));
+        assertEquals(List.of(booking), system.getBookingsForFlight(101));
+        assertEquals(List.of(booking), system.getBookingsByStatus(Booking.Status.ACTIVE));
+        assertEquals(List.of(booking), system.getBookingsDepartingBetween(
+                flight.getDepartureDate(), flight.getDepartureDate()));
+
+        booking.completeBooking();
+        assertTrue(system.getBookingsByStatus(Booking.Status.ACTIVE).isEmpty());
+        assertEquals(List.of(booking), system.getBookingsByStatus(Booking.Status.COMPLETED));
+
+        flight.setDepartureDate(flight.getDepartureDate().plusDays(1));
+        assertTrue(system.getBookingsDepartingBetween(null, LocalDate.now().plusDays(10)).isEmpty());
+        assertEquals(List.of(booking), system.getBookingsDepartingBetween(LocalDate.now().plusDays(11), null));
+    }
+
+    @Test
+    public void testRemovedBookingsLeaveIndexes() throws FlightBookingSystemException {
+        system.removeFlight(flight);
+        assertTrue(system.getAllBookings().isEmpty());
+        assertTrue(customer.getBookings().isEmpty());
+        assertTrue(system.getBookingsForCustomer(1).isEmpty());
+        assertThrows(FlightBookingSystemException.class, () -> system.findBookingById(1));
+    }
+
+    @Test
+    public void testRemoveCustomerCascadesToBookings() throws FlightBookingSystemException {
+        system.markBookingsSaved();
+        int available = flight.getAvailableSeatsForClass(booking.getSeatClass());
+
+        system.removeCustomer(customer);
+        assertTrue(system.getAllBookings().isEmpty());
+        assertTrue(flight.getBookings().isEmpty());
+        assertEquals(available + 1, flight.getAvailableSeatsForClass(booking.getSeatClass()));
+        assertEquals(List.of(1), system.getRemovedBookingIds());
+
+        system.markBookingRemovalSaved(1);
+        assertTrue(system.getRemovedBookingIds().isEmpty());
+    }
+
+    @Test
+    public void testSearchCustomers() {
+        assertEquals(List.of(customer), system.searchCustomers("te", 10));
+        assertEquals(List.of(customer), system.searchCustomers("USER", 10));
+        assertEquals(List.of(customer), system.searchCustomers("p1234567", 10));
+        assertEquals(List.of(customer), system.searchCustomers("Test@User.com", 10));
+        assertEquals(List.of(customer), system.searchCustomers("000 000 0000", 10));
+        assertTrue(system.searchCustomers("user x", 10).isEmpty());
+
+        customer.setName("Jane Doe");
+        customer.setPassportNumber("Q7654321");
+        assertTrue(system.searchCustomers("test", 10).isEmpty());
+        assertEquals(List.of(customer), system.searchCustomers("do", 10));
+        assertNull(system.getCustomerByPassportNumber("P1234567"));
+        assertEquals(customer, system.getCustomerByPassportNumber("q7654321"));
+
+        system.removeCustomer(customer);
+        assertTrue(system.searchCustomers("jane", 10).isEmpty());
+    }
+
+    @Test
+    public void testArchiveSettledBookings() throws FlightBookingSystemException {
+        booking.completeBooking();
+        system.markBookingsSaved();
+        assertEquals(0, system.archiveSettledBookings(LocalDate.now()));
+
+        int archived = system.archiveSettledBookings(flight.getDepartureDate().plusDays(1));
+        assertEquals(1, archived);
+        assertEquals(1, system.getArchivedBookingCount());
+        assertTrue(customer.getBookings().isEmpty());
+        assertTrue(system.getUnsavedBookings().isEmpty());
+        assertTrue(system.getRemovedBookingIds().isEmpty());
+
+        Booking copy = system.getBookingsForCustomer(1).get(0);
+        assertNotSame(booking, copy);
+        assertEquals(1, copy.getBookingId());
+        assertEquals("10A", copy.getSeatNumber());
+        assertEquals(Booking.Status.COMPLETED, copy.getStatus());
+        assertEquals(1, system.getAllBookings().size());
+        assertEquals(1, system.getAllBookings().get(0).getBookingId());
+        assertEquals(1, system.getBookingsDepartingBetween(flight.getDepartureDate(), null).size());
+
+        Booking restored = system.findBookingById(1);
+        assertEquals(0, system.getArchivedBookingCount());
+        assertEquals(List.of(restored), customer.getBookings());
+        assertEquals(List.of(restored), flight.getBookings());
+        assertSame(restored, system.findBookingById(1));
+        assertFalse(flight.isSeatAvailable(Booking.SeatClass.ECONOMY, "10A"));
+        assertTrue(system.getUnsavedBookings().isEmpty());
+
+        system.archiveSettledBookings(flight.getDepartureDate().plusDays(1));
+        system.removeFlight(flight);
+        assertEquals(0, system.getArchivedBookingCount());
+        assertEquals(List.of(1), system.getRemovedBookingIds());
+    }
+
+    @Test
+    public void testConcurrentBookingsNeverOverbook() throws Exception {
+        int capacity = 40;
+        int threads = 8;
+        int perThread = 25;
+        flight.setCapacityForClass(Booking.SeatClass.BUSINESS, capacity);
+        for (int i = 0; i < threads * perThread; i++) {
+            system.addCustomer("Agent Customer " + i, "07" + i);
+        }
+        List<Customer> all = system.getAllCustomers();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger booked = new AtomicInteger();
+        List<Future<?>> agents = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = 1 + t * perThread;  // skip the customer from setup
+            agents.add(pool.submit(() -> {
+                start.await();
+                for (Customer c : all.subList(first, first + perThread)) {
+                    try {
+                        system.bookFlight(c.getId(), flight.getId(), LocalDate.now(),
+                                Booking.SeatClass.BUSINESS, null, 0.0);
+                        booked.incrementAndGet();
+                    } catch (FlightBookingSystemException full) {
+                        // expected once the cabin is full
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> agent : agents) {
+            agent.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        List<Booking> business = system.getBookingsForFlight(flight.getId());
+        business.removeIf(b -> b.getSeatClass() != Booking.SeatClass.BUSINESS);
+        assertEquals(capacity, booked.get());
+        assertEquals(capacity, business.size());
+        assertEquals(0, flight.getAvailableSeatsForClass(Booking.SeatClass.BUSINESS));
+        assertEquals(capacity, business.stream().mapToInt(Booking::getBookingId).distinct().count());
+    }
+
+    /**
+     * Tests that when several agents cancel the same seatless booking at
+     * once, exactly one succeeds and its place is given back exactly once,
+     * even if the booking is removed from the flight again afterwards.
+     */
+    @Test
+    public void testConcurrentCancelsFreeThePlaceOnce() throws Exception {
+        int threads = 4;
+        // Another seatless booking, whose place must not be given back by mistake
+        Customer bystander = system.addCustomer("Bystander", "0733333333");
+        system.bookFlight(bystander.getId(), flight.getId(), LocalDate.now(), Booking.SeatClass.ECONOMY, null, 0.0);
+        int available = flight.getAvailableSeatsForClass(Booking.SeatClass.ECONOMY);
+        Customer agentCustomer = system.addCustomer("Cancel Customer", "0722222222");
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 20; round++) {
+                Booking seatless = system.bookFlight(agentCustomer.getId(), flight.getId(), LocalDate.now(),
+                        Booking.SeatClass.ECONOMY, null, 0.0);
+                assertEquals(available - 1, flight.getAvailableSeatsForClass(Booking.SeatClass.ECONOMY));
+
+                CountDownLatch start = new CountDownLatch(1);
+                AtomicInteger cancelled = new AtomicInteger();
+                List<Future<?>> agents = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    agents.add(pool.submit(() -> {
+                        start.await();
+                        try {
+                            system.cancelBooking(seatless.getBookingId());
+                            cancelled.incrementAndGet();
+                        } catch (FlightBookingSystemException alreadyCancelled) {
+                            // expected for all but one agent
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> agent : agents) {
+                    agent.get(30, TimeUnit.SECONDS);
+                }
+                flight.removeBooking(seatless);
+                flight.removeBooking(seatless);
+
+                assertEquals(1, cancelled.get());
+                assertEquals(Booking.Status.CANCELLED, seatless.getStatus());
+                assertEquals(available, flight.getAvailableSeatsForClass(Booking.SeatClass.ECONOMY));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Tests that a booking cannot be cancelled while a consistent read of
+     * the system, such as preparing a save, is running.
+     */
+    @Test
+    public void testConsistentReadHoldsOffCancellation() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> cancel = system.readConsistently(() -> {
+                Future<?> pending = pool.submit(() -> {
+                    system.cancelBooking(booking.getBookingId());
+                    return null;
+                });
+                Thread.sleep(100);
+                assertFalse(pending.isDone());
+                assertEquals(Booking.Status.ACTIVE, booking.getStatus());
+                return pending;
+            });
+            cancel.get(30, TimeUnit.SECONDS);
+            assertEquals(Booking.Status.CANCELLED, booking.getStatus());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testIdsAreUniqueAcrossThreadsAndLoadedData() throws Exception {
+        IdAllocator ids = system.getIdAllocator();
+        assertEquals(2, system.getNextCustomerId());
+        assertEquals(102, system.getNextFlightId());
+
+        int threads = 4;
+        int perThread = 100;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<List<Integer>>> agents = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            agents.add(pool.submit(() -> {
+                List<Integer> taken = new ArrayList<>();
+                for (int i = 0; i < perThread; i++) {
+                    taken.add(ids.next(IdAllocator.Kind.BOOKING));
+                }
+                return taken;
+            }));
+        }
+        List<Integer> all = new ArrayList<>();
+        for (Future<List<Integer>> agent : agents) {
+            all.addAll(agent.get(30, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+        assertEquals(threads * perThread, all.stream().distinct().count());
+        assertTrue(all.stream().allMatch(id -> id > 1));  // booking 1 is loaded in setup
+
+        ids.restore(IdAllocator.Kind.CUSTOMER, 500);
+        assertTrue(ids.hasUnsavedChanges());
+        Customer added = system.addCustomer("New User", "0111111111");
+        assertTrue(added.getId() >= 500);
+
+        Booking placed = system.bookFlight(added.getId(), flight.getId(), LocalDate.now(),
+                Booking.SeatClass.ECONOMY, null, 0.0);
+        assertFalse(all.contains(placed.getBookingId()));
+        assertSame(placed, system.findBookingById(placed.getBookingId()));
+    }
+
+    /**
+     * Tests that bookings without a seat number keep their places through a
+     * store and reload, both from the journal and from a compacted bookings
+     * file. The data files are kept in a temporary directory.
+     */
+    @Test
+    public void testSeatlessBookingsSurviveStoreAndReload(@TempDir Path data) throws Exception {
+        DataFiles files = emptyDataFiles(data);
+        FlightBookingSystem loaded = FlightBookingSystemData.load(files);
+        Flight target = loaded.addFlight("SL1", "Test Air", "Kathmandu", "Pokhara",
+                LocalDate.now().plusDays(3), LocalTime.NOON, LocalTime.of(13, 0),
+                LocalDate.now().plusDays(3), false);
+        for (int i = 0; i < 4; i++) {
+            Customer passenger = loaded.addCustomer("Seatless " + i, "0123456789", 30, "Address", "Nepal",
+                    "P000000" + i, LocalDate.of(2035, 1, 1), false, "seatless@example.com",
+                    LocalDate.of(1995, 1, 1), "Other");
+            loaded.bookFlight(passenger.getId(), target.getId(), LocalDate.now(),
+                    Booking.SeatClass.ECONOMY, null, 0.0);
+        }
+        assertEquals(56, target.getAvailableSeatsForClass(Booking.SeatClass.ECONOMY));
+        FlightBookingSystemData.store(loaded, files);
+
+        FlightBookingSystem reloaded = FlightBookingSystemData.load(files);
+        Flight stored = reloaded.getFlightById(target.getId());
+        assertEquals(56, stored.getAvailableSeatsForClass(Booking.SeatClass.ECONOMY));
+        assertTrue(stored.isSeatAvailable(Booking.SeatClass.ECONOMY, "null"));
+
+        files.getJournal().compact(reloaded);
+        String bookings = new String(Files.readAllBytes(data.resolve("bookings.txt")), StandardCharsets.UTF_8);
+        assertFalse(bookings.isEmpty());
+        assertFalse(bookings.contains("::null::"));
+        reloaded = FlightBookingSystemData.load(files);
+        assertEquals(56, reloaded.getFlightById(target.getId()).getAvailableSeatsForClass(Booking.SeatClass.ECONOMY));
+    }
+
+    /**
+     * Tests that a compaction prepared under the system's lock only renders
+     * the snapshot, and that writing it later keeps the journal events
+     * queued after it was rendered.
+     */
+    @Test
+    public void testCompactionIsWrittenAfterItIsPrepared(@TempDir Path data) throws Exception {
+        DataFiles files = emptyDataFiles(data);
+        FlightBookingSystem initial = FlightBookingSystemData.load(files);
+        Flight target = initial.addFlight("CP1", "Test Air", "Kathmandu", "Pokhara",
+                LocalDate.now().plusDays(3), LocalTime.NOON, LocalTime.of(13, 0),
+                LocalDate.now().plusDays(3), false);
+        for (int i = 0; i < 2; i++) {
+            Customer passenger = initial.addCustomer("Compaction " + i, "0123456789", 30, "Address", "Nepal",
+                    "C000000" + i, LocalDate.of(2035, 1, 1), false, "compaction@example.com",
+                    LocalDate.of(1995, 1, 1), "Other");
+            initial.bookFlight(passenger.getId(), target.getId(), LocalDate.now(),
+                    Booking.SeatClass.ECONOMY, null, 0.0);
+        }
+        FlightBookingSystemData.store(initial, files);
+
+        StringBuilder events = new StringBuilder();
+        for (int i = 0; i < BookingJournal.COMPACT_THRESHOLD; i++) {
+            events.append("REMOVE::999999\n");
+        }
+        Files.write(data.resolve("bookings.journal"), events.toString().getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        FlightBookingSystem loaded = FlightBookingSystemData.load(files);
+        List<Booking> bookings = loaded.getAllBookings();
+        Booking edited = bookings.get(0);
+        Booking later = bookings.get(1);
+        edited.setPrice(123.0);
+
+        byte[] before = Files.readAllBytes(data.resolve("bookings.txt"));
+        DataManager.PendingWrite write = loaded.readConsistently(() -> new BookingDataManager(files).prepareChanges(loaded));
+        assertArrayEquals(before, Files.readAllBytes(data.resolve("bookings.txt")));
+
+        later.setPrice(456.0);
+        files.getJournal().append(BookingJournal.Event.EDIT, later);
+        write.write();
+        assertEquals(1, files.getJournal().size());
+
+        FlightBookingSystem reloaded = FlightBookingSystemData.load(files);
+        assertEquals(123.0, reloaded.findBookingById(edited.getBookingId()).getPrice());
+        assertEquals(456.0, reloaded.findBookingById(later.getBookingId()).getPrice());
+    }
+
+    // Data files of an empty system in the given directory
+    private static DataFiles emptyDataFiles(Path directory) throws IOException {
+        for (String name : new String[] {"flights.txt", "customers.txt", "bookings.txt"}) {
+            Files.createFile(directory.resolve(name));
+        }
+        return new DataFiles(directory);
+    }
+
+    @Test
+    public void testFindFlightsByRouteAndDate() {
+        LocalDate departure = flight.getDepartureDate();
+        assertEquals(List.of(flight), system.findFlights(" citya ", "CITYB", departure));
+        assertEquals(List.of(flight), system.findFlights(null, "cityb", null));
+        assertTrue(system.findFlights("CityA", "CityB", departure.plusDays(1)).isEmpty());
+        assertEquals(List.of(flight), system.findFlights("CityA", null, departure.minusDays(1), departure.plusDays(1)));
+
+        flight.setDestination("CityC");
+        flight.setDepartureDate(departure.plusDays(2));
+        assertTrue(system.findFlights("CityA", "CityB", null).isEmpty());
+        assertEquals(List.of(flight), system.findFlights("CityA", "CityC", departure.plusDays(2)));
+
+        system.removeFlight(flight);
+        assertTrue(system.findFlights(null, null, null).isEmpty());
+    }
+
+    @Test
+    public void testUpcomingFlightsInDepartureOrder() {
+        Flight later = new Flight(102, "XY124", "TestAirline", "CityA", "CityB",
+                flight.getDepartureDate(), LocalTime.of(18, 0), LocalTime.of(20, 0),
+                flight.getDepartureDate(), false);
+        Flight departed = new Flight(103, "XY125", "TestAirline", "CityA", "CityB",
+                LocalDate.now().minusDays(1), LocalTime.of(9, 0), LocalTime.of(11, 0),
+                LocalDate.now().minusDays(1), false);
+        system.addFlight(later);
+        system.addFlight(departed);
+
+        assertEquals(List.of(flight, later), List.copyOf(system.getUpcomingFlights()));
+        assertEquals(List.of(later), system.getUpcomingFlights(1, 10));
+
+        later.setDepartureTime(LocalTime.of(6, 0));
+        assertEquals(List.of(later, flight), List.copyOf(system.getUpcomingFlights()));
+
+        departed.setDepartureDate(LocalDate.now().plusDays(1));
+        assertEquals(departed, system.getUpcomingFlights().iterator().next());
+    }
 }
@@ -1,11 +1,17 @@
 package Testing;
 
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
 import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.SeatHold;
+import bcu.cmp5332.bookingsystem.model.SeatInventory;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.Locale;
 
 import static org.junit.jupiter.api.Assertions.*;
 /**
@@ -93,6 +99,114 @@ public class FlightTest {
         assertEquals(15, flight.getAvailableSeatsForClass(Booking.SeatClass.FIRST));
         assertEquals(100, flight.getAvailableSeats());
     }
+    /**
+     * Tests that reserving and releasing seats updates the seat counts,
+     * the next free seat and the seat's availability, and that removing a
+     * booking twice gives its seat back only once.
+     */
+    @Test
+    public void testReserveAndReleaseSeats() throws FlightBookingSystemException {
+        Flight flight = createSampleFlight();
+
+        assertEquals("1A", flight.getNextFreeSeat(Booking.SeatClass.ECONOMY));
+        Booking first = new Booking(new Customer(1, "First", "0000000000"), flight, LocalDate.now(),
+                Booking.SeatClass.ECONOMY, 100.0, "1A", 0, false, "None", 0);
+        flight.bookSeat(first);
+        flight.reserveSeat(Booking.SeatClass.ECONOMY, "1B");
+        assertFalse(flight.isSeatAvailable(Booking.SeatClass.ECONOMY, "1a"));
+        assertTrue(flight.isSeatAvailable(Booking.SeatClass.BUSINESS, "1A"));
+        assertEquals(58, flight.getAvailableSeatsForClass(Booking.SeatClass.ECONOMY));
+        assertEquals("1C", flight.getNextFreeSeat(Booking.SeatClass.ECONOMY));
+
+        flight.removeBooking(first);
+        assertTrue(flight.isSeatAvailable(Booking.SeatClass.ECONOMY, "1A"));
+        assertEquals(59, flight.getAvailableSeatsForClass(Booking.SeatClass.ECONOMY));
+        assertEquals("1A", flight.getNextFreeSeat(Booking.SeatClass.ECONOMY));
+
+        flight.removeBooking(first);
+        assertEquals(59, flight.getAvailableSeatsForClass(Booking.SeatClass.ECONOMY));
+    }
+    /**
+     * Tests that {@link SeatInventory#tryReserve(String)} takes a place and
+     * a seat together, refuses a taken seat or a full cabin without using up
+     * a place, and that a seat cut off by a smaller cabin can still be
+     * released.
+     */
+    @Test
+    public void testTryReserveTakesPlaceAndSeatTogether() {
+        SeatInventory cabin = SeatInventory.forClass(Booking.SeatClass.BUSINESS, 2);
+
+        assertTrue(cabin.tryReserve("1A"));
+        assertFalse(cabin.tryReserve("1a"));
+        assertEquals(1, cabin.getAvailable());
+        assertTrue(cabin.tryReserve(null));
+        assertFalse(cabin.tryReserve("1B"));
+        assertTrue(cabin.isFree("1B"));
+        assertEquals(0, cabin.getAvailable());
+
+        cabin.setCapacity(0);
+        assertFalse(cabin.isFree("1A"));
+        assertEquals(2, cabin.getBooked());
+        assertTrue(cabin.release("1A"));
+        cabin.removeUnseated();
+        assertEquals(0, cabin.getBooked());
+    }
+    /**
+     * Tests that seat numbers outside the layout are matched ignoring case
+     * whatever the default locale, e.g. {@code "9i"} and {@code "9I"} under
+     * a Turkish one.
+     */
+    @Test
+    public void testUnmappedSeatsIgnoreCaseInAnyLocale() {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            SeatInventory cabin = SeatInventory.forClass(Booking.SeatClass.BUSINESS, 2);
+            assertTrue(cabin.reserve("9i"));
+            assertFalse(cabin.isFree("9I"));
+            assertTrue(cabin.release("9I"));
+            assertTrue(cabin.isFree("9i"));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+    /**
+     * Tests that a held seat cannot be booked or held by anyone else, that
+     * confirming a hold books the seat without taking it twice, and that a
+     * released or expired hold gives the seat back.
+     */
+    @Test
+    public void testSeatHoldsAreConfirmedReleasedOrExpired() throws Exception {
+        Flight flight = createSampleFlight();
+        Booking.SeatClass economy = Booking.SeatClass.ECONOMY;
+
+        SeatHold hold = flight.holdSeat(economy, "1A", Duration.ofMinutes(5));
+        assertFalse(flight.isSeatAvailable(economy, "1A"));
+        assertEquals(59, flight.getAvailableSeatsForClass(economy));
+        assertThrows(FlightBookingSystemException.class,
+                () -> flight.holdSeat(economy, "1a", Duration.ofMinutes(5)));
+        assertTrue(flight.releaseHold(hold));
+        assertFalse(flight.releaseHold(hold));
+        assertEquals(SeatHold.Status.RELEASED, hold.getStatus());
+        assertTrue(flight.isSeatAvailable(economy, "1A"));
+
+        hold = flight.holdSeat(economy, "1A", Duration.ofMinutes(5));
+        Booking booking = new Booking(new Customer(1, "Held", "0000000000"), flight, LocalDate.now(),
+                economy, 100.0, "1A", 0, false, "None", 0);
+        flight.bookHeldSeat(booking, hold);
+        assertEquals(SeatHold.Status.CONFIRMED, hold.getStatus());
+        assertEquals(59, flight.getAvailableSeatsForClass(economy));
+        assertEquals(1, flight.getBookings().size());
+
+        SeatHold shortHold = flight.holdSeat(economy, "2A", Duration.ofMillis(150));
+        long deadline = System.currentTimeMillis() + 3000;
+        while (shortHold.isActive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(SeatHold.Status.EXPIRED, shortHold.getStatus());
+        assertTrue(flight.isSeatAvailable(economy, "2A"));
+        assertEquals(59, flight.getAvailableSeatsForClass(economy));
+    }
     /**
      * Tests the base and dynamic pricing for a flight seat class.
      * Ensures the dynamic price is never less than the base price.
@@ -120,6 +234,28 @@ public class FlightTest {
         assertNotNull(details);
         assertTrue(details.contains("BA123"));
     }
+
+    /**
+     * Tests that airport and airline names are interned: spellings that
+     * differ only in case or spacing share a code but keep their own text.
+     */
+    @Test
+    public void testPlaceNamesShareCodesIgnoringCase() {
+        LocalDate date = LocalDate.now().plusDays(5);
+        Flight first = new Flight(201, "QR1", "Qatar Airways", "Kathmandu", "Doha",
+            date, LocalTime.NOON, LocalTime.of(15, 0), date, true);
+        Flight second = new Flight(202, "QR2", "qatar airways", " kathmandu", "DOHA",
+            date, LocalTime.NOON, LocalTime.of(15, 0), date, true);
+
+        assertEquals(first.getOriginCode(), second.getOriginCode());
+        assertEquals(first.getDestinationCode(), second.getDestinationCode());
+        assertEquals(first.getAirlineCode(), second.getAirlineCode());
+        assertNotEquals(first.getOriginCode(), first.getDestinationCode());
+        assertEquals(" kathmandu", second.getOrigin());
+        assertSame(first.getOrigin(), new Flight(203, "QR3", "Qatar Airways", new String("Kathmandu"), "Doha",
+            date, LocalTime.NOON, LocalTime.of(15, 0), date, true).getOrigin());
+    }
+
     /**
      * Utility method to create a sample {@link Flight} instance
      * with predefined valid attributes for reuse in tests.
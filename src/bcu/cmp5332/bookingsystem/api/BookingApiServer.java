@@ -0,0 +1,482 @@
+package bcu.cmp5332.bookingsystem.api;
+
+import bcu.cmp5332.bookingsystem.data.BookingJournal;
+import bcu.cmp5332.bookingsystem.data.CancellationStore;
+import bcu.cmp5332.bookingsystem.data.PersistenceService;
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local HTTP API over a shared {@link FlightBookingSystem}, answering in JSON.
+ * <p>
+ * The server is the JDK's built-in {@link HttpServer}. Its one dispatcher
+ * thread accepts connections and parses requests; each request then runs on
+ * a thread of its own. On a JVM with virtual threads (Java 21 and later) that
+ * is a new virtual thread per request, so thousands of concurrent requests
+ * cost no more than their stacks; on older JVMs it falls back to a cached
+ * pool of platform threads. Requests run against the system directly, which
+ * is safe because its lookups and bookings are thread-safe.
+ * </p>
+ * <p>
+ * Routes:
+ * </p>
+ * <ul>
+ *   <li>{@code GET /api/flights}, optionally filtered by {@code origin},
+ *       {@code destination}, {@code from} and {@code to} (dates as YYYY-MM-DD),
+ *       and {@code GET /api/flights/{id}};</li>
+ *   <li>{@code GET /api/customers}, optionally searched with {@code q} and
+ *       {@code limit}, and {@code GET /api/customers/{id}};</li>
+ *   <li>{@code GET /api/bookings}, optionally filtered by {@code customer},
+ *       {@code flight} or {@code status}, and {@code GET /api/bookings/{id}};</li>
+ *   <li>{@code POST /api/bookings} with a body such as
+ *       {@code {"customerId": 3, "flightId": 7, "seatClass": "BUSINESS"}}
+ *       (seat class, {@code petType} and {@code petCharge} are optional);</li>
+ *   <li>{@code POST /api/bookings/{id}/cancel}.</li>
+ * </ul>
+ * <p>
+ * Bookings and cancellations are saved through the {@link PersistenceService},
+ * like those made from the console and the GUI. Errors are answered with a
+ * status code and a body such as {@code {"error": "Flight with ID 9 not found."}};
+ * unexpected failures are logged and answered with a generic message. A
+ * cancellation that could not be recorded for rebooking is still answered
+ * with the cancelled booking, carrying a {@code "warning"}.
+ * </p>
+ *
+ * @author Ashok
+ */
+public class BookingApiServer {
+
+    /** The port the server listens on when none is given. */
+    public static final int DEFAULT_PORT = 8080;
+
+    // Connections the OS may queue before the dispatcher accepts them
+    private static final int BACKLOG = 4096;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final Logger LOG = Logger.getLogger(BookingApiServer.class.getName());
+
+    private final FlightBookingSystem fbs;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    /**
+     * Creates a server bound to the given address. It does not accept
+     * requests until {@link #start()} is called.
+     *
+     * @param fbs the system to serve
+     * @param address the address to listen on; port 0 picks a free port
+     * @throws IOException if the address cannot be bound
+     */
+    public BookingApiServer(FlightBookingSystem fbs, InetSocketAddress address) throws IOException {
+        this.fbs = fbs;
+        this.server = HttpServer.create(address, BACKLOG);
+        ExecutorService perRequest = newVirtualThreadExecutor();
+        this.virtualThreads = perRequest != null;
+        this.executor = perRequest != null ? perRequest : Executors.newCachedThreadPool(platformThreads());
+        server.setExecutor(executor);
+        server.createContext("/api/flights", exchange -> handle(exchange, this::flights));
+        server.createContext("/api/customers", exchange -> handle(exchange, this::customers));
+        server.createContext("/api/bookings", exchange -> handle(exchange, this::bookings));
+    }
+
+    /** Starts accepting requests. */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for those in progress
+     * and releases the request threads.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the port the server is bound to.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns whether each request runs on a virtual thread rather than a
+     * pooled platform thread.
+     *
+     * @return true on JVMs with virtual threads
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread per task, looked up
+     * reflectively so that the code still compiles and runs on JVMs without
+     * virtual threads.
+     *
+     * @return the executor, or null if virtual threads are not available
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory platformThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, "api-request-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /** Handles one request to a route, given the path segments after the route's prefix. */
+    private interface Route {
+        Reply handle(String method, String[] path, Map<String, String> query, HttpExchange exchange)
+                throws ApiException, FlightBookingSystemException, IOException;
+    }
+
+    /** A status code and JSON body to send back. */
+    private static final class Reply {
+        private final int status;
+        private final String body;
+
+        Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /** A failed request, answered with its status code and message. */
+    private static final class ApiException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private void handle(HttpExchange exchange, Route route) throws IOException {
+        Reply reply;
+        try {
+            String context = exchange.getHttpContext().getPath();
+            String rest = exchange.getRequestURI().getPath().substring(context.length());
+            String[] path = rest.isEmpty() || rest.equals("/") ? new String[0] : rest.substring(1).split("/");
+            reply = route.handle(exchange.getRequestMethod(), path, parseQuery(exchange.getRequestURI().getRawQuery()), exchange);
+        } catch (ApiException ex) {
+            reply = error(ex.status, ex.getMessage());
+        } catch (FlightBookingSystemException ex) {
+            // Rejected by the booking rules, e.g. a full cabin or a repeated booking
+            reply = error(409, ex.getMessage());
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            reply = error(400, ex.getMessage());
+        } catch (RuntimeException ex) {
+            // The details stay in the server's log rather than going to the client
+            LOG.log(Level.SEVERE, "Failed to handle " + exchange.getRequestMethod() + " "
+                    + exchange.getRequestURI(), ex);
+            reply = error(500, "Internal error.");
+        }
+
+        byte[] body = reply.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(reply.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private Reply flights(String method, String[] path, Map<String, String> query, HttpExchange exchange)
+            throws ApiException {
+        requireMethod(method, "GET");
+        if (path.length == 1) {
+            Json.Writer json = new Json.Writer();
+            writeFlight(json, flight(parseId(path[0])));
+            return ok(json);
+        }
+        requirePathLength(path, 0);
+
+        Collection<Flight> flights;
+        if (query.containsKey("origin") || query.containsKey("destination")
+                || query.containsKey("from") || query.containsKey("to")) {
+            flights = fbs.findFlights(query.get("origin"), query.get("destination"),
+                    parseDate(query.get("from")), parseDate(query.get("to")));
+        } else {
+            flights = fbs.getAllFlights();
+        }
+        Json.Writer json = new Json.Writer().beginArray();
+        for (Flight flight : flights) {
+            writeFlight(json, flight);
+        }
+        return ok(json.endArray());
+    }
+
+    private Reply customers(String method, String[] path, Map<String, String> query, HttpExchange exchange)
+            throws ApiException {
+        requireMethod(method, "GET");
+        if (path.length == 1) {
+            Json.Writer json = new Json.Writer();
+            writeCustomer(json, customer(parseId(path[0])));
+            return ok(json);
+        }
+        requirePathLength(path, 0);
+
+        String search = query.get("q");
+        List<Customer> customers = search == null ? fbs.getAllCustomers()
+                : fbs.searchCustomers(search, query.containsKey("limit")
+                        ? parseId(query.get("limit")) : DEFAULT_SEARCH_LIMIT);
+        Json.Writer json = new Json.Writer().beginArray();
+        for (Customer customer : customers) {
+            writeCustomer(json, customer);
+        }
+        return ok(json.endArray());
+    }
+
+    private Reply bookings(String method, String[] path, Map<String, String> query, HttpExchange exchange)
+            throws ApiException, FlightBookingSystemException, IOException {
+        if (path.length == 2 && path[1].equals("cancel")) {
+            requireMethod(method, "POST");
+            return cancel(parseId(path[0]));
+        }
+        if (path.length == 1) {
+            requireMethod(method, "GET");
+            Json.Writer json = new Json.Writer();
+            writeBooking(json, booking(parseId(path[0])));
+            return ok(json);
+        }
+        requirePathLength(path, 0);
+        if (method.equals("POST")) {
+            return book(readBody(exchange));
+        }
+        requireMethod(method, "GET");
+
+        List<Booking> bookings;
+        if (query.containsKey("customer")) {
+            bookings = fbs.getBookingsForCustomer(customer(parseId(query.get("customer"))).getId());
+        } else if (query.containsKey("flight")) {
+            bookings = fbs.getBookingsForFlight(flight(parseId(query.get("flight"))).getId());
+        } else if (query.containsKey("status")) {
+            bookings = fbs.getBookingsByStatus(Booking.Status.valueOf(query.get("status").toUpperCase(Locale.ROOT)));
+        } else {
+            bookings = fbs.getAllBookings();
+        }
+        Json.Writer json = new Json.Writer().beginArray();
+        for (Booking booking : bookings) {
+            writeBooking(json, booking);
+        }
+        return ok(json.endArray());
+    }
+
+    private Reply book(String body) throws ApiException, FlightBookingSystemException {
+        Map<String, String> request = Json.parseObject(body);
+        Customer customer = customer(parseId(required(request, "customerId")));
+        Flight flight = flight(parseId(required(request, "flightId")));
+        String seatClass = request.get("seatClass");
+        String petCharge = request.get("petCharge");
+
+        Booking booking = fbs.bookFlight(customer.getId(), flight.getId(), fbs.getSystemDate(),
+                seatClass == null ? Booking.SeatClass.ECONOMY : Booking.SeatClass.valueOf(seatClass.toUpperCase(Locale.ROOT)),
+                request.get("petType"), petCharge == null ? 0.0 : Double.parseDouble(petCharge));
+        PersistenceService.getInstance().submitEvent(fbs, BookingJournal.Event.CREATE, booking);
+
+        Json.Writer json = new Json.Writer();
+        writeBooking(json, booking);
+        return new Reply(201, json.toString());
+    }
+
+    private Reply cancel(int bookingId) throws ApiException, FlightBookingSystemException {
+        Booking booking = booking(bookingId);
+        // Fails with a conflict for all but one of several concurrent cancels
+        fbs.cancelBooking(bookingId);
+        String warning = null;
+        try {
+            CancellationStore.getInstance().add(booking);
+        } catch (IOException ex) {
+            // The booking is cancelled either way; it just cannot be rebooked later
+            warning = "Failed to record the cancellation for rebooking: " + ex.getMessage();
+        }
+        PersistenceService.getInstance().submitEvent(fbs, BookingJournal.Event.REMOVE, booking);
+
+        Json.Writer json = new Json.Writer();
+        writeBooking(json, booking, warning);
+        return ok(json);
+    }
+
+    private Flight flight(int id) throws ApiException {
+        try {
+            return fbs.getFlightById(id);
+        } catch (FlightBookingSystemException ex) {
+            throw new ApiException(404, ex.getMessage());
+        }
+    }
+
+    private Customer customer(int id) throws ApiException {
+        try {
+            return fbs.getCustomerById(id);
+        } catch (FlightBookingSystemException ex) {
+            throw new ApiException(404, ex.getMessage());
+        }
+    }
+
+    private Booking booking(int id) throws ApiException {
+        try {
+            return fbs.findBookingById(id);
+        } catch (FlightBookingSystemException ex) {
+            throw new ApiException(404, ex.getMessage());
+        }
+    }
+
+    private static void writeFlight(Json.Writer json, Flight flight) {
+        json.beginObject()
+                .name("id").value(flight.getId())
+                .name("flightNumber").value(flight.getFlightNumber())
+                .name("airline").value(flight.getAirlineName())
+                .name("origin").value(flight.getOrigin())
+                .name("destination").value(flight.getDestination())
+                .name("departureDate").value(flight.getDepartureDate())
+                .name("departureTime").value(flight.getDepartureTime())
+                .name("arrivalDate").value(flight.getArrivalDate())
+                .name("arrivalTime").value(flight.getArrivalTime())
+                .name("international").value(flight.getInternational())
+                .name("status").value(flight.getStatus())
+                .name("seats").beginObject();
+        for (Booking.SeatClass seatClass : Booking.SeatClass.values()) {
+            json.name(seatClass.name()).beginObject()
+                    .name("capacity").value(flight.getCapacityForClass(seatClass))
+                    .name("available").value(flight.getAvailableSeatsForClass(seatClass))
+                    .name("price").value(flight.getPriceForClass(seatClass))
+                    .endObject();
+        }
+        json.endObject().endObject();
+    }
+
+    private static void writeCustomer(Json.Writer json, Customer customer) {
+        json.beginObject()
+                .name("id").value(customer.getId())
+                .name("name").value(customer.getName())
+                .name("phone").value(customer.getPhone())
+                .name("email").value(customer.getEmail())
+                .name("age").value(customer.getAge())
+                .name("country").value(customer.getCountry())
+                .endObject();
+    }
+
+    private static void writeBooking(Json.Writer json, Booking booking) {
+        writeBooking(json, booking, null);
+    }
+
+    private static void writeBooking(Json.Writer json, Booking booking, String warning) {
+        json.beginObject()
+                .name("id").value(booking.getBookingId())
+                .name("customerId").value(booking.getCustomer().getId())
+                .name("flightId").value(booking.getFlight().getId())
+                .name("bookingDate").value(booking.getBookingDate())
+                .name("seatClass").value(booking.getSeatClass())
+                .name("seatNumber").value(booking.getSeatNumber())
+                .name("price").value(booking.getPrice())
+                .name("status").value(booking.getStatus())
+                .name("petType").value(booking.getPetType());
+        if (warning != null) {
+            json.name("warning").value(warning);
+        }
+        json.endObject();
+    }
+
+    private static Reply ok(Json.Writer json) {
+        return new Reply(200, json.toString());
+    }
+
+    private static Reply error(int status, String message) {
+        return new Reply(status, new Json.Writer().beginObject().name("error").value(message).endObject().toString());
+    }
+
+    private static void requireMethod(String method, String allowed) throws ApiException {
+        if (!method.equals(allowed)) {
+            throw new ApiException(405, "Method " + method + " is not allowed here.");
+        }
+    }
+
+    private static void requirePathLength(String[] path, int length) throws ApiException {
+        if (path.length != length) {
+            throw new ApiException(404, "No such resource.");
+        }
+    }
+
+    private static String required(Map<String, String> request, String name) {
+        String value = request.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing " + name + ".");
+        }
+        return value;
+    }
+
+    private static int parseId(String text) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid number: " + text);
+        }
+    }
+
+    private static LocalDate parseDate(String text) {
+        return text == null || text.isEmpty() ? null : LocalDate.parse(text);
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            query.put(name, value);
+        }
+        return query;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException, ApiException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new ApiException(413, "Request body is too large.");
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+}
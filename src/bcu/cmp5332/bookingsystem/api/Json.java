@@ -0,0 +1,251 @@
+package bcu.cmp5332.bookingsystem.api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Minimal JSON support for the {@link BookingApiServer}.
+ * <p>
+ * {@link Writer} streams values into a string without building a tree.
+ * {@link #parseObject(String)} reads the flat objects that requests send:
+ * one level of string, number, boolean or null members. That is all the API
+ * needs, so no JSON library is required.
+ * </p>
+ *
+ * @author Ashok
+ */
+final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * Parses a flat JSON object into its members. String values are
+     * unescaped; numbers, booleans and null are returned as written, with
+     * null as a Java null.
+     *
+     * @param text the JSON text
+     * @return the members in the order they appear
+     * @throws IllegalArgumentException if the text is not a flat JSON object
+     */
+    static Map<String, String> parseObject(String text) {
+        Parser parser = new Parser(text);
+        Map<String, String> members = new LinkedHashMap<>();
+        parser.expect('{');
+        if (!parser.consume('}')) {
+            do {
+                String name = parser.string();
+                parser.expect(':');
+                members.put(name, parser.scalar());
+            } while (parser.consume(','));
+            parser.expect('}');
+        }
+        parser.end();
+        return members;
+    }
+
+    /** Recursive-descent reader over the characters of one JSON text. */
+    private static final class Parser {
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text == null ? "" : text;
+        }
+
+        void expect(char c) {
+            if (!consume(c)) {
+                throw error("'" + c + "' expected");
+            }
+        }
+
+        boolean consume(char c) {
+            skipSpace();
+            if (pos < text.length() && text.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void end() {
+            skipSpace();
+            if (pos != text.length()) {
+                throw error("unexpected text after the object");
+            }
+        }
+
+        String scalar() {
+            skipSpace();
+            if (pos < text.length() && text.charAt(pos) == '"') {
+                return string();
+            }
+            int start = pos;
+            while (pos < text.length() && ",}] \t\r\n".indexOf(text.charAt(pos)) < 0) {
+                pos++;
+            }
+            String literal = text.substring(start, pos);
+            if (literal.equals("null")) {
+                return null;
+            }
+            if (literal.equals("true") || literal.equals("false") || literal.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) {
+                return literal;
+            }
+            throw error(literal.isEmpty() ? "value expected" : "unsupported value " + literal);
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (pos >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(pos++);
+                switch (escaped) {
+                    case 'b': value.append('\b'); break;
+                    case 'f': value.append('\f'); break;
+                    case 'n': value.append('\n'); break;
+                    case 'r': value.append('\r'); break;
+                    case 't': value.append('\t'); break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw error("truncated escape");
+                        }
+                        value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: value.append(escaped);
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        private void skipSpace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid JSON at position " + pos + ": " + message);
+        }
+    }
+
+    /**
+     * Writes JSON text. Commas are inserted automatically, so callers only
+     * open and close containers, name members and write values.
+     */
+    static final class Writer {
+        private final StringBuilder out = new StringBuilder();
+        // True when the next value starts a container or follows a member name
+        private boolean first = true;
+
+        Writer beginObject() {
+            separate();
+            out.append('{');
+            first = true;
+            return this;
+        }
+
+        Writer endObject() {
+            out.append('}');
+            first = false;
+            return this;
+        }
+
+        Writer beginArray() {
+            separate();
+            out.append('[');
+            first = true;
+            return this;
+        }
+
+        Writer endArray() {
+            out.append(']');
+            first = false;
+            return this;
+        }
+
+        Writer name(String name) {
+            separate();
+            quote(name);
+            out.append(':');
+            first = true;
+            return this;
+        }
+
+        Writer value(String value) {
+            separate();
+            if (value == null) {
+                out.append("null");
+            } else {
+                quote(value);
+            }
+            return this;
+        }
+
+        Writer value(Object value) {
+            return value(value == null ? null : value.toString());
+        }
+
+        Writer value(long value) {
+            separate();
+            out.append(value);
+            return this;
+        }
+
+        Writer value(double value) {
+            separate();
+            out.append(Double.isFinite(value) ? Double.toString(value) : "null");
+            return this;
+        }
+
+        Writer value(boolean value) {
+            separate();
+            out.append(value);
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return out.toString();
+        }
+
+        private void separate() {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+        }
+
+        private void quote(String text) {
+            out.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '"': out.append("\\\""); break;
+                    case '\\': out.append("\\\\"); break;
+                    case '\n': out.append("\\n"); break;
+                    case '\r': out.append("\\r"); break;
+                    case '\t': out.append("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            out.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            out.append(c);
+                        }
+                }
+            }
+            out.append('"');
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package bcu.cmp5332.bookingsystem.commands;
 
+import bcu.cmp5332.bookingsystem.data.BookingJournal;
+import bcu.cmp5332.bookingsystem.data.PersistenceService;
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 
 import bcu.cmp5332.bookingsystem.model.Booking;
@@ -10,8 +12,6 @@ import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.io.IOException;
-import java.io.FileWriter;
-import java.io.BufferedWriter;
 import java.time.LocalDate;
 import java.time.LocalTime;
 
@@ -64,7 +64,7 @@ public class AddBooking implements Command {
 	 *   <li>Includes pet charge if applicable.</li>
 	 *   <li>Creates and completes the booking.</li>
 	 *   <li>Reserves the seat on the flight and updates customer and flight booking lists.</li>
-	 *   <li>Updates the booking records file with the new booking.</li>
+	 *   <li>Records the new booking in the booking journal.</li>
 	 * </ol>
 	 * </p>
 	 *
@@ -130,10 +130,8 @@ public class AddBooking implements Command {
 	        }
 
 	        // Check for duplicate booking of the same flight by this customer
-	        for (Booking booking : customer.getBookings()) {
-	            if (booking.getFlight().getId() == flight.getId()) {
-	                throw new FlightBookingSystemException("This customer already has a booking for this flight.");
-	            }
+	        if (customer.getBookingForFlight(flight.getId()) != null) {
+	            throw new FlightBookingSystemException("This customer already has a booking for this flight.");
 	        }
 
 	        // Verify seat availability for the selected class
@@ -186,11 +184,9 @@ public class AddBooking implements Command {
 	        booking.completeBooking();  // mark booking as completed
 
 	        // Reserve seat on flight and update booking lists
-	        flight.reserveSeat(seatClass, seatNumber);
-	        flight.addBooking(booking);
-	        customer.addBooking(booking);
+	        flightBookingSystem.placeBooking(booking);
 
-	        // Persist booking to file
+	        // Persist booking to the journal in the background and wait for it
 	        updateBookingFile(flightBookingSystem, booking);
 
 	        System.out.println(" Booking successfully added:");
@@ -204,23 +200,21 @@ public class AddBooking implements Command {
 	}
 
 	/**
-	 * Appends the newly created booking details to the booking data file.
+	 * Records the newly created booking in the booking journal through the
+	 * background writer, and waits for it so that a failed save is reported
+	 * instead of success.
 	 *
-	 * @param flightBookingSystem the flight booking system instance (not directly used here but kept for consistency)
+	 * @param flightBookingSystem the flight booking system instance, used if the journal needs compacting
 	 * @param booking the booking to save
-	 * @throws IOException if an error occurs while writing to the bookings file
+	 * @throws FlightBookingSystemException if the booking could not be saved
 	 */
-	private void updateBookingFile(FlightBookingSystem flightBookingSystem, Booking booking) throws IOException {
-	    try (BufferedWriter writer = new BufferedWriter(new FileWriter("./resources/data/bookings.txt", true))) {
-	        String bookingDetails = booking.getBookingId() + "::" +
-	                                booking.getCustomer().getId() + "::" +
-	                                booking.getFlight().getId() + "::" +
-	                                booking.getBookingDate() + "::" +
-	                                booking.getSeatClass() + "::" +
-	                                booking.getPrice() + "::" +
-	                                booking.getStatus() + "::" +
-	                                booking.getSeatNumber() + "\n";
-	        writer.write(bookingDetails);
+	private void updateBookingFile(FlightBookingSystem flightBookingSystem, Booking booking)
+	        throws FlightBookingSystemException {
+	    PersistenceService.getInstance().submitEvent(flightBookingSystem, BookingJournal.Event.CREATE, booking);
+	    try {
+	        PersistenceService.getInstance().flush();
+	    } catch (IOException ex) {
+	        throw new FlightBookingSystemException("Failed to save data: " + ex.getMessage());
 	    }
 	}
 }
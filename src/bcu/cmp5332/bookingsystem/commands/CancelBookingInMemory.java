@@ -1,14 +1,12 @@
 package bcu.cmp5332.bookingsystem.commands;
 
+import bcu.cmp5332.bookingsystem.data.BookingIndex;
+import bcu.cmp5332.bookingsystem.data.CancellationStore;
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 import bcu.cmp5332.bookingsystem.model.*;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.InputStreamReader;
-import java.nio.file.Files;
 import java.io.IOException;
 import java.util.*;
 
@@ -66,40 +64,31 @@ public class CancelBookingInMemory implements Command {
             System.out.print("Enter Flight ID from the above list to cancel: ");
             int flightId = Integer.parseInt(reader.readLine());
 
-            Booking bookingToCancel = null;
-            for (Booking booking : bookings) {
-                if (booking.getFlight().getId() == flightId &&
-                   (booking.getStatus() == Booking.Status.ACTIVE || booking.getStatus() == Booking.Status.COMPLETED)) {
-                    bookingToCancel = booking;
-                    break;
-                }
-            }
+            Booking bookingToCancel = customer.getActiveBookingForFlight(flightId);
 
             if (bookingToCancel == null) {
                 System.out.println("Active booking not found for given flight ID.");
                 return;
             }
 
-            // Update booking status in memory
-            bookingToCancel.setStatus(Booking.Status.CANCELLED);
-
-            // Remove passenger from flight
-            bookingToCancel.getFlight().removePassenger(customer, bookingToCancel.getSeatClass());
-            bookingToCancel.getFlight().releaseSeat(bookingToCancel.getSeatClass(), bookingToCancel.getSeatNumber());
+            // Update booking status in memory and free its seat, unless someone else just cancelled it
+            if (!bookingToCancel.cancel()) {
+                System.out.println("Booking has already been cancelled.");
+                return;
+            }
 
 
             // Update the booking status in the bookings.txt file immediately
-            updateBookingStatusInFile(bookingToCancel.getBookingId());
+            BookingIndex.getInstance().saveStatus(flightBookingSystem, bookingToCancel);
 
             // Save to cancelled booking file for record (optional)
-            saveCancelledBookingToFile(customer, bookingToCancel);
+            saveCancelledBookingToFile(bookingToCancel);
 
             // Add to in-memory cancelled bookings list (optional)
             cancelledBookingsMemory.add(bookingToCancel);
 
             // Remove from customer's booking list
-            bookings.remove(bookingToCancel);
-            bookingToCancel.getFlight().removeBooking(bookingToCancel);
+            customer.removeBooking(bookingToCancel);
 
 
             System.out.println("Booking for customer " + customer.getName() +
@@ -110,41 +99,14 @@ public class CancelBookingInMemory implements Command {
         }
     }
 
-    private void saveCancelledBookingToFile(Customer customer, Booking booking) {
-        try (FileWriter writer = new FileWriter("resources/data/cancelbooking.txt", true)) {
-            writer.write("Customer ID: " + customer.getId() +
-                    ", Flight ID: " + booking.getFlight().getId() +
-                    ", SeatClass: " + booking.getSeatClass() +
-                    ", SeatNumber: " + booking.getSeatNumber() +
-                    ", Price: $" + booking.getPrice() +
-                    ", DiscountPercent: " + booking.getDiscountPercent() +
-                    ", ManualDiscount: " + booking.isManualDiscount() +
-                    ", PetType: " + booking.getPetType() +
-                    ", PetCharge: " + booking.getPetCharge() + "\n");
+    private void saveCancelledBookingToFile(Booking booking) {
+        try {
+            CancellationStore.getInstance().add(booking);
         } catch (IOException e) {
             System.out.println("Failed to write cancelled booking to file: " + e.getMessage());
         }
     }
 
-    private void updateBookingStatusInFile(int bookingId) throws IOException {
-        File bookingsFile = new File("resources/data/bookings.txt");
-        List<String> lines = new ArrayList<>(Files.readAllLines(bookingsFile.toPath()));
-
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(bookingsFile))) {
-            for (String line : lines) {
-                if (line.startsWith(bookingId + "::")) {
-                    // Modify line to mark status as CANCELLED (assuming 7th field is status)
-                    String[] parts = line.split("::");
-                    parts[6] = "CANCELLED"; // Update status field
-                    writer.write(String.join("::", parts));
-                } else {
-                    writer.write(line);
-                }
-                writer.newLine();
-            }
-        }
-    }
-
     /**
      * Retrieves the list of cancelled bookings stored in memory.
      *
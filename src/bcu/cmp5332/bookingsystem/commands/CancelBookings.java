@@ -1,12 +1,14 @@
 package bcu.cmp5332.bookingsystem.commands;
 
+import bcu.cmp5332.bookingsystem.data.BookingJournal;
+import bcu.cmp5332.bookingsystem.data.PersistenceService;
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 import bcu.cmp5332.bookingsystem.model.Customer;
 import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
 import bcu.cmp5332.bookingsystem.model.Booking;
 import bcu.cmp5332.bookingsystem.model.Flight;
 
-import java.util.Iterator;
+import java.io.IOException;
 
 /**
  * Command to cancel and remove a booking for a specific customer and flight.
@@ -40,7 +42,8 @@ public class CancelBookings implements Command {
      * <p>
      * Searches the customer's bookings for one matching the flight ID.
      * If found, marks the booking as cancelled, removes it from both customer and flight,
-     * and saves the changes via the data manager.
+     * and records the removal in the booking journal through the background
+     * writer, waiting for it so that a failed save is reported.
      * </p>
      *
      * @param flightBookingSystem the flight booking system instance used for data access and persistence
@@ -53,13 +56,10 @@ public class CancelBookings implements Command {
 
         boolean bookingFound = false;
 
-        // Use iterator to safely remove booking while iterating
-        Iterator<Booking> iterator = customer.getBookings().iterator();
-        while (iterator.hasNext()) {
-            Booking booking = iterator.next();
+        for (Booking booking : flightBookingSystem.getBookingsForCustomer(customerId)) {
             if (booking.getFlight().getId() == flightId) {
-                // Remove booking from customer's list
-                iterator.remove();
+                // Remove booking from the customer and the system
+                flightBookingSystem.removeBooking(booking);
 
                 // Remove the booking from flight's list of bookings
                 flight.removeBooking(booking);
@@ -67,10 +67,11 @@ public class CancelBookings implements Command {
                 // Cancel the booking (update status to CANCELLED)
                 booking.cancel();
 
-                // Persist the changes to the file
+                // Record the removal in the booking journal in the background and wait for it
+                PersistenceService.getInstance().submitEvent(flightBookingSystem, BookingJournal.Event.REMOVE, booking);
                 try {
-                    flightBookingSystem.getDataManager().storeData(flightBookingSystem);
-                } catch (Exception e) {
+                    PersistenceService.getInstance().flush();
+                } catch (IOException e) {
                     throw new FlightBookingSystemException("Error saving data after booking cancellation: " + e.getMessage());
                 }
 
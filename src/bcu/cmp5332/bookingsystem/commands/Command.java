@@ -21,6 +21,7 @@ public interface Command {
     public static final String HELP_MESSAGE = "Commands:\n"
             + "\tlistflights                               	print all flights\n"
             + "\tlistcustomers                             	print all customers\n"
+            + "\tsearchcustomer [name/phone/email/passport]	find customers by name prefix or exact details\n"
             + "\tlistbookings                              	show all bookings in the system\n"
             + "\tshowbookings [customer id]                	show all bookings for a customer\n"
             + "\tshowflight [flight id]                    	show flight details\n"
@@ -40,6 +41,7 @@ public interface Command {
             + "\tcancelBooking                            	cancel a booking in memory only (no file update)\n"
             + "\trebook                                  	rebook a cancelled booking with fare increase\n"
             + "\tloadgui                                   	loads the GUI version of the app\n"
+            + "\tserveapi [port]                           	serve flights, customers and bookings as JSON over HTTP\n"
             + "\thelp                                      	prints this help message\n"
             + "\texit                                      	exits the program";
 
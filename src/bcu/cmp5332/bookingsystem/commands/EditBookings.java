@@ -198,20 +198,17 @@ public class EditBookings implements Command {
     }
 
     /**
-     * Finds a booking by its ID across all customers in the system.
+     * Finds a booking by its ID in the system's booking registry.
      *
      * @param flightBookingSystem the flight booking system to search
      * @param bookingId           the booking ID to find
      * @return the booking if found; null otherwise
      */
     private Booking findBookingById(FlightBookingSystem flightBookingSystem, int bookingId) {
-        for (Customer customer : flightBookingSystem.getAllCustomers()) {
-            for (Booking booking : customer.getBookings()) {
-                if (booking.getBookingId() == bookingId) {
-                    return booking;
-                }
-            }
+        try {
+            return flightBookingSystem.findBookingById(bookingId);
+        } catch (FlightBookingSystemException ex) {
+            return null;
         }
-        return null;
     }
 }
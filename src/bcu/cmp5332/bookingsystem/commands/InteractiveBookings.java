@@ -6,9 +6,9 @@ import bcu.cmp5332.bookingsystem.model.*;
 import bcu.cmp5332.bookingsystem.data.*;
 
 import java.io.*;
+import java.time.Duration;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.util.List;
+import java.util.Collection;
 
 /**
  * Command implementation that facilitates interactive flight booking via console input.
@@ -18,11 +18,16 @@ import java.util.List;
  * pet details, and discounts. It performs validations at each step and stores
  * the booking in the system upon successful completion.
  * </p>
+ * <p>
+ * The chosen seat is held for {@link #HOLD_SECONDS} seconds while the rest
+ * of the details are entered, so another agent cannot take it in the
+ * meantime. The hold is released if the booking is abandoned or fails.
+ * </p>
  */
 public class InteractiveBookings implements Command {
 
-    private final CustomerDataManager customerDataManager = new CustomerDataManager();
-    private final BookingDataManager bookingDataManager = new BookingDataManager();
+    /** How long the chosen seat is held while the booking is completed. */
+    public static final int HOLD_SECONDS = 300;
 
     /**
      * Executes the interactive booking process.
@@ -38,6 +43,7 @@ public class InteractiveBookings implements Command {
     @Override
     public void execute(FlightBookingSystem system) throws FlightBookingSystemException {
         BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+        SeatHold hold = null;
 
         try {
             System.out.print("Are you a new or existing customer? (new/existing): ");
@@ -82,24 +88,19 @@ public class InteractiveBookings implements Command {
                 customer = system.addCustomer(name, phone, age, address, country,
                         passportNumber, passportExpiryDate, disabled, email, dob, gender);
 
-                customerDataManager.storeData(system);
+                PersistenceService.getInstance().submitStore(system);
 
             } else {
                 throw new FlightBookingSystemException("Invalid option. Please type 'new' or 'existing'.");
             }
 
             // Display available flights after filtering out past departures
-            List<Flight> flights = system.getAllFlights();
+            Collection<Flight> flights = system.getUpcomingFlights();
             if (flights.isEmpty()) {
                 System.out.println("No available flights.");
                 return;
             }
 
-            LocalDateTime now = LocalDateTime.now();
-            flights.removeIf(flight ->
-                LocalDateTime.of(flight.getDepartureDate(), flight.getDepartureTime()).isBefore(now)
-            );
-
             System.out.println("Available Flights:");
             System.out.printf("%-5s %-10s %-20s %-15s %-15s %-22s %-22s %-12s %-12s | %-25s\n",
                     "ID", "#Flight", "Airline", "Origin", "Destination",
@@ -134,6 +135,10 @@ public class InteractiveBookings implements Command {
                 throw new FlightBookingSystemException("Seat " + seatNumber + " is not available.");
             }
 
+            // Hold the seat so it cannot be taken while the booking is completed
+            hold = selectedFlight.holdSeat(seatClass, seatNumber, Duration.ofSeconds(HOLD_SECONDS));
+            System.out.println("Seat " + seatNumber + " is held for " + (HOLD_SECONDS / 60) + " minutes.");
+
             // Pet information with validation loop
             boolean hasPet = false;
             String petType = "None";
@@ -204,18 +209,22 @@ public class InteractiveBookings implements Command {
             booking.completeBooking();
 
             // Update flight and customer with new booking and reserved seat
-            selectedFlight.reserveSeat(seatClass, seatNumber);
-            selectedFlight.addBooking(booking);
-            customer.addBooking(booking);
+            system.placeBooking(booking, hold);
 
-            // Persist booking and customer data
-            bookingDataManager.storeData(system);
+            // Persist the booking to the journal in the background, and wait for it and any
+            // new customer to be written so that a failed save is reported instead of success
+            PersistenceService.getInstance().submitEvent(system, BookingJournal.Event.CREATE, booking);
+            PersistenceService.getInstance().flush();
 
             System.out.println("\n Booking successful!");
             System.out.println(booking.getBookingDetails());
 
         } catch (Exception e) {
             throw new FlightBookingSystemException("Booking failed: " + e.getMessage());
+        } finally {
+            if (hold != null && hold.isActive()) {
+                hold.getFlight().releaseHold(hold);
+            }
         }
     }
 }
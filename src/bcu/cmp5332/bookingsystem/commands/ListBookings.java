@@ -128,18 +128,12 @@ public class ListBookings implements Command {
     }
 
     /**
-     * Helper method to collect all bookings from all customers in the system.
+     * Helper method to collect all bookings in the system.
      *
      * @param flightBookingSystem the flight booking system instance
-     * @return a list containing all bookings from all customers
+     * @return a list containing all bookings, ordered by booking ID
      */
     private List<Booking> getAllBookings(FlightBookingSystem flightBookingSystem) {
-        List<Booking> allBookings = new ArrayList<>();
-        for (Customer customer : flightBookingSystem.getAllCustomers()) {
-            if (customer.getBookings() != null) {
-                allBookings.addAll(customer.getBookings());
-            }
-        }
-        return allBookings;
+        return flightBookingSystem.getAllBookings();
     }
 }
@@ -80,11 +80,10 @@ public class ListCustomers implements Command {
      * @return the Customer object if found; otherwise, null
      */
     private Customer getCustomerById(FlightBookingSystem flightBookingSystem, int customerId) {
-        for (Customer customer : flightBookingSystem.getAllCustomers()) {
-            if (customer.getId() == customerId) {
-                return customer;
-            }
+        try {
+            return flightBookingSystem.getCustomerById(customerId);
+        } catch (FlightBookingSystemException e) {
+            return null; // Return null if no customer with the given ID is found
         }
-        return null; // Return null if no customer with the given ID is found
     }
 }
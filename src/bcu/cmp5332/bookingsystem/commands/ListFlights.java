@@ -6,8 +6,7 @@ import bcu.cmp5332.bookingsystem.model.Booking;
 import bcu.cmp5332.bookingsystem.model.Flight;
 import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
 
-import java.time.LocalDateTime;
-import java.util.List;
+import java.util.Collection;
 import java.util.Scanner;
 
 /**
@@ -23,7 +22,7 @@ public class ListFlights implements Command {
     /**
      * Executes the command to display a list of all upcoming flights.
      * <p>
-     * Retrieves all flights from the system, filters out flights that have already departed,
+     * Retrieves the flights that have not departed yet from the system's departure index
      * and displays them in a formatted list. The user can then choose to view full details
      * for a particular flight by entering its ID.
      * </p>
@@ -33,13 +32,8 @@ public class ListFlights implements Command {
      */
     @Override
     public void execute(FlightBookingSystem flightBookingSystem) throws FlightBookingSystemException {
-        List<Flight> flights = flightBookingSystem.getAllFlights();
-        LocalDateTime now = LocalDateTime.now();
-
-        // Remove flights whose departure time is before now
-        flights.removeIf(flight ->
-            LocalDateTime.of(flight.getDepartureDate(), flight.getDepartureTime()).isBefore(now)
-        );
+        // Flights that have not departed yet, already in departure order
+        Collection<Flight> flights = flightBookingSystem.getUpcomingFlights();
 
         Scanner scanner = new Scanner(System.in);
 
@@ -55,11 +49,13 @@ public class ListFlights implements Command {
         System.out.println("---------------------------------------------------------------------------------------------------------------------------------------------------------------------------");
 
         // Print short details for each flight
+        int count = 0;
         for (Flight flight : flights) {
             System.out.println(flight.getDetailsShort());
+            count++;
         }
 
-        System.out.println(flights.size() + " flight(s) found.");
+        System.out.println(count + " flight(s) found.");
         System.out.print("Do you want to see detailed information about any flight? (Enter flight ID or press Enter to skip): ");
         
         // Optionally show detailed flight info including passengers
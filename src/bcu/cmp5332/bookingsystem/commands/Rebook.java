@@ -1,12 +1,16 @@
 package bcu.cmp5332.bookingsystem.commands;
 
+import bcu.cmp5332.bookingsystem.data.BookingJournal;
+import bcu.cmp5332.bookingsystem.data.CancellationStore;
+import bcu.cmp5332.bookingsystem.data.PersistenceService;
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 import bcu.cmp5332.bookingsystem.model.*;
 
-import java.io.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.time.LocalDate;
 import java.time.LocalTime;
-import java.util.ArrayList;
 import java.util.List;
 
 public class Rebook implements Command {
@@ -26,34 +30,19 @@ public class Rebook implements Command {
                 return;
             }
 
-            // Read cancelled bookings from file
-            List<String> allLines = new ArrayList<>();
-            List<String> matchingCancelledLines = new ArrayList<>();
-            File cancelledFile = new File("resources/data/cancelbooking.txt");
-            if (!cancelledFile.exists()) {
-                System.out.println("No cancelled bookings file found.");
-                return;
-            }
-
-            BufferedReader fileReader = new BufferedReader(new FileReader(cancelledFile));
-            String line;
-            while ((line = fileReader.readLine()) != null) {
-                allLines.add(line);
-                if (line.contains("Customer ID: " + customerId)) {
-                    matchingCancelledLines.add(line);
-                }
-            }
-            fileReader.close();
+            // Look up the customer's cancelled bookings
+            CancellationStore store = CancellationStore.getInstance();
+            List<CancellationStore.Cancellation> cancellations = store.findByCustomer(customerId);
 
-            if (matchingCancelledLines.isEmpty()) {
+            if (cancellations.isEmpty()) {
                 System.out.println("No cancelled bookings found for this customer.");
                 return;
             }
 
-            // Show matching lines
+            // Show matching cancellations
             System.out.println("\nCancelled bookings for customer " + customer.getName() + ":");
             int index = 1;
-            for (String entry : matchingCancelledLines) {
+            for (CancellationStore.Cancellation entry : cancellations) {
                 System.out.println(index + ". " + entry);
                 index++;
             }
@@ -61,21 +50,20 @@ public class Rebook implements Command {
             // Ask user to choose one
             System.out.print("\nEnter number of cancelled booking to rebook: ");
             int choice = Integer.parseInt(reader.readLine());
-            if (choice < 1 || choice > matchingCancelledLines.size()) {
+            if (choice < 1 || choice > cancellations.size()) {
                 System.out.println("Invalid choice.");
                 return;
             }
 
-            String chosenLine = matchingCancelledLines.get(choice - 1);
-            String[] parts = chosenLine.split(", ");
-            int flightId = Integer.parseInt(parts[1].split(": ")[1]);
-            Booking.SeatClass seatClass = Booking.SeatClass.valueOf(parts[2].split(": ")[1].toUpperCase());
-            String seatNumber = parts[3].split(": ")[1];
-            double oldPrice = Double.parseDouble(parts[4].split("\\$")[1]);
-            int discountPercent = (int) Double.parseDouble(parts[5].split(": ")[1]);
-            boolean manualDiscount = Boolean.parseBoolean(parts[6].split(": ")[1]);
-            String petType = parts[7].split(": ")[1];
-            double petCharge = Double.parseDouble(parts[8].split(": ")[1]);
+            CancellationStore.Cancellation chosen = cancellations.get(choice - 1);
+            int flightId = chosen.getFlightId();
+            Booking.SeatClass seatClass = chosen.getSeatClass();
+            String seatNumber = chosen.getSeatNumber();
+            double oldPrice = chosen.getPrice();
+            int discountPercent = (int) chosen.getDiscountPercent();
+            boolean manualDiscount = chosen.isManualDiscount();
+            String petType = chosen.getPetType();
+            double petCharge = chosen.getPetCharge();
 
 
             Flight flight = flightBookingSystem.getFlightById(flightId);
@@ -115,21 +103,13 @@ public class Rebook implements Command {
             	);
 
 
-            flight.reserveSeat(seatClass, seatNumber);
-            flight.addBooking(newBooking);
-            customer.addBooking(newBooking);
+            flightBookingSystem.placeBooking(newBooking);
 
-            // Update booking file
+            // Save the booking in the background and wait for it
             updateBookingFile(flightBookingSystem, newBooking);
 
-            // Remove rebooked line from cancelled_bookings.txt
-            allLines.remove(chosenLine);
-            BufferedWriter writer = new BufferedWriter(new FileWriter(cancelledFile));
-            for (String ln : allLines) {
-                writer.write(ln);
-                writer.newLine();
-            }
-            writer.close();
+            // Remove the rebooked entry from the cancellation store
+            store.remove(chosen.getId());
 
             System.out.println("\nRebooking fee applied: $10.00");
             System.out.printf("Final Price: $%.2f\n", newPrice);
@@ -141,17 +121,14 @@ public class Rebook implements Command {
         }
     }
 
-    private void updateBookingFile(FlightBookingSystem flightBookingSystem, Booking booking) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("./resources/data/bookings.txt", true))) {
-            String bookingDetails = booking.getBookingId() + "::" +
-                                    booking.getCustomer().getId() + "::" +
-                                    booking.getFlight().getId() + "::" +
-                                    booking.getBookingDate() + "::" +
-                                    booking.getSeatClass() + "::" +
-                                    booking.getPrice() + "::" +
-                                    booking.getStatus() + "::" +
-                                    booking.getSeatNumber() + "\n";
-            writer.write(bookingDetails);
+    private void updateBookingFile(FlightBookingSystem flightBookingSystem, Booking booking)
+            throws FlightBookingSystemException {
+        PersistenceService.getInstance().submitEvent(flightBookingSystem, BookingJournal.Event.CREATE, booking);
+        // Wait for the background save, so a failure is reported instead of success
+        try {
+            PersistenceService.getInstance().flush();
+        } catch (IOException ex) {
+            throw new FlightBookingSystemException("Failed to save data: " + ex.getMessage());
         }
     }
 }
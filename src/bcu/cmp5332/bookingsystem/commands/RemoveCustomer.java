@@ -1,11 +1,10 @@
 package bcu.cmp5332.bookingsystem.commands;
 
-import bcu.cmp5332.bookingsystem.data.CustomerDataManager;
-import bcu.cmp5332.bookingsystem.data.BookingDataManager;
+import bcu.cmp5332.bookingsystem.data.PersistenceService;
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 import bcu.cmp5332.bookingsystem.model.*;
 
-import java.util.ArrayList;
+import java.io.IOException;
 
 /**
  * Command to remove a customer and all their associated bookings from the system.
@@ -47,24 +46,16 @@ public class RemoveCustomer implements Command {
             throw new FlightBookingSystemException(" Customer ID " + customerId + " not found.");
         }
 
-        // Cancel and remove all bookings associated with this customer
-        // Use a copy of the bookings list to avoid concurrent modification
-        for (Booking booking : new ArrayList<>(flightBookingSystem.getAllBookings())) {
-            if (booking.getCustomer().getId() == customerId) {
-                booking.getFlight().removeBooking(booking);         // Remove booking from flight's list
-                flightBookingSystem.removeBooking(booking);         // Remove booking from system-wide list
-            }
-        }
-
-        // Remove the customer from the system
+        // Remove the customer; their bookings go with them
         flightBookingSystem.removeCustomer(customer);
 
-        // Persist changes to customer and booking data files
+        // Persist the customer file and the removed bookings together in the background
+        PersistenceService.getInstance().submitStore(flightBookingSystem);
+        // Wait for the background save, so a failure is reported instead of success
         try {
-            new CustomerDataManager().storeData(flightBookingSystem);
-            new BookingDataManager().storeData(flightBookingSystem);
-        } catch (Exception e) {
-            throw new FlightBookingSystemException(" Error saving data after removing customer: " + e.getMessage());
+            PersistenceService.getInstance().flush();
+        } catch (IOException ex) {
+            throw new FlightBookingSystemException("Failed to save data: " + ex.getMessage());
         }
 
         System.out.println(" Passenger '" + customer.getName() + "' (ID: " + customerId + ") and all associated bookings removed successfully.");
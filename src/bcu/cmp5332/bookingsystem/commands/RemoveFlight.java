@@ -2,12 +2,11 @@ package bcu.cmp5332.bookingsystem.commands;
 
 
 
-import bcu.cmp5332.bookingsystem.data.FlightDataManager;
-import bcu.cmp5332.bookingsystem.data.BookingDataManager;
+import bcu.cmp5332.bookingsystem.data.PersistenceService;
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 import bcu.cmp5332.bookingsystem.model.*;
 
-import java.util.ArrayList;
+import java.io.IOException;
 
 /**
  * Command to remove a flight and all its associated bookings from the system.
@@ -49,24 +48,16 @@ public class RemoveFlight implements Command {
             throw new FlightBookingSystemException(" Flight ID " + flightId + " not found.");
         }
 
-        // Cancel and remove all bookings associated with this flight
-        // Use a copy of the bookings list to avoid concurrent modification
-        for (Booking booking : new ArrayList<>(flightBookingSystem.getAllBookings())) {
-            if (booking.getFlight().getId() == flightId) {
-                booking.getCustomer().removeBooking(booking);       // Remove booking from customer's list
-                flightBookingSystem.removeBooking(booking);          // Remove booking from system-wide list
-            }
-        }
-
-        // Remove the flight from the system
+        // Remove the flight; its bookings go with it
         flightBookingSystem.removeFlight(flight);
 
-        // Persist changes to flight and booking data files
+        // Persist the flight file and the removed bookings together in the background
+        PersistenceService.getInstance().submitStore(flightBookingSystem);
+        // Wait for the background save, so a failure is reported instead of success
         try {
-            new FlightDataManager().storeData(flightBookingSystem);
-            new BookingDataManager().storeData(flightBookingSystem);
-        } catch (Exception e) {
-            throw new FlightBookingSystemException(" Error saving data after removing flight: " + e.getMessage());
+            PersistenceService.getInstance().flush();
+        } catch (IOException ex) {
+            throw new FlightBookingSystemException("Failed to save data: " + ex.getMessage());
         }
 
         System.out.println(" Flight '" + flight.getFlightNumber() + "' (ID: " + flightId + ") and all associated bookings removed successfully.");
@@ -0,0 +1,64 @@
+package bcu.cmp5332.bookingsystem.commands;
+
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.util.List;
+
+/**
+ * Command to find customers by the start of their name, or by an exact
+ * phone number, email address or passport number.
+ * <p>
+ * Matches are looked up in the system's customer index rather than by
+ * scanning every customer, and displayed in the same short format as
+ * {@link ListCustomers}.
+ * </p>
+ */
+public class SearchCustomer implements Command {
+
+    /** The maximum number of customers listed. */
+    public static final int MAX_RESULTS = 50;
+
+    /** The text to search for */
+    private final String query;
+
+    /**
+     * Constructs a SearchCustomer command for the given query.
+     *
+     * @param query a name prefix, phone number, email address or passport number
+     */
+    public SearchCustomer(String query) {
+        this.query = query;
+    }
+
+    /**
+     * Executes the search and prints the matching customers.
+     *
+     * @param flightBookingSystem the flight booking system instance containing customers
+     * @throws FlightBookingSystemException if the query is empty
+     */
+    @Override
+    public void execute(FlightBookingSystem flightBookingSystem) throws FlightBookingSystemException {
+        if (query == null || query.trim().isEmpty()) {
+            throw new FlightBookingSystemException("Please enter a name, phone number, email or passport number to search for.");
+        }
+
+        List<Customer> customers = flightBookingSystem.searchCustomers(query, MAX_RESULTS);
+        if (customers.isEmpty()) {
+            System.out.println("No customers match '" + query.trim() + "'.");
+            return;
+        }
+
+        System.out.printf(
+            "%-5s %-20s %-15s %-5s %-15s %-25s %-10s %-10s\n",
+            "ID", "Name", "Phone", "Age", "Country", "Email", "Gender", "Disabled"
+        );
+        System.out.println("-----------------------------------------------------------------------------------------------------------------");
+        for (Customer customer : customers) {
+            System.out.println(customer.getDetailsShort());
+        }
+        System.out.println(customers.size() + " customer(s) found"
+                + (customers.size() == MAX_RESULTS ? " (showing the first " + MAX_RESULTS + ")." : "."));
+    }
+}
@@ -4,6 +4,7 @@ import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 import bcu.cmp5332.bookingsystem.model.Flight;
 import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
 import bcu.cmp5332.bookingsystem.model.FlightStatus;
+import bcu.cmp5332.bookingsystem.model.SymbolTable;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
@@ -62,7 +63,8 @@ public class SearchFlight implements Command {
      */
     @Override
     public void execute(FlightBookingSystem fbs) throws FlightBookingSystemException {
-        List<Flight> flights = fbs.getAllFlights();
+        // The route and departure date are looked up in the flight index
+        List<Flight> flights = fbs.findFlights(origin, destination, exactDepartureDate);
         List<Flight> matchedFlights = new ArrayList<>();
         boolean found = false;
 
@@ -81,25 +83,22 @@ public class SearchFlight implements Command {
                 "Departure", "Arrival", "Status", "Type");
         System.out.println("--------------------------------------------------------------------------------------------------------------------------------------");
 
-        // Iterate through all flights and check if they match the search criteria
+        // Airline names are compared by their symbol table code
+        int airlineCode = SymbolTable.getInstance().find(airline);
+
+        // Check the remaining search criteria on the flights of the route
         for (Flight flight : flights) {
-            boolean match = (origin == null || flight.getOrigin().equalsIgnoreCase(origin)) &&
-                            (destination == null || flight.getDestination().equalsIgnoreCase(destination));
+            boolean match = true;
 
-            LocalDate flightDeparture = flight.getDepartureDate();
             LocalDate flightArrival = flight.getArrivalDate();
 
-            if (exactDepartureDate != null && !flightDeparture.isEqual(exactDepartureDate)) {
-                continue; // Skip if departure date doesn't match exactly
-            }
-
             if (exactArrivalDate != null && (flightArrival == null || !flightArrival.isEqual(exactArrivalDate))) {
                 continue; // Skip if arrival date doesn't match exactly or is missing
             }
 
 
             if (airline != null) {
-                match &= flight.getAirlineName().equalsIgnoreCase(airline);
+                match &= flight.getAirlineCode() == airlineCode;
             }
 
             if (parsedStatus != null) {
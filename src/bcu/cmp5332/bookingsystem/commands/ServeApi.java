@@ -0,0 +1,61 @@
+package bcu.cmp5332.bookingsystem.commands;
+
+import bcu.cmp5332.bookingsystem.api.BookingApiServer;
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * Command to start the local HTTP booking API.
+ * <p>
+ * The {@link BookingApiServer} listens on the loopback address only and
+ * serves the same system as the console, which stays usable while the
+ * server runs. Only one server is started per application.
+ * </p>
+ *
+ * @author Ashok
+ */
+public class ServeApi implements Command {
+
+    private static BookingApiServer running;
+
+    private final int port;
+
+    /**
+     * Constructs a ServeApi command.
+     *
+     * @param port the port to listen on
+     */
+    public ServeApi(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Starts the API server unless one is already running.
+     *
+     * @param flightBookingSystem the system the API serves
+     * @throws FlightBookingSystemException if the port cannot be opened
+     */
+    @Override
+    public void execute(FlightBookingSystem flightBookingSystem) throws FlightBookingSystemException {
+        synchronized (ServeApi.class) {
+            if (running != null) {
+                System.out.println("The booking API is already running on port " + running.getPort() + ".");
+                return;
+            }
+            try {
+                BookingApiServer server = new BookingApiServer(flightBookingSystem,
+                        new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+                server.start();
+                running = server;
+            } catch (IOException ex) {
+                throw new FlightBookingSystemException("Unable to start the booking API on port " + port + ": " + ex.getMessage());
+            }
+        }
+        System.out.println("Booking API listening on http://localhost:" + running.getPort() + "/api/"
+                + (running.usesVirtualThreads() ? " (virtual threads)" : " (thread pool)"));
+    }
+}
@@ -1,6 +1,8 @@
 package bcu.cmp5332.bookingsystem.commands;
 
+import bcu.cmp5332.bookingsystem.data.PersistenceService;
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import java.io.IOException;
 import java.time.LocalTime;
 
 import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
@@ -8,7 +10,6 @@ import bcu.cmp5332.bookingsystem.model.FlightStatus;
 import bcu.cmp5332.bookingsystem.model.Flight;
 import bcu.cmp5332.bookingsystem.model.Booking;
 
-import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
@@ -207,11 +208,13 @@ public class UpdateFlight implements Command {
             flight.setArrivalTime(newArrivalTime);
         }
 
-        // Save changes to persistent storage
+        // Save changes to persistent storage on the background writer
+        PersistenceService.getInstance().submitStore(flightBookingSystem);
+        // Wait for the background save, so a failure is reported instead of success
         try {
-            flightBookingSystem.getDataManager().storeData(flightBookingSystem);
-        } catch (IOException e) {
-            throw new FlightBookingSystemException("Failed to save flight data: " + e.getMessage());
+            PersistenceService.getInstance().flush();
+        } catch (IOException ex) {
+            throw new FlightBookingSystemException("Failed to save data: " + ex.getMessage());
         }
 
         System.out.println("\nFlight updated successfully:\n" + flight.getDetailsLong());
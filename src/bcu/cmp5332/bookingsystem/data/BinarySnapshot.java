@@ -0,0 +1,399 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.Booking.SeatClass;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import bcu.cmp5332.bookingsystem.model.FlightStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary snapshot of flights, customers and bookings used for fast startup.
+ * <p>
+ * The text files remain the interchange format; the snapshot is written next to
+ * them by {@link FlightBookingSystemData#store(FlightBookingSystem)} and read back
+ * by {@link FlightBookingSystemData#load()} in a single sequential read instead of
+ * parsing three text files.
+ * </p>
+ * <p>
+ * Layout (all numbers big-endian):
+ * </p>
+ * <pre>
+ * header      magic "FBSS", version, size and mtime of each text file
+ * dictionary  count, then each string (airports, airlines, countries)
+ * flights     count, then length-prefixed flight records
+ * customers   count, then length-prefixed customer records
+ * bookings    count, then length-prefixed booking records
+ * </pre>
+ * <p>
+ * Dates are stored as epoch days and times as seconds of the day. The header
+ * remembers the size and modification time of every text file the snapshot was
+ * written alongside, so a snapshot is only used while none of those files has
+ * been changed since. The booking journal is replayed on top of the snapshot
+ * exactly as it is on top of {@code bookings.txt}.
+ * </p>
+ *
+ * @author Ashok
+ */
+public class BinarySnapshot {
+
+    private static final String[] TEXT_FILES = {
+        DataFiles.FLIGHTS,
+        DataFiles.CUSTOMERS,
+        DataFiles.BOOKINGS
+    };
+
+    private static final int MAGIC = 0x46425353; // "FBSS"
+    private static final int VERSION = 1;
+
+    private static final int NULL_STRING = -1;
+    private static final int NULL_DATE = Integer.MIN_VALUE;
+
+    private static final SeatClass[] SEAT_CLASSES = SeatClass.values();
+    private static final Booking.Status[] BOOKING_STATUSES = Booking.Status.values();
+    private static final FlightStatus[] FLIGHT_STATUSES = FlightStatus.values();
+
+    private BinarySnapshot() {
+    }
+
+    /**
+     * Returns whether a snapshot exists and matches the text files on disk.
+     *
+     * @param files the data files the snapshot is kept with
+     * @return {@code true} if the snapshot can be loaded instead of the text files
+     */
+    public static boolean isCurrent(DataFiles files) {
+        Path path = files.resolve(DataFiles.SNAPSHOT);
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try {
+            ByteBuffer header = ByteBuffer.wrap(readHeader(path));
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return false;
+            }
+            for (String textFile : TEXT_FILES) {
+                long size = header.getLong();
+                long modified = header.getLong();
+                Path text = files.resolve(textFile);
+                if (!Files.exists(text) || Files.size(text) != size
+                        || Files.getLastModifiedTime(text).toMillis() != modified) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException | BufferUnderflowException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Loads flights, customers and bookings from the snapshot into the given system.
+     *
+     * @param fbs the flight booking system to populate
+     * @param files the data files the snapshot is kept with
+     * @throws IOException if the snapshot cannot be read
+     * @throws FlightBookingSystemException if the snapshot is corrupt or its data is inconsistent
+     */
+    public static void load(FlightBookingSystem fbs, DataFiles files) throws IOException, FlightBookingSystemException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(files.resolve(DataFiles.SNAPSHOT)));
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new FlightBookingSystemException("Snapshot file is not a booking system snapshot.");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new FlightBookingSystemException("Unsupported snapshot version " + version + ".");
+            }
+            in.position(in.position() + TEXT_FILES.length * 2 * Long.BYTES);
+
+            String[] dictionary = new String[in.getInt()];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = readString(in);
+            }
+
+            int flightCount = in.getInt();
+            for (int i = 0; i < flightCount; i++) {
+                ByteBuffer record = nextRecord(in);
+                Flight flight = new Flight(record.getInt(), readString(record), dictionary[record.getInt()],
+                        dictionary[record.getInt()], dictionary[record.getInt()], readDate(record),
+                        readTime(record), readTime(record), readDate(record), record.get() != 0);
+                for (SeatClass seatClass : SEAT_CLASSES) {
+                    flight.setCapacityForClass(seatClass, record.getInt());
+                    flight.setPriceForClass(seatClass, record.getDouble());
+                }
+                flight.setStatus(FLIGHT_STATUSES[record.get()]);
+                fbs.addFlight(flight);
+            }
+
+            int customerCount = in.getInt();
+            for (int i = 0; i < customerCount; i++) {
+                ByteBuffer record = nextRecord(in);
+                int id = record.getInt();
+                String name = readString(record);
+                String phone = readString(record);
+                int age = record.getInt();
+                String address = readString(record);
+                String country = dictionary[record.getInt()];
+                String passportNumber = readString(record);
+                LocalDate passportExpiryDate = readDate(record);
+                boolean disabled = record.get() != 0;
+                String email = readString(record);
+                LocalDate dob = readDate(record);
+                String gender = readString(record);
+
+                Customer customer = new Customer(id, name, phone, age, address, country,
+                        passportNumber, passportExpiryDate, disabled, email, dob, gender);
+                customer.setDisabled(disabled);
+                fbs.addCustomerDirect(customer);
+            }
+
+            fbs.markFlightsSaved();
+            fbs.markCustomersSaved();
+
+            int bookingCount = in.getInt();
+            Map<Integer, BookingRecord> records = new LinkedHashMap<>(bookingCount * 4 / 3 + 1);
+            for (int i = 0; i < bookingCount; i++) {
+                ByteBuffer data = nextRecord(in);
+                BookingRecord record = new BookingRecord();
+                record.bookingId = data.getInt();
+                record.customerId = data.getInt();
+                record.flightId = data.getInt();
+                record.bookingDate = readDate(data);
+                record.seatClass = SEAT_CLASSES[data.get()];
+                record.price = data.getDouble();
+                record.status = BOOKING_STATUSES[data.get()];
+                record.seatNumber = readString(data);
+                record.discountPercent = data.getDouble();
+                record.manualDiscount = data.get() != 0;
+                record.petType = readString(data);
+                record.petCharge = data.getDouble();
+                records.put(record.bookingId, record);
+            }
+
+            BookingDataManager.replayAndLink(fbs, records, files.getJournal());
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException ex) {
+            throw new FlightBookingSystemException("Snapshot file is truncated or corrupt.");
+        }
+    }
+
+    /**
+     * Deletes the snapshot, so that the text files are loaded until a new
+     * snapshot is stored. Used when the snapshot turns out to be unreadable.
+     *
+     * @param files the data files the snapshot is kept with
+     * @throws IOException if the snapshot cannot be deleted
+     */
+    static void delete(DataFiles files) throws IOException {
+        Files.deleteIfExists(files.resolve(DataFiles.SNAPSHOT));
+    }
+
+    /**
+     * Writes a snapshot of the given system. The text files must already have
+     * been stored, since the snapshot records their current size and
+     * modification time.
+     *
+     * @param fbs the flight booking system to snapshot
+     * @param files the data files the snapshot is kept with
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void store(FlightBookingSystem fbs, DataFiles files) throws IOException {
+        prepare(fbs, files).write();
+    }
+
+    /**
+     * Encodes the snapshot now and writes it later. The header is only
+     * computed when the snapshot is written, so it describes the text files
+     * as they are after any writes that were prepared alongside it.
+     *
+     * @param fbs the flight booking system to snapshot
+     * @param files the data files the snapshot is kept with
+     * @return the write of the encoded snapshot
+     * @throws IOException if the snapshot cannot be encoded
+     */
+    static DataManager.PendingWrite prepare(FlightBookingSystem fbs, DataFiles files) throws IOException {
+        List<Flight> flights = fbs.getAllFlights();
+        List<Customer> customers = fbs.getAllCustomers();
+        List<Booking> bookings = fbs.getAllBookings();
+
+        // Airports, airlines and countries repeat heavily, so they are written once
+        List<String> dictionary = new ArrayList<>();
+        Map<String, Integer> codes = new HashMap<>();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream record = new DataOutputStream(bytes);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(64 * 1024);
+        DataOutputStream out = new DataOutputStream(body);
+
+        out.writeInt(flights.size());
+        for (Flight flight : flights) {
+            bytes.reset();
+            record.writeInt(flight.getId());
+            writeString(record, flight.getFlightNumber());
+            record.writeInt(code(flight.getAirlineName(), dictionary, codes));
+            record.writeInt(code(flight.getOrigin(), dictionary, codes));
+            record.writeInt(code(flight.getDestination(), dictionary, codes));
+            writeDate(record, flight.getDepartureDate());
+            writeTime(record, flight.getDepartureTime());
+            writeTime(record, flight.getArrivalTime());
+            writeDate(record, flight.getArrivalDate());
+            record.writeBoolean(flight.getInternational());
+            for (SeatClass seatClass : SEAT_CLASSES) {
+                record.writeInt(flight.getCapacityForClass(seatClass));
+                record.writeDouble(flight.getPriceForClass(seatClass));
+            }
+            record.writeByte(flight.getStatus().ordinal());
+            writeRecord(out, bytes);
+        }
+
+        out.writeInt(customers.size());
+        for (Customer customer : customers) {
+            bytes.reset();
+            record.writeInt(customer.getId());
+            writeString(record, customer.getName());
+            writeString(record, customer.getPhone());
+            record.writeInt(customer.getAge());
+            writeString(record, customer.getAddress());
+            record.writeInt(code(customer.getCountry(), dictionary, codes));
+            writeString(record, customer.getPassportNumber());
+            writeDate(record, customer.getPassportExpiryDate());
+            record.writeBoolean(customer.isDisabled());
+            writeString(record, customer.getEmail());
+            writeDate(record, customer.getDob());
+            writeString(record, customer.getGender());
+            writeRecord(out, bytes);
+        }
+
+        out.writeInt(bookings.size());
+        for (Booking booking : bookings) {
+            bytes.reset();
+            record.writeInt(booking.getBookingId());
+            record.writeInt(booking.getCustomer().getId());
+            record.writeInt(booking.getFlight().getId());
+            writeDate(record, booking.getBookingDate());
+            record.writeByte(booking.getSeatClass().ordinal());
+            record.writeDouble(booking.getPrice());
+            record.writeByte(booking.getStatus().ordinal());
+            writeString(record, booking.getSeatNumber());
+            record.writeDouble(booking.getDiscountPercent());
+            record.writeBoolean(booking.isManualDiscount());
+            writeString(record, booking.getPetType());
+            record.writeDouble(booking.getPetCharge());
+            writeRecord(out, bytes);
+        }
+        out.flush();
+
+        return () -> DurableFileWriter.forFile(files.resolve(DataFiles.SNAPSHOT)).write(stream -> {
+            DataOutputStream file = new DataOutputStream(stream);
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+            for (String textFile : TEXT_FILES) {
+                Path text = files.resolve(textFile);
+                file.writeLong(Files.exists(text) ? Files.size(text) : -1L);
+                file.writeLong(Files.exists(text) ? Files.getLastModifiedTime(text).toMillis() : -1L);
+            }
+            file.writeInt(dictionary.size());
+            for (String value : dictionary) {
+                writeString(file, value);
+            }
+            body.writeTo(file);
+            file.flush();
+        });
+    }
+
+    private static byte[] readHeader(Path path) throws IOException {
+        int length = 2 * Integer.BYTES + TEXT_FILES.length * 2 * Long.BYTES;
+        byte[] header = new byte[length];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read = 0;
+            while (read < length) {
+                int n = in.read(header, read, length - read);
+                if (n < 0) {
+                    throw new IOException("Snapshot header is truncated.");
+                }
+                read += n;
+            }
+        }
+        return header;
+    }
+
+    private static int code(String value, List<String> dictionary, Map<String, Integer> codes) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(value);
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    private static ByteBuffer nextRecord(ByteBuffer in) {
+        int length = in.getInt();
+        ByteBuffer record = in.slice();
+        record.limit(length);
+        in.position(in.position() + length);
+        return record;
+    }
+
+    private static void writeRecord(DataOutputStream out, ByteArrayOutputStream record) throws IOException {
+        out.writeInt(record.size());
+        record.writeTo(out);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length == NULL_STRING) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_STRING);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static LocalDate readDate(ByteBuffer in) {
+        int epochDay = in.getInt();
+        return epochDay == NULL_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDate date) throws IOException {
+        out.writeInt(date == null ? NULL_DATE : (int) date.toEpochDay());
+    }
+
+    private static LocalTime readTime(ByteBuffer in) {
+        int secondOfDay = in.getInt();
+        return secondOfDay < 0 ? null : LocalTime.ofSecondOfDay(secondOfDay);
+    }
+
+    private static void writeTime(DataOutputStream out, LocalTime time) throws IOException {
+        out.writeInt(time == null ? -1 : time.toSecondOfDay());
+    }
+}
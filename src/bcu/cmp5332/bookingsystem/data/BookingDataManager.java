@@ -7,27 +7,63 @@ import bcu.cmp5332.bookingsystem.model.Flight;
 import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
 
 import java.io.*;
-import java.time.LocalDate;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Manages the loading and storing of booking data from and to a text file.
  * This class handles the persistence of {@link Booking} objects, linking them
  * to both {@link Customer} and {@link Flight} instances during loading.
- * 
+ *
  * Bookings are stored in a delimited text file, and each booking line
  * contains relevant fields such as customer ID, flight ID, seat class, price,
  * status, and optional details like seat number, discounts, and pet-related data.
- * 
+ *
+ * The text file is a snapshot; changes made since the last snapshot live in
+ * the {@link BookingJournal} and are replayed on top of it while loading.
+ *
  * @author Ashok
  */
 public class BookingDataManager implements DataManager {
 
-    private final String SEPARATOR = "::";
-    private final String RESOURCE = "./resources/data/bookings.txt";
+    static final String SEPARATOR = "::";
 
     /**
-     * Loads booking data from the configured text file and updates the system's customers and flights.
+     * Width the status field is padded to, so that any status can later be
+     * patched in place by the {@link BookingIndex}.
+     */
+    static final int STATUS_WIDTH = statusWidth();
+
+    /** Byte size of the ranges that a large bookings file is split into for parallel parsing. */
+    static final long CHUNK_SIZE = 256 * 1024;
+
+    private final DataFiles files;
+    private final Path path;
+
+    /**
+     * Creates a manager for the file in the default {@link DataFiles}.
+     */
+    public BookingDataManager() {
+        this(DataFiles.getDefault());
+    }
+
+    /**
+     * Creates a manager for the file in the given data directory.
+     *
+     * @param files the data files to read and write
+     */
+    public BookingDataManager(DataFiles files) {
+        this.files = files;
+        this.path = files.resolve(DataFiles.BOOKINGS);
+    }
+
+    /**
+     * Loads booking data from the snapshot file, replays the booking journal
+     * on top of it and updates the system's customers and flights.
      *
      * @param fbs the flight booking system instance to load bookings into.
      * @throws IOException if the file cannot be read.
@@ -35,91 +71,317 @@ public class BookingDataManager implements DataManager {
      */
     @Override
     public void loadData(FlightBookingSystem fbs) throws IOException, FlightBookingSystemException {
-        try (Scanner sc = new Scanner(new File(RESOURCE))) {
-            int lineIndex = 1;
-            int maxBookingId = 0;
+        replayAndLink(fbs, parseBookings(null), files.getJournal());
+    }
 
-            while (sc.hasNextLine()) {
-                String line = sc.nextLine();
-                String[] properties = line.split(SEPARATOR, -1);
+    /**
+     * Parses the snapshot file into records keyed by booking ID, in file order.
+     * <p>
+     * Files larger than {@link #CHUNK_SIZE} are split into byte ranges that are
+     * parsed concurrently on the given pool; the ranges are merged back in
+     * order, so the result is the same as a sequential parse.
+     * </p>
+     *
+     * @param pool the pool to parse ranges on, or {@code null} to parse on the calling thread
+     * @return the parsed records
+     * @throws IOException if the file cannot be read
+     * @throws FlightBookingSystemException if a record is malformed
+     */
+    Map<Integer, BookingRecord> parseBookings(ForkJoinPool pool) throws IOException, FlightBookingSystemException {
+        long size = Files.size(path);
+        int chunks = (int) Math.max(1, (size + CHUNK_SIZE - 1) / CHUNK_SIZE);
 
+        List<List<BookingRecord>> parts = new ArrayList<>(chunks);
+        if (pool == null || chunks == 1) {
+            parts.add(parseRange(path, 0, Long.MAX_VALUE));
+        } else {
+            List<Future<List<BookingRecord>>> tasks = new ArrayList<>(chunks);
+            for (int i = 0; i < chunks; i++) {
+                long start = i * CHUNK_SIZE;
+                long end = i == chunks - 1 ? Long.MAX_VALUE : start + CHUNK_SIZE;
+                tasks.add(pool.submit(() -> parseRange(path, start, end)));
+            }
+            for (Future<List<BookingRecord>> task : tasks) {
+                parts.add(FlightBookingSystemData.await(task));
+            }
+        }
+
+        Map<Integer, BookingRecord> records = new LinkedHashMap<>();
+        List<BookingIndex.Entry> index = new ArrayList<>();
+        for (List<BookingRecord> part : parts) {
+            for (BookingRecord record : part) {
+                records.put(record.bookingId, record);
+                index.add(new BookingIndex.Entry(record.bookingId, record.recordOffset,
+                        record.statusOffset, record.statusLength));
+            }
+        }
+        files.getIndex().refresh(index, size);
+        return records;
+    }
+
+    private List<BookingRecord> parseRange(Path path, long start, long end) throws IOException, FlightBookingSystemException {
+        List<BookingRecord> records = new ArrayList<>();
+        try (MappedRecordReader reader = new MappedRecordReader(path, start, end)) {
+            while (reader.next()) {
                 try {
-                    int bookingId = Integer.parseInt(properties[0]);
-                    int customerId = Integer.parseInt(properties[1]);
-                    int flightId = Integer.parseInt(properties[2]);
-                    LocalDate bookingDate = LocalDate.parse(properties[3]);
-                    Booking.SeatClass seatClass = Booking.SeatClass.valueOf(properties[4].toUpperCase());
-                    double price = Double.parseDouble(properties[5]);
-                    String statusStr = properties[6];
-                    String seatNumber = properties.length > 7 ? properties[7] : null;
-                    double discountPercent = properties.length > 8 ? Double.parseDouble(properties[8]) : 0.0;
-                    boolean manualDiscount = properties.length > 9 && Boolean.parseBoolean(properties[9]);
-                    String petType = properties.length > 10 ? properties[10] : null;
-                    double petCharge = properties.length > 11 ? Double.parseDouble(properties[11]) : 0.0;
-
-                    Customer customer = fbs.getCustomerById(customerId);
-                    Flight flight = fbs.getFlightById(flightId);
-
-                    Booking booking = new Booking(customer, flight, bookingDate, seatClass, price, seatNumber,
-                            discountPercent, manualDiscount, petType, petCharge);
-                    booking.setBookingId(bookingId);
-
-                    Booking.Status status = Booking.Status.valueOf(statusStr);
-                    booking.setStatus(status);
-
-                    customer.addBooking(booking);
-
-                    // Only add passenger and reserve seat if booking is ACTIVE or COMPLETED
-                    if (status == Booking.Status.ACTIVE || status == Booking.Status.COMPLETED) {
-                        flight.addPassenger(customer, seatClass);
-                        flight.reserveSeat(seatClass, seatNumber);
-                    }
-
-                    if (bookingId > maxBookingId) {
-                        maxBookingId = bookingId;
-                    }
-
-                } catch (Exception ex) {
-                    throw new FlightBookingSystemException("Error parsing booking data on line " + lineIndex + ": " + ex.getMessage());
+                    records.add(BookingRecord.read(reader));
+                } catch (RuntimeException ex) {
+                    int line = start == 0 ? reader.lineNumber() : lineNumberAt(path, reader.recordOffset());
+                    throw new FlightBookingSystemException("Error parsing booking data on line " + line + ": " + ex.getMessage());
+                }
+            }
+        }
+        return records;
+    }
+
+    // Only used to report errors, so a second pass over the file is acceptable.
+    private static int lineNumberAt(Path path, long offset) throws IOException {
+        try (MappedRecordReader reader = new MappedRecordReader(path)) {
+            while (reader.next()) {
+                if (reader.recordOffset() >= offset) {
+                    return reader.lineNumber();
                 }
-                lineIndex++;
             }
+        }
+        return -1;
+    }
+
+    /**
+     * Replays the booking journal over the given snapshot records and links
+     * the resulting bookings to their customers and flights.
+     *
+     * @param fbs the flight booking system whose customers and flights are already loaded
+     * @param records snapshot records keyed by booking ID
+     * @param journal the journal holding the changes made since the snapshot
+     * @throws IOException if the journal cannot be read
+     * @throws FlightBookingSystemException if a record is malformed or references a missing customer/flight
+     */
+    static void replayAndLink(FlightBookingSystem fbs, Map<Integer, BookingRecord> records, BookingJournal journal)
+            throws IOException, FlightBookingSystemException {
+        journal.replay(records);
 
-            Booking.setNextId(maxBookingId + 1);
+        for (BookingRecord record : records.values()) {
+            try {
+                linkRecord(fbs, record);
+            } catch (Exception ex) {
+                throw new FlightBookingSystemException("Error loading booking " + record.bookingId + ": " + ex.getMessage());
+            }
         }
+
+        fbs.markBookingsSaved();
     }
 
+    /**
+     * Builds a booking from its stored fields and attaches it to its customer and flight.
+     *
+     * @param fbs the flight booking system owning the customer and flight
+     * @param record the stored booking fields
+     * @return the linked booking
+     * @throws FlightBookingSystemException if the customer or flight cannot be found
+     */
+    private static Booking linkRecord(FlightBookingSystem fbs, BookingRecord record) throws FlightBookingSystemException {
+        Customer customer = fbs.getCustomerById(record.customerId);
+        Flight flight = fbs.getFlightById(record.flightId);
+
+        // Older files store a booking without a seat as the text "null"
+        String seatNumber = record.seatNumber;
+        if (seatNumber != null && (seatNumber.trim().isEmpty() || seatNumber.equals("null"))) {
+            seatNumber = null;
+        }
+
+        Booking booking = new Booking(customer, flight, record.bookingDate, record.seatClass, record.price,
+                seatNumber, record.discountPercent, record.manualDiscount, record.petType, record.petCharge);
+        booking.setBookingId(record.bookingId);
+        booking.setStatus(record.status);
+
+        customer.addBooking(booking);
+
+        // Only add passenger and reserve seat if booking is ACTIVE or COMPLETED
+        if (record.status == Booking.Status.ACTIVE || record.status == Booking.Status.COMPLETED) {
+            flight.addPassenger(customer, record.seatClass);
+            flight.reserveSeat(booking);
+        }
+        return booking;
+    }
 
     /**
-     * Saves all bookings from the system to the configured text file.
+     * Saves all bookings from the system to the configured text file and
+     * truncates the booking journal, whose events are now part of the snapshot.
      *
      * @param fbs the flight booking system containing all customers and their bookings.
      * @throws IOException if the file cannot be written.
      */
     @Override
     public void storeData(FlightBookingSystem fbs) throws IOException {
-        try (PrintWriter out = new PrintWriter(new FileWriter(RESOURCE))) {
-            List<Booking> allBookings = new ArrayList<>();
-            for (Customer customer : fbs.getAllCustomers()) {
-                allBookings.addAll(customer.getBookings());
-            }
+        prepareSnapshot(fbs).write();
+    }
+
+    /**
+     * Renders the whole bookings file now and writes it, the booking index and
+     * the truncated journal later.
+     *
+     * @param fbs the flight booking system containing all customers and their bookings.
+     * @return the write of the bookings file
+     * @throws IOException if the bookings file cannot be rendered
+     */
+    @Override
+    public PendingWrite prepareData(FlightBookingSystem fbs) throws IOException {
+        return prepareSnapshot(fbs);
+    }
+
+    /**
+     * Returns whether any booking was added, edited or removed since the
+     * bookings were last loaded or stored.
+     *
+     * @param fbs the flight booking system to check
+     * @return true if there are booking changes to journal
+     */
+    @Override
+    public boolean hasChanges(FlightBookingSystem fbs) {
+        return fbs.hasUnsavedBookingChanges();
+    }
+
+    /**
+     * Appends the changed and removed bookings to the {@link BookingJournal}
+     * instead of rewriting the whole bookings file.
+     *
+     * @param fbs the flight booking system containing all customers and their bookings.
+     * @throws IOException if the journal cannot be written.
+     */
+    @Override
+    public void storeChanges(FlightBookingSystem fbs) throws IOException {
+        files.getJournal().recordChanges(fbs, fbs.getUnsavedBookings(), fbs.getRemovedBookingIds());
+    }
+
+    /**
+     * Queues journal events for the bookings changed since they were last
+     * saved, leaving only the journal commit to the returned write. If the
+     * journal is due for compaction, the full snapshot is rendered instead
+     * and the returned write stores it.
+     *
+     * @param fbs the flight booking system instance containing bookings
+     * @return the commit of the queued events, or the write of the snapshot
+     * @throws IOException if the journal cannot be read or the snapshot rendered
+     */
+    @Override
+    public PendingWrite prepareChanges(FlightBookingSystem fbs) throws IOException {
+        List<Booking> changed = fbs.getUnsavedBookings();
+        List<Integer> removedIds = fbs.getRemovedBookingIds();
+        if (compacts(changed, removedIds)) {
+            return prepareSnapshot(fbs);
+        }
+        return files.getJournal().prepareChanges(fbs, changed, removedIds);
+    }
+
+    /**
+     * Returns whether saving the unsaved bookings rewrites the bookings file,
+     * because the journal is due for compaction, rather than only appending
+     * to the journal.
+     *
+     * @param fbs the flight booking system instance containing bookings
+     * @return {@code true} if the next save rewrites the bookings file
+     * @throws IOException if the journal cannot be read
+     */
+    boolean rewritesOnSave(FlightBookingSystem fbs) throws IOException {
+        return fbs.hasUnsavedBookingChanges() && compacts(fbs.getUnsavedBookings(), fbs.getRemovedBookingIds());
+    }
+
+    private boolean compacts(List<Booking> changed, List<Integer> removedIds) throws IOException {
+        return files.getJournal().needsCompaction(changed.size() + removedIds.size());
+    }
 
-            allBookings.sort(Comparator.comparingInt(Booking::getBookingId));
+    /**
+     * Renders the full bookings snapshot now and leaves writing it, the
+     * booking index and the truncated journal to the returned write, so the
+     * system only has to be locked while the snapshot is rendered.
+     *
+     * @param fbs the flight booking system containing all customers and their bookings.
+     * @return the write of the snapshot
+     * @throws IOException if the snapshot cannot be rendered
+     */
+    PendingWrite prepareSnapshot(FlightBookingSystem fbs) throws IOException {
+        BookingJournal journal = files.getJournal();
+        BookingJournal.SnapshotPoint point = journal.markSnapshot();
+        // Marked before rendering, so a booking edited meanwhile stays unsaved
+        fbs.markBookingsSaved();
 
+        List<Booking> allBookings = fbs.getAllBookings();
+        List<BookingIndex.Entry> index = new ArrayList<>(allBookings.size());
+        long[] size = new long[1];
+        DurableFileWriter.Content content = DurableFileWriter.captureText(out -> {
+            // Lines end in '\n' on every platform so that the offsets below are exact
+            long offset = 0;
             for (Booking booking : allBookings) {
-                out.print(booking.getBookingId() + SEPARATOR);
-                out.print(booking.getCustomer().getId() + SEPARATOR);
-                out.print(booking.getFlight().getId() + SEPARATOR);
-                out.print(booking.getBookingDate() + SEPARATOR);
-                out.print(booking.getSeatClass().name() + SEPARATOR);
-                out.print(booking.getPrice() + SEPARATOR);
-                out.print(booking.getStatus().name() + SEPARATOR);
-                out.print(booking.getSeatNumber() + SEPARATOR);
-                out.print(booking.getDiscountPercent() + SEPARATOR);
-                out.print(booking.isManualDiscount() + SEPARATOR);
-                out.print((booking.getPetType() != null ? booking.getPetType() : "") + SEPARATOR);
-                out.println(booking.getPetCharge());
+                String line = formatRecord(booking);
+                int statusStart = statusFieldStart(line);
+                index.add(new BookingIndex.Entry(booking.getBookingId(), offset,
+                        offset + utf8Length(line.substring(0, statusStart)), STATUS_WIDTH));
+                out.print(line);
+                out.print('\n');
+                offset += utf8Length(line) + 1;
             }
+            size[0] = offset;
+        });
+
+        return () -> journal.rewrite(point, () -> {
+            DurableFileWriter.forFile(path).write(content);
+            files.getIndex().rebuild(index, size[0]);
+        });
+    }
+
+    /**
+     * Formats a booking as a single {@code ::}-separated record line
+     * (without line terminator).
+     *
+     * @param booking the booking to format
+     * @return the record line
+     */
+    static String formatRecord(Booking booking) {
+        return booking.getBookingId() + SEPARATOR +
+               booking.getCustomer().getId() + SEPARATOR +
+               booking.getFlight().getId() + SEPARATOR +
+               booking.getBookingDate() + SEPARATOR +
+               booking.getSeatClass().name() + SEPARATOR +
+               booking.getPrice() + SEPARATOR +
+               padStatus(booking.getStatus()) + SEPARATOR +
+               (booking.getSeatNumber() != null ? booking.getSeatNumber() : "") + SEPARATOR +
+               booking.getDiscountPercent() + SEPARATOR +
+               booking.isManualDiscount() + SEPARATOR +
+               (booking.getPetType() != null ? booking.getPetType() : "") + SEPARATOR +
+               booking.getPetCharge();
+    }
+
+    /**
+     * Pads a status name with trailing spaces to {@link #STATUS_WIDTH}.
+     *
+     * @param status the booking status
+     * @return the fixed-width status field
+     */
+    static String padStatus(Booking.Status status) {
+        StringBuilder sb = new StringBuilder(STATUS_WIDTH).append(status.name());
+        while (sb.length() < STATUS_WIDTH) {
+            sb.append(' ');
         }
+        return sb.toString();
+    }
+
+    private static int statusWidth() {
+        int width = 0;
+        for (Booking.Status status : Booking.Status.values()) {
+            width = Math.max(width, status.name().length());
+        }
+        return width;
+    }
+
+    private static int statusFieldStart(String line) {
+        int index = 0;
+        for (int field = 0; field < 6; field++) {
+            index = line.indexOf(SEPARATOR, index) + SEPARATOR.length();
+        }
+        return index;
+    }
+
+    private static int utf8Length(String text) {
+        return text.getBytes(StandardCharsets.UTF_8).length;
     }
 }
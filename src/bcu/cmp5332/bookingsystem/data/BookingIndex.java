@@ -0,0 +1,276 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * On-disk offset index for {@code bookings.txt}, used to patch booking
+ * status fields in place.
+ * <p>
+ * For every booking in the bookings file, the index holds the byte offset of
+ * its record and of its status field. The status field is written
+ * fixed-width (see {@link BookingDataManager#STATUS_WIDTH}), so a status
+ * change can be persisted with one positioned write via {@link FileChannel}.
+ * The bookings file does not have to be read and rewritten. The index is
+ * kept in memory and saved next to the bookings file as {@code bookings.idx}.
+ * </p>
+ * <p>
+ * A record is only patched if the index was built for a file of the current
+ * size, the record still starts with its booking ID, and the bytes at the
+ * status offset still hold a status. A booking whose latest state lives in
+ * the {@link BookingJournal} is not patched either, because the journal
+ * would override the patch on the next load. In all of these cases the
+ * change is journalled instead.
+ * </p>
+ *
+ * @author Ashok
+ */
+public class BookingIndex {
+
+    private static final int MAGIC = 0x46424958; // "FBIX"
+    private static final int VERSION = 1;
+
+    private final DataFiles files;
+    private final Path path;
+    private final Path bookings;
+
+    private Map<Integer, Entry> entries;
+    private long indexedSize = -1;
+
+    /**
+     * Creates the index of a data directory's bookings file.
+     *
+     * @param files the data files holding the bookings file
+     */
+    BookingIndex(DataFiles files) {
+        this.files = files;
+        this.path = files.resolve(DataFiles.INDEX);
+        this.bookings = files.resolve(DataFiles.BOOKINGS);
+    }
+
+    /**
+     * Returns the index of the default bookings file.
+     *
+     * @return the index of the default {@link DataFiles}
+     */
+    public static BookingIndex getInstance() {
+        return DataFiles.getDefault().getIndex();
+    }
+
+    /**
+     * Persists a booking's new status, patching its status field in
+     * {@code bookings.txt} in place when possible and otherwise appending the
+     * change to the {@link BookingJournal}.
+     *
+     * @param fbs the flight booking system holding the booking
+     * @param booking the booking whose status changed
+     * @return {@code true} if the status was patched in place, {@code false} if it was journalled
+     * @throws IOException if neither the bookings file nor the journal can be written
+     */
+    public boolean saveStatus(FlightBookingSystem fbs, Booking booking) throws IOException {
+        BookingJournal journal = files.getJournal();
+        boolean patched = journal.patchSnapshot(() ->
+                !journal.contains(booking.getBookingId()) && patchStatus(booking.getBookingId(), booking.getStatus()));
+
+        if (patched) {
+            fbs.markBookingSaved(booking);
+        } else {
+            journal.record(fbs, eventFor(booking.getStatus()), booking);
+        }
+        return patched;
+    }
+
+    /**
+     * Replaces the index with the offsets of a freshly read or written bookings file.
+     *
+     * @param records the records of the file, with their offsets
+     * @param fileSize the size of the file in bytes
+     * @throws IOException if the index file cannot be written
+     */
+    synchronized void rebuild(Collection<Entry> records, long fileSize) throws IOException {
+        Map<Integer, Entry> rebuilt = new HashMap<>(records.size() * 4 / 3 + 1);
+        for (Entry entry : records) {
+            rebuilt.put(entry.bookingId, entry);
+        }
+        entries = rebuilt;
+        indexedSize = fileSize;
+        store();
+    }
+
+    /**
+     * Replaces the index after a load, saving it only if the saved copy does
+     * not describe a file of the same size.
+     *
+     * @param records the records of the file, with their offsets
+     * @param fileSize the size of the file in bytes
+     * @throws IOException if the index file cannot be written
+     */
+    synchronized void refresh(Collection<Entry> records, long fileSize) throws IOException {
+        if (savedSize() == fileSize) {
+            Map<Integer, Entry> rebuilt = new HashMap<>(records.size() * 4 / 3 + 1);
+            for (Entry entry : records) {
+                rebuilt.put(entry.bookingId, entry);
+            }
+            entries = rebuilt;
+            indexedSize = fileSize;
+        } else {
+            rebuild(records, fileSize);
+        }
+    }
+
+    private synchronized boolean patchStatus(int bookingId, Booking.Status status) throws IOException {
+        String text = BookingDataManager.padStatus(status);
+        if (entries == null) {
+            load();
+        }
+        Entry entry = entries.get(bookingId);
+        if (entry == null || entry.statusLength != text.length() || !Files.exists(bookings)) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(bookings, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() != indexedSize) {
+                return false;
+            }
+
+            byte[] prefix = (bookingId + BookingDataManager.SEPARATOR).getBytes(StandardCharsets.US_ASCII);
+            if (!readEquals(channel, entry.recordOffset, prefix) || !holdsStatus(channel, entry)) {
+                return false;
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+            long position = entry.statusOffset;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+            return true;
+        }
+    }
+
+    private static boolean holdsStatus(FileChannel channel, Entry entry) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(entry.statusLength);
+        readFully(channel, buffer, entry.statusOffset);
+        String current = new String(buffer.array(), StandardCharsets.US_ASCII).trim();
+        for (Booking.Status status : Booking.Status.values()) {
+            if (status.name().equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean readEquals(FileChannel channel, long position, byte[] expected) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(expected.length);
+        readFully(channel, buffer, position);
+        return !buffer.hasRemaining() && Arrays.equals(buffer.array(), expected);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                return;
+            }
+        }
+    }
+
+    private static BookingJournal.Event eventFor(Booking.Status status) {
+        switch (status) {
+            case CANCELLED:
+                return BookingJournal.Event.CANCEL;
+            case COMPLETED:
+                return BookingJournal.Event.COMPLETE;
+            default:
+                return BookingJournal.Event.EDIT;
+        }
+    }
+
+    private long savedSize() {
+        if (!Files.exists(path)) {
+            return -1;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            return in.readInt() == MAGIC && in.readInt() == VERSION ? in.readLong() : -1;
+        } catch (IOException ex) {
+            return -1;
+        }
+    }
+
+    private void load() {
+        entries = new HashMap<>();
+        indexedSize = -1;
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path));
+             DataInputStream in = new DataInputStream(file)) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            long size = in.readLong();
+            int count = in.readInt();
+            Map<Integer, Entry> loaded = new HashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry(in.readInt(), in.readLong(), in.readLong(), in.readInt());
+                loaded.put(entry.bookingId, entry);
+            }
+            entries = loaded;
+            indexedSize = size;
+        } catch (IOException ex) {
+            // An unreadable index only means status changes are journalled
+        }
+    }
+
+    private void store() throws IOException {
+        Map<Integer, Entry> snapshot = entries;
+        long size = indexedSize;
+        DurableFileWriter.forFile(path).write(stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(size);
+            out.writeInt(snapshot.size());
+            for (Entry entry : snapshot.values()) {
+                out.writeInt(entry.bookingId);
+                out.writeLong(entry.recordOffset);
+                out.writeLong(entry.statusOffset);
+                out.writeInt(entry.statusLength);
+            }
+            out.flush();
+        });
+    }
+
+    /**
+     * Location of one booking record and its status field in the bookings file.
+     */
+    static final class Entry {
+        final int bookingId;
+        final long recordOffset;
+        final long statusOffset;
+        final int statusLength;
+
+        Entry(int bookingId, long recordOffset, long statusOffset, int statusLength) {
+            this.bookingId = bookingId;
+            this.recordOffset = recordOffset;
+            this.statusOffset = statusOffset;
+            this.statusLength = statusLength;
+        }
+    }
+}
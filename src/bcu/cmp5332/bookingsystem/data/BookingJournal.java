@@ -0,0 +1,654 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Append-only write-ahead journal of booking events.
+ * <p>
+ * Instead of rewriting the whole bookings file after every change, commands
+ * append a single event line to the journal. Each line holds the event type
+ * followed by the full booking record in the same {@code ::} format used by
+ * {@link BookingDataManager} (removals only need the booking ID), so replaying
+ * the journal on top of the snapshot is a simple "last record per booking ID
+ * wins" merge.
+ * </p>
+ * <p>
+ * Appends use group commit: callers that arrive while another thread is
+ * flushing queue their lines and are made durable by the next single
+ * write and {@code force}. Once the journal grows past
+ * {@link #COMPACT_THRESHOLD} events it is compacted into a fresh snapshot
+ * and truncated. The snapshot can be rendered while the system is locked and
+ * written after the lock is released; events queued after it was rendered
+ * are kept in the journal.
+ * </p>
+ * <p>
+ * Every event ends in a newline, so a last line without one was torn by a
+ * crash or failed write before it became durable. Such a tail is cut off
+ * before the journal is read or appended to, so that the next event starts
+ * on a line of its own.
+ * </p>
+ *
+ * @author Ashok
+ */
+public class BookingJournal {
+
+    /**
+     * Types of booking events recorded in the journal.
+     */
+    public enum Event {
+        CREATE,
+        CANCEL,
+        COMPLETE,
+        EDIT,
+        REMOVE
+    }
+
+    private static final String SEPARATOR = "::";
+
+    /** Number of journal events after which the journal is folded into the snapshot. */
+    public static final int COMPACT_THRESHOLD = 1000;
+
+    private final Path path;
+    // The bookings file and index this journal is compacted into
+    private final DataFiles files;
+
+    // Guards pending and appended; never held while doing disk I/O.
+    private final Object queueLock = new Object();
+    // Serialises writers so only one batch hits the disk at a time.
+    private final Object writeLock = new Object();
+
+    private final List<String> pending = new ArrayList<>();
+    // IDs of bookings with at least one event in the journal file or queue
+    private final Set<Integer> journaled = new HashSet<>();
+    private long appended;
+    private long durable;
+    // Complete lines in the file, kept up to date by appends and rewrites; -1 until counted
+    private int entries = -1;
+    // Whether the file is known to end in a complete line; guarded by writeLock
+    private boolean tailChecked;
+    // Snapshots marked so far, and the last of them written; guarded by queueLock
+    private long snapshotsMarked;
+    private long snapshotWritten;
+
+    /**
+     * Creates a journal backed by the given file, which is compacted into
+     * the bookings file in the same directory.
+     *
+     * @param path the journal file
+     */
+    public BookingJournal(Path path) {
+        this.path = path;
+        this.files = new DataFiles(this, path);
+    }
+
+    /**
+     * Creates the journal of a data directory.
+     *
+     * @param path the journal file
+     * @param files the data files the journal is compacted into
+     */
+    BookingJournal(Path path, DataFiles files) {
+        this.path = path;
+        this.files = files;
+    }
+
+    /**
+     * Returns the journal shared by all commands and data managers.
+     *
+     * @return the journal of the default {@link DataFiles}
+     */
+    public static BookingJournal getInstance() {
+        return DataFiles.getDefault().getJournal();
+    }
+
+    /**
+     * Appends an event for the given booking and waits until it is durable.
+     *
+     * @param event the type of change made to the booking
+     * @param booking the booking in its state after the change
+     * @throws IOException if the journal cannot be written
+     */
+    public void append(Event event, Booking booking) throws IOException {
+        long ticket;
+        synchronized (queueLock) {
+            pending.add(event.name() + SEPARATOR + BookingDataManager.formatRecord(booking));
+            journaled.add(booking.getBookingId());
+            ticket = ++appended;
+        }
+        commit(ticket);
+    }
+
+    /**
+     * Appends {@link Event#REMOVE} for a booking that is no longer in memory
+     * and waits until it is durable.
+     *
+     * @param bookingId the ID of the removed booking
+     * @throws IOException if the journal cannot be written
+     */
+    public void appendRemoval(int bookingId) throws IOException {
+        long ticket;
+        synchronized (queueLock) {
+            pending.add(Event.REMOVE.name() + SEPARATOR + bookingId);
+            journaled.add(bookingId);
+            ticket = ++appended;
+        }
+        commit(ticket);
+    }
+
+    /**
+     * Appends an event and compacts the journal into the snapshot once it
+     * exceeds {@link #COMPACT_THRESHOLD} entries.
+     *
+     * @param fbs the flight booking system holding the current state
+     * @param event the type of change made to the booking
+     * @param booking the booking in its state after the change
+     * @throws IOException if the journal or snapshot cannot be written
+     */
+    public void record(FlightBookingSystem fbs, Event event, Booking booking) throws IOException {
+        // Marked before the record is rendered, so an edit made meanwhile stays unsaved.
+        // If the write fails the event stays queued for the next commit.
+        if (event == Event.REMOVE) {
+            fbs.markBookingRemovalSaved(booking.getBookingId());
+        } else {
+            fbs.markBookingSaved(booking);
+        }
+        append(event, booking);
+        if (size() >= COMPACT_THRESHOLD) {
+            compact(fbs);
+        }
+    }
+
+    /**
+     * Appends one event per changed or removed booking, made durable together
+     * by a single write, and compacts the journal if it has grown too long.
+     *
+     * @param fbs the flight booking system holding the current state
+     * @param changed bookings added or edited since they were last saved
+     * @param removedIds IDs of saved bookings that have since been removed
+     * @throws IOException if the journal or snapshot cannot be written
+     */
+    public void recordChanges(FlightBookingSystem fbs, List<Booking> changed, List<Integer> removedIds) throws IOException {
+        if (changed.isEmpty() && removedIds.isEmpty()) {
+            return;
+        }
+        markSaved(fbs, changed, removedIds);
+        long ticket;
+        synchronized (queueLock) {
+            for (int bookingId : removedIds) {
+                pending.add(Event.REMOVE.name() + SEPARATOR + bookingId);
+                journaled.add(bookingId);
+            }
+            for (Booking booking : changed) {
+                pending.add(Event.EDIT.name() + SEPARATOR + BookingDataManager.formatRecord(booking));
+                journaled.add(booking.getBookingId());
+            }
+            appended += removedIds.size() + changed.size();
+            ticket = appended;
+        }
+        commit(ticket);
+
+        if (size() >= COMPACT_THRESHOLD) {
+            compact(fbs);
+        }
+    }
+
+    /**
+     * Queues one event per changed or removed booking and marks them saved,
+     * leaving the write to the returned {@link DataManager.PendingWrite}, as
+     * {@link DataManager#prepareChanges(FlightBookingSystem)}.
+     *
+     * @param fbs the flight booking system holding the current state
+     * @param changed bookings added or edited since they were last saved
+     * @param removedIds IDs of saved bookings that have since been removed
+     * @return the commit of the queued events
+     */
+    DataManager.PendingWrite prepareChanges(FlightBookingSystem fbs, List<Booking> changed, List<Integer> removedIds) {
+        Map<Booking, Event> events = new LinkedHashMap<>();
+        for (Booking booking : changed) {
+            events.put(booking, Event.EDIT);
+        }
+        markSaved(fbs, changed, removedIds);
+        long ticket;
+        synchronized (queueLock) {
+            for (int bookingId : removedIds) {
+                pending.add(Event.REMOVE.name() + SEPARATOR + bookingId);
+                journaled.add(bookingId);
+            }
+            appended += removedIds.size();
+            ticket = queue(events);
+        }
+        return () -> commit(ticket);
+    }
+
+    /**
+     * Queues the given events and marks their bookings saved, leaving the
+     * write to the returned {@link DataManager.PendingWrite}.
+     *
+     * @param fbs the flight booking system holding the current state
+     * @param events the change made to each booking, in the order to append them
+     * @return the commit of the queued events
+     */
+    DataManager.PendingWrite prepareEvents(FlightBookingSystem fbs, Map<Booking, Event> events) {
+        for (Map.Entry<Booking, Event> entry : events.entrySet()) {
+            if (entry.getValue() == Event.REMOVE) {
+                fbs.markBookingRemovalSaved(entry.getKey().getBookingId());
+            } else {
+                fbs.markBookingSaved(entry.getKey());
+            }
+        }
+        long ticket;
+        synchronized (queueLock) {
+            ticket = queue(events);
+        }
+        return () -> commit(ticket);
+    }
+
+    // Bookings are marked saved before their records are rendered, so that an
+    // edit made in the meantime leaves them unsaved rather than being lost.
+    private static void markSaved(FlightBookingSystem fbs, List<Booking> changed, List<Integer> removedIds) {
+        for (int bookingId : removedIds) {
+            fbs.markBookingRemovalSaved(bookingId);
+        }
+        for (Booking booking : changed) {
+            fbs.markBookingSaved(booking);
+        }
+    }
+
+    /**
+     * Returns whether appending the given number of events would take the
+     * journal past {@link #COMPACT_THRESHOLD}.
+     *
+     * @param events the number of events about to be appended
+     * @return {@code true} if the journal should be compacted instead
+     * @throws IOException if the journal cannot be read
+     */
+    boolean needsCompaction(int events) throws IOException {
+        return size() + events >= COMPACT_THRESHOLD;
+    }
+
+    // Must hold queueLock
+    private long queue(Map<Booking, Event> events) {
+        for (Map.Entry<Booking, Event> entry : events.entrySet()) {
+            Booking booking = entry.getKey();
+            pending.add(entry.getValue() == Event.REMOVE
+                    ? Event.REMOVE.name() + SEPARATOR + booking.getBookingId()
+                    : entry.getValue().name() + SEPARATOR + BookingDataManager.formatRecord(booking));
+            journaled.add(booking.getBookingId());
+        }
+        appended += events.size();
+        return appended;
+    }
+
+    /**
+     * Writes a full bookings snapshot and truncates the journal.
+     *
+     * @param fbs the flight booking system holding the current state
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void compact(FlightBookingSystem fbs) throws IOException {
+        prepareCompaction(fbs).write();
+    }
+
+    /**
+     * Renders a full bookings snapshot now and leaves writing it and
+     * truncating the journal to the returned {@link DataManager.PendingWrite},
+     * so that a caller holding the system's lock can write after releasing it.
+     *
+     * @param fbs the flight booking system holding the current state
+     * @return the write of the snapshot and the journal
+     * @throws IOException if the snapshot cannot be rendered
+     */
+    DataManager.PendingWrite prepareCompaction(FlightBookingSystem fbs) throws IOException {
+        return new BookingDataManager(files).prepareSnapshot(fbs);
+    }
+
+    /**
+     * Returns the number of events currently held in the journal file.
+     *
+     * @return the journal length in events
+     * @throws IOException if the journal cannot be read
+     */
+    public int size() throws IOException {
+        synchronized (writeLock) {
+            if (entries < 0) {
+                entries = countLines();
+            }
+            return entries;
+        }
+    }
+
+    // Counts the complete lines of the file without decoding it. Must hold writeLock.
+    private int countLines() throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        int lines = 0;
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Marks the point a snapshot is about to be rendered at. Events queued
+     * before the mark are in the snapshot; later ones may not be, so
+     * {@link #rewrite(SnapshotPoint, SnapshotWriter)} keeps them in the journal.
+     *
+     * @return the point to pass to the rewrite once the snapshot is rendered
+     */
+    SnapshotPoint markSnapshot() {
+        synchronized (queueLock) {
+            return new SnapshotPoint(++snapshotsMarked, appended);
+        }
+    }
+
+    /**
+     * Writes a snapshot rendered at the given point through the given writer
+     * and then cuts the journal back to the events queued after that point,
+     * so that no event can slip in between the two steps. Does nothing if a
+     * snapshot marked later has already been written.
+     *
+     * @param point the point the snapshot was rendered at
+     * @param snapshot writes the complete bookings snapshot
+     * @throws IOException if the snapshot or journal cannot be written
+     */
+    void rewrite(SnapshotPoint point, SnapshotWriter snapshot) throws IOException {
+        synchronized (writeLock) {
+            synchronized (queueLock) {
+                if (point.generation < snapshotWritten) {
+                    return;
+                }
+            }
+
+            // Durable events after the point are the last lines of the file
+            Deque<String> kept = new ArrayDeque<>();
+            if (durable > point.ticket) {
+                if (!tailChecked) {
+                    trimTornTail();
+                }
+                long keep = durable - point.ticket;
+                try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        kept.addLast(line);
+                        if (kept.size() > keep) {
+                            kept.removeFirst();
+                        }
+                    }
+                }
+            }
+
+            snapshot.write();
+            if (kept.isEmpty()) {
+                Files.deleteIfExists(path);
+            } else {
+                StringBuilder sb = new StringBuilder();
+                for (String line : kept) {
+                    sb.append(line).append('\n');
+                }
+                byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+                DurableFileWriter.writeAtomically(path, out -> out.write(bytes));
+            }
+            entries = kept.size();
+            tailChecked = true;
+
+            synchronized (queueLock) {
+                if (point.ticket > durable) {
+                    // Queued events up to the point are in the snapshot
+                    pending.subList(0, (int) (point.ticket - durable)).clear();
+                    durable = point.ticket;
+                }
+                journaled.clear();
+                for (String line : kept) {
+                    journaled.add(bookingIdOf(line));
+                }
+                for (String line : pending) {
+                    journaled.add(bookingIdOf(line));
+                }
+                snapshotWritten = point.generation;
+            }
+        }
+    }
+
+    private static int bookingIdOf(String line) {
+        int start = line.indexOf(SEPARATOR) + SEPARATOR.length();
+        int end = line.indexOf(SEPARATOR, start);
+        return Integer.parseInt(end < 0 ? line.substring(start) : line.substring(start, end));
+    }
+
+    /**
+     * Returns whether the journal holds an event for the given booking, in
+     * which case the journal, not the snapshot, has its latest state.
+     *
+     * @param bookingId the booking ID
+     * @return {@code true} if the booking has been journalled since the last snapshot
+     */
+    public boolean contains(int bookingId) {
+        synchronized (queueLock) {
+            return journaled.contains(bookingId);
+        }
+    }
+
+    /**
+     * Runs an in-place update of the snapshot file while no snapshot rewrite
+     * or journal append can run. The update is skipped while a rendered
+     * snapshot waits to be written, since that snapshot would replace it.
+     *
+     * @param patch the update to run
+     * @return the result of the update, or {@code false} if it was skipped
+     * @throws IOException if the update fails
+     */
+    boolean patchSnapshot(SnapshotPatch patch) throws IOException {
+        synchronized (writeLock) {
+            synchronized (queueLock) {
+                if (snapshotWritten < snapshotsMarked) {
+                    return false;
+                }
+            }
+            return patch.apply();
+        }
+    }
+
+    /**
+     * Replays the journal on top of the snapshot records.
+     * <p>
+     * A torn final line (e.g. from a crash mid-append) is removed from the
+     * file and ignored; a malformed complete line is reported as an error.
+     * </p>
+     *
+     * @param records snapshot records keyed by booking ID, updated in place
+     * @throws IOException if the journal cannot be read
+     * @throws FlightBookingSystemException if a journal line is malformed
+     */
+    void replay(Map<Integer, BookingRecord> records) throws IOException, FlightBookingSystemException {
+        synchronized (writeLock) {
+            if (!Files.exists(path)) {
+                entries = 0;
+                tailChecked = true;
+                return;
+            }
+            trimTornTail();
+            int lines = 0;
+            try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    lines++;
+                    try {
+                        int split = line.indexOf(SEPARATOR);
+                        Event event = Event.valueOf(line.substring(0, split));
+                        String[] properties = line.substring(split + SEPARATOR.length()).split(SEPARATOR, -1);
+
+                        int bookingId;
+                        if (event == Event.REMOVE) {
+                            // Removals only need the ID; older entries carry the full record
+                            bookingId = Integer.parseInt(properties[0]);
+                            records.remove(bookingId);
+                        } else {
+                            BookingRecord record = BookingRecord.parse(properties);
+                            bookingId = record.bookingId;
+                            records.put(bookingId, record);
+                        }
+                        synchronized (queueLock) {
+                            journaled.add(bookingId);
+                        }
+                    } catch (RuntimeException ex) {
+                        throw new FlightBookingSystemException("Error parsing booking journal on line " + lines + ": " + ex.getMessage());
+                    }
+                }
+            }
+            entries = lines;
+        }
+    }
+
+    private void commit(long ticket) throws IOException {
+        synchronized (writeLock) {
+            if (durable >= ticket) {
+                return; // flushed as part of another thread's batch
+            }
+
+            List<String> batch;
+            long upTo;
+            synchronized (queueLock) {
+                batch = new ArrayList<>(pending);
+                pending.clear();
+                upTo = appended;
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for (String line : batch) {
+                sb.append(line).append('\n');
+            }
+
+            try {
+                if (!tailChecked) {
+                    trimTornTail();
+                }
+            } catch (IOException ex) {
+                synchronized (queueLock) {
+                    pending.addAll(0, batch);
+                }
+                throw ex;
+            }
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            } catch (IOException ex) {
+                // Put the batch back so a later commit retries it instead of dropping it.
+                synchronized (queueLock) {
+                    pending.addAll(0, batch);
+                }
+                // Part of the batch may have been written
+                tailChecked = false;
+                throw ex;
+            }
+
+            durable = upTo;
+            if (entries >= 0) {
+                entries += batch.size();
+            }
+        }
+    }
+
+    /**
+     * Cuts the journal back to its last complete line, dropping a line left
+     * unfinished by a crash or failed write. Must hold writeLock.
+     *
+     * @throws IOException if the journal cannot be read or truncated
+     */
+    private void trimTornTail() throws IOException {
+        if (Files.exists(path)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long end = channel.size();
+                ByteBuffer buffer = ByteBuffer.allocate(4096);
+                long keep = end;
+                while (keep > 0) {
+                    int length = (int) Math.min(buffer.capacity(), keep);
+                    buffer.clear().limit(length);
+                    long from = keep - length;
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer, from + buffer.position()) < 0) {
+                            throw new IOException("Booking journal shrank while being read");
+                        }
+                    }
+                    int newline = length - 1;
+                    while (newline >= 0 && buffer.get(newline) != '\n') {
+                        newline--;
+                    }
+                    if (newline >= 0) {
+                        keep = from + newline + 1;
+                        break;
+                    }
+                    keep = from;
+                }
+                if (keep < end) {
+                    // The entry count only covers complete lines, so it stays right
+                    channel.truncate(keep);
+                    channel.force(false);
+                }
+            }
+        }
+        tailChecked = true;
+    }
+
+    /**
+     * The point in the journal a snapshot was rendered at.
+     */
+    static final class SnapshotPoint {
+        // Orders snapshots by when they were rendered
+        final long generation;
+        // The last event already reflected in the snapshot
+        final long ticket;
+
+        SnapshotPoint(long generation, long ticket) {
+            this.generation = generation;
+            this.ticket = ticket;
+        }
+    }
+
+    /**
+     * Callback that writes a full bookings snapshot.
+     */
+    interface SnapshotWriter {
+        void write() throws IOException;
+    }
+
+    /**
+     * Callback that updates the snapshot file in place.
+     */
+    interface SnapshotPatch {
+        boolean apply() throws IOException;
+    }
+}
@@ -0,0 +1,84 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.model.Booking;
+
+import java.time.LocalDate;
+
+/**
+ * Parsed fields of one stored booking, before it is linked to its
+ * {@code Customer} and {@code Flight}.
+ * <p>
+ * Both the bookings snapshot and the booking journal are parsed into this
+ * form so that the journal can be merged over the snapshot by booking ID
+ * before any model objects are created.
+ * </p>
+ */
+final class BookingRecord {
+
+    int bookingId;
+    int customerId;
+    int flightId;
+    LocalDate bookingDate;
+    Booking.SeatClass seatClass;
+    double price;
+    Booking.Status status;
+    String seatNumber;
+    double discountPercent;
+    boolean manualDiscount;
+    String petType;
+    double petCharge;
+
+    // Location in the bookings file, or -1 for records read from the journal
+    long recordOffset = -1;
+    long statusOffset = -1;
+    int statusLength;
+
+    /**
+     * Parses the current record of a mapped reader.
+     *
+     * @param reader the reader positioned on a booking record
+     * @return the parsed record
+     */
+    static BookingRecord read(MappedRecordReader reader) {
+        BookingRecord record = new BookingRecord();
+        record.bookingId = reader.intField(0);
+        record.customerId = reader.intField(1);
+        record.flightId = reader.intField(2);
+        record.bookingDate = reader.dateField(3);
+        record.seatClass = reader.enumField(4, Booking.SeatClass.values(), true);
+        record.price = reader.doubleField(5);
+        record.status = reader.enumField(6, Booking.Status.values(), false);
+        record.seatNumber = reader.fieldCount() > 7 ? reader.stringField(7) : null;
+        record.discountPercent = reader.fieldCount() > 8 ? reader.doubleField(8) : 0.0;
+        record.manualDiscount = reader.fieldCount() > 9 && reader.booleanField(9);
+        record.petType = reader.fieldCount() > 10 ? reader.stringField(10) : null;
+        record.petCharge = reader.fieldCount() > 11 ? reader.doubleField(11) : 0.0;
+        record.recordOffset = reader.recordOffset();
+        record.statusOffset = reader.fieldOffset(6);
+        record.statusLength = reader.fieldLength(6);
+        return record;
+    }
+
+    /**
+     * Parses a record that has already been split into fields.
+     *
+     * @param properties the booking fields
+     * @return the parsed record
+     */
+    static BookingRecord parse(String[] properties) {
+        BookingRecord record = new BookingRecord();
+        record.bookingId = Integer.parseInt(properties[0]);
+        record.customerId = Integer.parseInt(properties[1]);
+        record.flightId = Integer.parseInt(properties[2]);
+        record.bookingDate = LocalDate.parse(properties[3]);
+        record.seatClass = Booking.SeatClass.valueOf(properties[4].toUpperCase());
+        record.price = Double.parseDouble(properties[5]);
+        record.status = Booking.Status.valueOf(properties[6].trim());
+        record.seatNumber = properties.length > 7 ? properties[7] : null;
+        record.discountPercent = properties.length > 8 ? Double.parseDouble(properties[8]) : 0.0;
+        record.manualDiscount = properties.length > 9 && Boolean.parseBoolean(properties[9]);
+        record.petType = properties.length > 10 ? properties[10] : null;
+        record.petCharge = properties.length > 11 ? Double.parseDouble(properties[11]) : 0.0;
+        return record;
+    }
+}
@@ -0,0 +1,518 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.model.Booking;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Indexed store of cancelled bookings that can be rebooked.
+ * <p>
+ * Each cancellation is one {@code ::} separated line in
+ * {@code cancelbooking.txt}:
+ * {@code id::customerId::flightId::bookingId::seatClass::seatNumber::price::discountPercent::manualDiscount::petType::petCharge}.
+ * The store keeps every cancellation in memory, indexed by its ID, by
+ * customer ID and by flight ID, so looking up a customer's or a flight's
+ * cancellations does not scan the file.
+ * </p>
+ * <p>
+ * Adding a cancellation appends one line. Removing one appends a
+ * {@code REMOVE::id} tombstone instead of rewriting the file. Once the
+ * tombstones and stale lines outnumber the live cancellations, the file is
+ * compacted in the background by writing only the live lines. A failed
+ * background compaction leaves the file valid; the failure is kept and
+ * thrown by the next {@link #add(Booking)}, {@link #remove(int)} or
+ * {@link #flush()}.
+ * Lines in the old free-text format ({@code Customer ID: 2, Flight ID: 1, ...})
+ * are read as well, and the file is rewritten in the new format the first
+ * time it is loaded.
+ * </p>
+ *
+ * @author Ashok
+ */
+public class CancellationStore {
+
+    private static final String SEPARATOR = "::";
+    private static final String TOMBSTONE = "REMOVE";
+    private static final String LEGACY_PREFIX = "Customer ID: ";
+    private static final String RESOURCE = "./resources/data/cancelbooking.txt";
+
+    /** Minimum number of dead lines before the file is compacted. */
+    public static final int COMPACT_THRESHOLD = 64;
+
+    private static final CancellationStore INSTANCE = new CancellationStore(Paths.get(RESOURCE));
+
+    private final Path path;
+
+    private final Map<Integer, Cancellation> byId = new LinkedHashMap<>();
+    private final Map<Integer, Set<Integer>> byCustomer = new HashMap<>();
+    private final Map<Integer, Set<Integer>> byFlight = new HashMap<>();
+
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cancellation-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private boolean loaded;
+    private boolean compactionScheduled;
+    private int nextId = 1;
+    // Tombstones and superseded or unreadable lines still in the file
+    private int deadLines;
+    // Failure of a background compaction not yet reported to a caller
+    private IOException compactionFailure;
+
+    /**
+     * Creates a store backed by the given file.
+     *
+     * @param path the cancellations file
+     */
+    CancellationStore(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Returns the store backed by the default cancellations file.
+     *
+     * @return the shared cancellation store
+     */
+    public static CancellationStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Records a cancelled booking so that it can be rebooked later.
+     *
+     * @param booking the booking that was cancelled
+     * @return the stored cancellation
+     * @throws IOException if the cancellation cannot be written, or an
+     *         earlier background compaction failed
+     */
+    public synchronized Cancellation add(Booking booking) throws IOException {
+        throwCompactionFailure();
+        ensureLoaded();
+        Cancellation cancellation = new Cancellation(nextId, booking.getCustomer().getId(),
+                booking.getFlight().getId(), booking.getBookingId(), booking.getSeatClass(),
+                booking.getSeatNumber(), booking.getPrice(), booking.getDiscountPercent(),
+                booking.isManualDiscount(), booking.getPetType(), booking.getPetCharge());
+        append(format(cancellation));
+        nextId++;
+        index(cancellation);
+        return cancellation;
+    }
+
+    /**
+     * Removes a cancellation, typically once it has been rebooked. The
+     * removal is persisted as a tombstone line.
+     *
+     * @param cancellationId the ID of the cancellation
+     * @return {@code true} if the cancellation existed
+     * @throws IOException if the tombstone cannot be written, or an earlier
+     *         background compaction failed
+     */
+    public synchronized boolean remove(int cancellationId) throws IOException {
+        throwCompactionFailure();
+        ensureLoaded();
+        if (!byId.containsKey(cancellationId)) {
+            return false;
+        }
+        append(TOMBSTONE + SEPARATOR + cancellationId);
+        unindex(byId.get(cancellationId));
+        deadLines += 2;
+        scheduleCompactionIfNeeded();
+        return true;
+    }
+
+    /**
+     * Returns a cancellation by its ID.
+     *
+     * @param cancellationId the ID of the cancellation
+     * @return the cancellation, or {@code null} if there is none
+     * @throws IOException if the store cannot be loaded
+     */
+    public synchronized Cancellation get(int cancellationId) throws IOException {
+        ensureLoaded();
+        return byId.get(cancellationId);
+    }
+
+    /**
+     * Returns the cancellations of a customer, oldest first.
+     *
+     * @param customerId the customer ID
+     * @return the customer's cancellations
+     * @throws IOException if the store cannot be loaded
+     */
+    public synchronized List<Cancellation> findByCustomer(int customerId) throws IOException {
+        ensureLoaded();
+        return lookup(byCustomer.get(customerId));
+    }
+
+    /**
+     * Returns the cancellations on a flight, oldest first.
+     *
+     * @param flightId the flight ID
+     * @return the flight's cancellations
+     * @throws IOException if the store cannot be loaded
+     */
+    public synchronized List<Cancellation> findByFlight(int flightId) throws IOException {
+        ensureLoaded();
+        return lookup(byFlight.get(flightId));
+    }
+
+    /**
+     * Returns the most recent cancellation of a customer on a flight.
+     *
+     * @param customerId the customer ID
+     * @param flightId the flight ID
+     * @return the cancellation, or {@code null} if there is none
+     * @throws IOException if the store cannot be loaded
+     */
+    public synchronized Cancellation find(int customerId, int flightId) throws IOException {
+        Cancellation found = null;
+        for (Cancellation cancellation : findByCustomer(customerId)) {
+            if (cancellation.getFlightId() == flightId) {
+                found = cancellation;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Rewrites the file with only the live cancellations, dropping tombstones
+     * and removed entries.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized void compact() throws IOException {
+        ensureLoaded();
+        List<String> lines = new ArrayList<>(byId.size());
+        for (Cancellation cancellation : byId.values()) {
+            lines.add(format(cancellation));
+        }
+        DurableFileWriter.forFile(path.toString()).writeText(out -> {
+            for (String line : lines) {
+                out.println(line);
+            }
+        });
+        deadLines = 0;
+    }
+
+    /**
+     * Waits for a background compaction in progress to finish and reports
+     * any compaction failure not yet reported.
+     *
+     * @throws IOException if a background compaction failed, or the wait was interrupted
+     */
+    public void flush() throws IOException {
+        try {
+            // The compactor runs one task at a time, so this waits for any scheduled compaction
+            compactor.submit(() -> { }).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for cancellations to be compacted");
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+        synchronized (this) {
+            throwCompactionFailure();
+        }
+    }
+
+    // Must hold the monitor
+    private void throwCompactionFailure() throws IOException {
+        if (compactionFailure != null) {
+            IOException ex = compactionFailure;
+            compactionFailure = null;
+            throw ex;
+        }
+    }
+
+    private List<Cancellation> lookup(Set<Integer> ids) {
+        if (ids == null) {
+            return Collections.emptyList();
+        }
+        List<Cancellation> result = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            result.add(byId.get(id));
+        }
+        return result;
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        if (compactionScheduled || deadLines < COMPACT_THRESHOLD || deadLines < byId.size()) {
+            return;
+        }
+        compactionScheduled = true;
+        compactor.execute(() -> {
+            synchronized (this) {
+                compactionScheduled = false;
+                try {
+                    compact();
+                } catch (IOException ex) {
+                    // The file is still valid; compaction is retried after the next removal
+                    if (compactionFailure == null) {
+                        compactionFailure = ex;
+                    } else {
+                        compactionFailure.addSuppressed(ex);
+                    }
+                }
+            }
+        });
+    }
+
+    private void append(String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    private void ensureLoaded() throws IOException {
+        if (loaded) {
+            return;
+        }
+        boolean legacy = false;
+        if (Files.exists(path)) {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+                    if (line.startsWith(LEGACY_PREFIX)) {
+                        legacy |= readLegacy(line);
+                    } else {
+                        readLine(line);
+                    }
+                }
+            }
+        }
+        loaded = true;
+        if (legacy) {
+            compact();
+        }
+    }
+
+    private void readLine(String line) {
+        String[] properties = line.split(SEPARATOR, -1);
+        try {
+            if (properties[0].equals(TOMBSTONE)) {
+                Cancellation removed = byId.get(Integer.parseInt(properties[1]));
+                if (removed != null) {
+                    unindex(removed);
+                    deadLines++;
+                }
+                deadLines++;
+                return;
+            }
+            Cancellation cancellation = new Cancellation(
+                    Integer.parseInt(properties[0]),
+                    Integer.parseInt(properties[1]),
+                    Integer.parseInt(properties[2]),
+                    Integer.parseInt(properties[3]),
+                    Booking.SeatClass.valueOf(properties[4]),
+                    properties[5],
+                    Double.parseDouble(properties[6]),
+                    Double.parseDouble(properties[7]),
+                    Boolean.parseBoolean(properties[8]),
+                    properties[9],
+                    Double.parseDouble(properties[10]));
+            index(cancellation);
+            nextId = Math.max(nextId, cancellation.getId() + 1);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+            // A torn append from a crash; dropped by the next compaction
+            deadLines++;
+        }
+    }
+
+    private boolean readLegacy(String line) {
+        Map<String, String> fields = new HashMap<>();
+        for (String part : line.split(", ")) {
+            int colon = part.indexOf(": ");
+            if (colon > 0) {
+                fields.put(part.substring(0, colon), part.substring(colon + 2));
+            }
+        }
+        try {
+            Cancellation cancellation = new Cancellation(nextId,
+                    Integer.parseInt(fields.get("Customer ID")),
+                    Integer.parseInt(fields.get("Flight ID")),
+                    0,
+                    Booking.SeatClass.valueOf(fields.get("SeatClass").toUpperCase()),
+                    fields.get("SeatNumber"),
+                    Double.parseDouble(fields.get("Price").replace("$", "")),
+                    Double.parseDouble(fields.get("DiscountPercent")),
+                    Boolean.parseBoolean(fields.get("ManualDiscount")),
+                    fields.get("PetType"),
+                    Double.parseDouble(fields.get("PetCharge")));
+            index(cancellation);
+            nextId++;
+        } catch (IllegalArgumentException | NullPointerException ex) {
+            deadLines++;
+        }
+        return true;
+    }
+
+    private void index(Cancellation cancellation) {
+        Integer id = cancellation.getId();
+        if (byId.put(id, cancellation) != null) {
+            deadLines++;
+        }
+        byCustomer.computeIfAbsent(cancellation.getCustomerId(), k -> new LinkedHashSet<>()).add(id);
+        byFlight.computeIfAbsent(cancellation.getFlightId(), k -> new LinkedHashSet<>()).add(id);
+    }
+
+    private void unindex(Cancellation cancellation) {
+        Integer id = cancellation.getId();
+        byId.remove(id);
+        removeFrom(byCustomer, cancellation.getCustomerId(), id);
+        removeFrom(byFlight, cancellation.getFlightId(), id);
+    }
+
+    private static void removeFrom(Map<Integer, Set<Integer>> index, int key, Integer id) {
+        Set<Integer> ids = index.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private static String format(Cancellation c) {
+        return c.getId() + SEPARATOR +
+               c.getCustomerId() + SEPARATOR +
+               c.getFlightId() + SEPARATOR +
+               c.getBookingId() + SEPARATOR +
+               c.getSeatClass().name() + SEPARATOR +
+               c.getSeatNumber() + SEPARATOR +
+               c.getPrice() + SEPARATOR +
+               c.getDiscountPercent() + SEPARATOR +
+               c.isManualDiscount() + SEPARATOR +
+               c.getPetType() + SEPARATOR +
+               c.getPetCharge();
+    }
+
+    /**
+     * A cancelled booking held by the store.
+     */
+    public static final class Cancellation {
+        private final int id;
+        private final int customerId;
+        private final int flightId;
+        private final int bookingId;
+        private final Booking.SeatClass seatClass;
+        private final String seatNumber;
+        private final double price;
+        private final double discountPercent;
+        private final boolean manualDiscount;
+        private final String petType;
+        private final double petCharge;
+
+        Cancellation(int id, int customerId, int flightId, int bookingId, Booking.SeatClass seatClass,
+                     String seatNumber, double price, double discountPercent, boolean manualDiscount,
+                     String petType, double petCharge) {
+            this.id = id;
+            this.customerId = customerId;
+            this.flightId = flightId;
+            this.bookingId = bookingId;
+            this.seatClass = seatClass;
+            this.seatNumber = seatNumber;
+            this.price = price;
+            this.discountPercent = discountPercent;
+            this.manualDiscount = manualDiscount;
+            this.petType = petType;
+            this.petCharge = petCharge;
+        }
+
+        /** Returns the cancellation ID. */
+        public int getId() {
+            return id;
+        }
+
+        /** Returns the ID of the customer whose booking was cancelled. */
+        public int getCustomerId() {
+            return customerId;
+        }
+
+        /** Returns the ID of the flight of the cancelled booking. */
+        public int getFlightId() {
+            return flightId;
+        }
+
+        /** Returns the ID of the cancelled booking, or 0 if it is not known. */
+        public int getBookingId() {
+            return bookingId;
+        }
+
+        /** Returns the seat class of the cancelled booking. */
+        public Booking.SeatClass getSeatClass() {
+            return seatClass;
+        }
+
+        /** Returns the seat number of the cancelled booking. */
+        public String getSeatNumber() {
+            return seatNumber;
+        }
+
+        /** Returns the price paid for the cancelled booking. */
+        public double getPrice() {
+            return price;
+        }
+
+        /** Returns the discount percentage of the cancelled booking. */
+        public double getDiscountPercent() {
+            return discountPercent;
+        }
+
+        /** Returns true if the discount was applied manually. */
+        public boolean isManualDiscount() {
+            return manualDiscount;
+        }
+
+        /** Returns the pet type of the cancelled booking. */
+        public String getPetType() {
+            return petType;
+        }
+
+        /** Returns the pet charge of the cancelled booking. */
+        public double getPetCharge() {
+            return petCharge;
+        }
+
+        @Override
+        public String toString() {
+            return "Flight ID: " + flightId +
+                   ", SeatClass: " + seatClass +
+                   ", SeatNumber: " + seatNumber +
+                   ", Price: $" + price +
+                   ", DiscountPercent: " + discountPercent +
+                   ", ManualDiscount: " + manualDiscount +
+                   ", PetType: " + petType +
+                   ", PetCharge: " + petCharge;
+        }
+    }
+}
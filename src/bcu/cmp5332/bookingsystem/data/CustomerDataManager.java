@@ -5,8 +5,10 @@ import bcu.cmp5332.bookingsystem.model.Customer;
 import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
 
 import java.io.*;
+import java.nio.file.Path;
 import java.time.LocalDate;
-import java.util.Scanner;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Handles loading and storing customer data to and from a file.
@@ -21,7 +23,23 @@ import java.util.Scanner;
  */
 public class CustomerDataManager implements DataManager {
 
-    private final String RESOURCE = "./resources/data/customers.txt";
+    private final Path path;
+
+    /**
+     * Creates a manager for the file in the default {@link DataFiles}.
+     */
+    public CustomerDataManager() {
+        this(DataFiles.getDefault());
+    }
+
+    /**
+     * Creates a manager for the file in the given data directory.
+     *
+     * @param files the data files to read and write
+     */
+    public CustomerDataManager(DataFiles files) {
+        this.path = files.resolve(DataFiles.CUSTOMERS);
+    }
     private static final String SEPARATOR = "::";
 
     /**
@@ -33,44 +51,67 @@ public class CustomerDataManager implements DataManager {
      */
     @Override
     public void loadData(FlightBookingSystem fbs) throws IOException, FlightBookingSystemException {
-        try (Scanner sc = new Scanner(new File(RESOURCE))) {
-            int lineIndex = 1;
-            while (sc.hasNextLine()) {
-                String line = sc.nextLine();
-                String[] properties = line.split(SEPARATOR, -1);
+        addCustomers(fbs, parseCustomers());
+        fbs.markCustomersSaved();
+    }
 
-                if (properties.length < 12) {
+    /**
+     * Parses all customers from the file without adding them to a system, so
+     * that parsing can run concurrently with the other data files.
+     *
+     * @return the parsed customers in file order
+     * @throws IOException if an I/O error occurs while reading the file
+     * @throws FlightBookingSystemException if the file format is invalid or a parsing error occurs
+     */
+    List<Customer> parseCustomers() throws IOException, FlightBookingSystemException {
+        List<Customer> customers = new ArrayList<>();
+        try (MappedRecordReader reader = new MappedRecordReader(path)) {
+            while (reader.next()) {
+                int lineIndex = reader.lineNumber();
+
+                if (reader.fieldCount() < 12) {
                     throw new FlightBookingSystemException("Invalid customer data format on line " + lineIndex);
                 }
 
                 try {
-                    int id = Integer.parseInt(properties[0]);
-                    String name = properties[1];
-                    String phone = properties[2];
-                    int age = Integer.parseInt(properties[3]);
-                    String address = properties[4];
-                    String country = properties[5];
-                    String passportNumber = properties[6];
-                    LocalDate passportExpiryDate = LocalDate.parse(properties[7]);
-                    boolean disabled = Boolean.parseBoolean(properties[8]);
-                    String email = properties[9].isEmpty() ? "" : properties[9];
-                    LocalDate dob = properties[10].isEmpty() ? LocalDate.of(1900, 1, 1) : LocalDate.parse(properties[10]);
-                    String gender = properties.length >= 12 ? properties[11] : "Unspecified";
+                    int id = reader.intField(0);
+                    String name = reader.stringField(1);
+                    String phone = reader.stringField(2);
+                    int age = reader.intField(3);
+                    String address = reader.stringField(4);
+                    String country = reader.stringField(5);
+                    String passportNumber = reader.stringField(6);
+                    LocalDate passportExpiryDate = reader.dateField(7);
+                    boolean disabled = reader.booleanField(8);
+                    String email = reader.stringField(9);
+                    LocalDate dob = reader.isEmpty(10) ? LocalDate.of(1900, 1, 1) : reader.dateField(10);
+                    String gender = reader.stringField(11);
 
                     Customer customer = new Customer(id, name, phone, age, address, country,
                             passportNumber, passportExpiryDate, disabled, email, dob, gender);
                     customer.setDisabled(disabled);
-
-                    // Directly add customer to system without triggering ID increment
-                    fbs.addCustomerDirect(customer);
+                    customers.add(customer);
 
                 } catch (Exception ex) {
                     throw new FlightBookingSystemException("Error parsing customer on line " + lineIndex + ": " + ex.getMessage());
                 }
-
-                lineIndex++;
             }
         }
+        return customers;
+    }
+
+    /**
+     * Adds parsed customers to the system in file order.
+     *
+     * @param fbs the {@link FlightBookingSystem} to add the customers to
+     * @param customers the parsed customers
+     * @throws FlightBookingSystemException if a customer ID or passport number is duplicated
+     */
+    static void addCustomers(FlightBookingSystem fbs, List<Customer> customers) throws FlightBookingSystemException {
+        for (Customer customer : customers) {
+            // Directly add customer to system without triggering ID increment
+            fbs.addCustomerDirect(customer);
+        }
     }
 
     /**
@@ -81,21 +122,65 @@ public class CustomerDataManager implements DataManager {
      */
     @Override
     public void storeData(FlightBookingSystem fbs) throws IOException {
-        try (PrintWriter out = new PrintWriter(new FileWriter(RESOURCE))) {
-            for (Customer customer : fbs.getAllCustomers()) {
-                out.println(customer.getId() + SEPARATOR +
-                            customer.getName() + SEPARATOR +
-                            customer.getPhone() + SEPARATOR +
-                            customer.getAge() + SEPARATOR +
-                            customer.getAddress() + SEPARATOR +
-                            customer.getCountry() + SEPARATOR +
-                            customer.getPassportNumber() + SEPARATOR +
-                            customer.getPassportExpiryDate() + SEPARATOR +
-                            customer.isDisabled() + SEPARATOR +
-                            customer.getEmail() + SEPARATOR +
-                            customer.getDob() + SEPARATOR +
-                            customer.getGender());
-            }
+        DurableFileWriter.forFile(path).writeText(out -> printCustomers(fbs, out));
+        fbs.markCustomersSaved();
+    }
+
+    /**
+     * Renders the customers file now and writes it later, so the system only has
+     * to be locked while the file is rendered.
+     *
+     * @param fbs the flight booking system containing all the customer records
+     * @return the write of the rendered file
+     * @throws IOException if the file cannot be rendered
+     */
+    @Override
+    public PendingWrite prepareChanges(FlightBookingSystem fbs) throws IOException {
+        return prepareData(fbs);
+    }
+
+    /**
+     * Renders the whole customers file now and writes it later, as
+     * {@link #prepareChanges(FlightBookingSystem)} does.
+     *
+     * @param fbs the flight booking system containing all the customer records
+     * @return the write of the rendered file
+     * @throws IOException if the file cannot be rendered
+     */
+    @Override
+    public PendingWrite prepareData(FlightBookingSystem fbs) throws IOException {
+        // Marked before rendering, so an edit made meanwhile stays unsaved
+        fbs.markCustomersSaved();
+        DurableFileWriter.Content content = DurableFileWriter.captureText(out -> printCustomers(fbs, out));
+        return () -> DurableFileWriter.forFile(path).write(content);
+    }
+
+    private void printCustomers(FlightBookingSystem fbs, PrintWriter out) {
+        for (Customer customer : fbs.getAllCustomers()) {
+            out.println(customer.getId() + SEPARATOR +
+                        customer.getName() + SEPARATOR +
+                        customer.getPhone() + SEPARATOR +
+                        customer.getAge() + SEPARATOR +
+                        customer.getAddress() + SEPARATOR +
+                        customer.getCountry() + SEPARATOR +
+                        customer.getPassportNumber() + SEPARATOR +
+                        customer.getPassportExpiryDate() + SEPARATOR +
+                        customer.isDisabled() + SEPARATOR +
+                        customer.getEmail() + SEPARATOR +
+                        customer.getDob() + SEPARATOR +
+                        customer.getGender());
         }
     }
+
+    /**
+     * Returns whether any customer was added, edited or removed since the
+     * customers were last loaded or stored.
+     *
+     * @param fbs the {@link FlightBookingSystem} to check
+     * @return true if the customers file is out of date
+     */
+    @Override
+    public boolean hasChanges(FlightBookingSystem fbs) {
+        return fbs.hasUnsavedCustomerChanges();
+    }
 }
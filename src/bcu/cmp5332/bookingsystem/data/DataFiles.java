@@ -0,0 +1,107 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The directory the text data files, the {@link BinarySnapshot} and the
+ * booking journal and index are kept in.
+ * <p>
+ * The application uses {@link #getDefault()}, which is
+ * {@code ./resources/data}. Another directory, such as a temporary one in a
+ * test, gets its own {@link BookingJournal} and {@link BookingIndex}, since
+ * both cache the state of their files. Create one {@code DataFiles} per
+ * directory and pass it to {@link FlightBookingSystemData#load(DataFiles)},
+ * {@link FlightBookingSystemData#store(bcu.cmp5332.bookingsystem.model.FlightBookingSystem, DataFiles)}
+ * and the data managers.
+ * </p>
+ *
+ * @author Ashok
+ */
+public final class DataFiles {
+
+    static final String FLIGHTS = "flights.txt";
+    static final String CUSTOMERS = "customers.txt";
+    static final String BOOKINGS = "bookings.txt";
+    static final String IDS = "ids.txt";
+    static final String JOURNAL = "bookings.journal";
+    static final String INDEX = "bookings.idx";
+    static final String SNAPSHOT = "snapshot.bin";
+
+    private static final DataFiles DEFAULT = new DataFiles(Paths.get("./resources/data"));
+
+    private final Path directory;
+    private final BookingJournal journal;
+    private final BookingIndex index;
+
+    /**
+     * Creates the data files of the given directory.
+     *
+     * @param directory the directory holding the data files
+     */
+    public DataFiles(Path directory) {
+        this.directory = directory;
+        this.journal = new BookingJournal(directory.resolve(JOURNAL), this);
+        this.index = new BookingIndex(this);
+    }
+
+    /**
+     * Creates the data files around a journal created on its own, which are
+     * kept in the journal's directory.
+     *
+     * @param journal the journal
+     * @param journalPath the journal file
+     */
+    DataFiles(BookingJournal journal, Path journalPath) {
+        Path parent = journalPath.toAbsolutePath().getParent();
+        this.directory = parent;
+        this.journal = journal;
+        this.index = new BookingIndex(this);
+    }
+
+    /**
+     * Returns the data files used by the application.
+     *
+     * @return the files in {@code ./resources/data}
+     */
+    public static DataFiles getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the directory holding the data files.
+     *
+     * @return the data directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the booking journal of this directory.
+     *
+     * @return the booking journal
+     */
+    public BookingJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Returns the offset index of this directory's bookings file.
+     *
+     * @return the booking index
+     */
+    public BookingIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the path of a data file in this directory.
+     *
+     * @param fileName the name of the file
+     * @return the path of the file
+     */
+    Path resolve(String fileName) {
+        return directory.resolve(fileName);
+    }
+}
@@ -35,5 +35,72 @@ public interface DataManager {
      * @throws IOException if an I/O error occurs during storing
      */
     public void storeData(FlightBookingSystem fbs) throws IOException;
-    
+
+    /**
+     * Returns whether this manager's part of the system has changed since it
+     * was last loaded or stored. Implementations that do not track changes
+     * always report {@code true}.
+     * 
+     * @param fbs the flight booking system instance to check
+     * @return true if {@link #storeChanges(FlightBookingSystem)} has anything to write
+     */
+    public default boolean hasChanges(FlightBookingSystem fbs) {
+        return true;
+    }
+
+    /**
+     * Persists only what changed since the last load or store. By default this
+     * is a full {@link #storeData(FlightBookingSystem)}.
+     * 
+     * @param fbs the flight booking system instance containing data to save
+     * @throws IOException if an I/O error occurs during storing
+     */
+    public default void storeChanges(FlightBookingSystem fbs) throws IOException {
+        storeData(fbs);
+    }
+
+    /**
+     * Prepares the changes for {@link #storeChanges(FlightBookingSystem)}
+     * without doing the slow part. Everything that reads the system happens
+     * now, and the returned write only does disk I/O, so it can run after the
+     * caller has released its lock on the system. The changes count as saved
+     * once this returns. By default the changes are stored immediately.
+     *
+     * @param fbs the flight booking system instance containing data to save
+     * @return the write that persists the prepared changes
+     * @throws IOException if an I/O error occurs while preparing
+     */
+    public default PendingWrite prepareChanges(FlightBookingSystem fbs) throws IOException {
+        storeChanges(fbs);
+        return () -> { };
+    }
+
+    /**
+     * Prepares a full {@link #storeData(FlightBookingSystem)} the same way
+     * {@link #prepareChanges(FlightBookingSystem)} prepares the changes: the
+     * system is read now and the returned write only does disk I/O. By
+     * default the data is stored immediately.
+     *
+     * @param fbs the flight booking system instance containing data to save
+     * @return the write that persists the prepared data
+     * @throws IOException if an I/O error occurs while preparing
+     */
+    public default PendingWrite prepareData(FlightBookingSystem fbs) throws IOException {
+        storeData(fbs);
+        return () -> { };
+    }
+
+    /**
+     * Disk writes prepared by {@link #prepareChanges(FlightBookingSystem)}
+     * or {@link #prepareData(FlightBookingSystem)}.
+     */
+    public interface PendingWrite {
+
+        /**
+         * Performs the prepared writes.
+         *
+         * @throws IOException if an I/O error occurs during writing
+         */
+        void write() throws IOException;
+    }
 }
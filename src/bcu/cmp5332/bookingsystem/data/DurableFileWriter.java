@@ -0,0 +1,257 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Crash-safe, group-committed writer for the data files.
+ * <p>
+ * A file is never truncated in place. Its new contents are written to a
+ * temporary file next to it, forced to disk, and then renamed over the old
+ * file in one atomic step. After a crash, the file holds either the old
+ * contents or the new contents, never a partial write.
+ * </p>
+ * <p>
+ * Store requests for the same file that arrive within
+ * {@link #COALESCE_MILLIS} of each other are coalesced. The first caller
+ * becomes the leader, waits briefly for followers, and then writes the
+ * contents produced by the most recent request once. Every caller whose
+ * request was covered returns when that single write is durable, so a burst
+ * of saves costs one {@code fsync} rather than one per save.
+ * </p>
+ *
+ * @author Ashok
+ */
+public final class DurableFileWriter {
+
+    /** How long a leader waits for further store requests before writing. */
+    public static final long COALESCE_MILLIS = 2;
+
+    private static final Map<Path, DurableFileWriter> WRITERS = new ConcurrentHashMap<>();
+
+    private final Path path;
+
+    // Guards the fields below; never held while doing disk I/O.
+    private final Object lock = new Object();
+
+    private Content latest;
+    private long requested;
+    private long completed;
+    private boolean writing;
+
+    private DurableFileWriter(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Returns the writer shared by every caller storing the given file.
+     *
+     * @param file the data file path
+     * @return the writer for that file
+     */
+    public static DurableFileWriter forFile(String file) {
+        return forFile(Paths.get(file));
+    }
+
+    /**
+     * Returns the writer shared by every caller storing the given file.
+     *
+     * @param file the data file path
+     * @return the writer for that file
+     */
+    public static DurableFileWriter forFile(Path file) {
+        return WRITERS.computeIfAbsent(file.toAbsolutePath().normalize(), DurableFileWriter::new);
+    }
+
+    /**
+     * Replaces the file with the given contents and waits until the new
+     * contents are durable. The contents may be written by another caller's
+     * thread, together with requests that arrived at about the same time.
+     *
+     * @param content writes the complete new file contents
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Content content) throws IOException {
+        synchronized (lock) {
+            latest = content;
+            long ticket = ++requested;
+            while (true) {
+                if (completed >= ticket) {
+                    return; // written as part of another caller's batch
+                }
+                if (!writing) {
+                    writing = true;
+                    break; // this caller becomes the leader
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to write " + path);
+                }
+            }
+        }
+
+        try {
+            try {
+                Thread.sleep(COALESCE_MILLIS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to write " + path);
+            }
+
+            Content batch;
+            long upTo;
+            synchronized (lock) {
+                batch = latest;
+                upTo = requested;
+            }
+
+            // If this fails the batch is not marked complete, so a waiting
+            // caller takes over as leader and retries with the latest contents.
+            writeAtomically(path, batch);
+
+            synchronized (lock) {
+                completed = upTo;
+            }
+        } finally {
+            synchronized (lock) {
+                writing = false;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Replaces a text file with the lines printed by the given callback and
+     * waits until they are durable, as {@link #write(Content)}. Text is
+     * written as UTF-8, the encoding the loaders read.
+     *
+     * @param content prints the complete new file contents
+     * @throws IOException if the file cannot be written
+     */
+    public void writeText(TextContent content) throws IOException {
+        write(text(content));
+    }
+
+    /**
+     * Produces file contents now and returns them for writing later. This
+     * lets a caller render a file while it holds a lock on the data, and
+     * write it after releasing the lock.
+     *
+     * @param content writes the complete new file contents
+     * @return contents that write the captured bytes
+     * @throws IOException if the contents cannot be produced
+     */
+    public static Content capture(Content content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 * 1024);
+        content.writeTo(bytes);
+        return bytes::writeTo;
+    }
+
+    /**
+     * Produces text file contents now and returns them for writing later, as
+     * {@link #capture(Content)}.
+     *
+     * @param content prints the complete new file contents
+     * @return contents that write the captured UTF-8 text
+     * @throws IOException if the contents cannot be produced
+     */
+    public static Content captureText(TextContent content) throws IOException {
+        return capture(text(content));
+    }
+
+    private static Content text(TextContent content) {
+        return stream -> {
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8));
+            content.printTo(out);
+            out.flush();
+            if (out.checkError()) {
+                throw new IOException("Unable to write text contents");
+            }
+        };
+    }
+
+    /**
+     * Writes a file through a forced temporary file and an atomic rename,
+     * without coalescing.
+     *
+     * @param path the file to replace
+     * @param content writes the complete new file contents
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeAtomically(Path path, Content content) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+            content.writeTo(out);
+            out.flush();
+            channel.force(true);
+        }
+
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        forceDirectory(path.toAbsolutePath().getParent());
+    }
+
+    // Makes the rename itself durable. Not every platform can open a
+    // directory as a channel, so failures here are ignored.
+    private static void forceDirectory(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            // best effort
+        }
+    }
+
+    /**
+     * Callback that writes the complete contents of a data file.
+     */
+    public interface Content {
+
+        /**
+         * Writes the file contents to the given stream. The stream must not be closed.
+         *
+         * @param out the stream to write to
+         * @throws IOException if the contents cannot be written
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Callback that prints the complete contents of a text data file.
+     */
+    public interface TextContent {
+
+        /**
+         * Prints the file contents to the given writer.
+         *
+         * @param out the writer to print to
+         * @throws IOException if the contents cannot be produced
+         */
+        void printTo(PrintWriter out) throws IOException;
+    }
+}
@@ -1,57 +1,323 @@
 package bcu.cmp5332.bookingsystem.data;
 
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.Customer;
+import bcu.cmp5332.bookingsystem.model.Flight;
 import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Utility class that manages the loading and storing of all flight booking system data.
  * <p>
  * This class maintains a static list of {@link DataManager} instances responsible
- * for handling different parts of the data (flights, customers, bookings).
+ * for handling different parts of the data (flights, customers, bookings and
+ * ID high-water marks).
  * It provides methods to load the entire system state from files and to persist
- * the current system state back to those files.
+ * the current system state back to those files. The files are those of the
+ * default {@link DataFiles} unless another directory is given.
  * </p>
  */
 public class FlightBookingSystemData {
     
-    private static final List<DataManager> dataManagers = new ArrayList<>();
+    private static final List<DataManager> dataManagers = managersFor(DataFiles.getDefault());
+
+    private static volatile Map<String, Long> lastLoadTimings = Collections.emptyMap();
     
-    // Static initializer block that registers all DataManager implementations.
-    static {
-        dataManagers.add(new FlightDataManager());
-        dataManagers.add(new CustomerDataManager());
-        dataManagers.add(new BookingDataManager());
+    // Registers all DataManager implementations for the files of a data directory, in store order.
+    private static List<DataManager> managersFor(DataFiles files) {
+        List<DataManager> managers = new ArrayList<>();
+        managers.add(new FlightDataManager(files));
+        managers.add(new CustomerDataManager(files));
+        managers.add(new BookingDataManager(files));
+        managers.add(new IdDataManager(files));
+        return managers;
     }
-    
+
+    private static List<DataManager> dataManagers(DataFiles files) {
+        return files == DataFiles.getDefault() ? dataManagers : managersFor(files);
+    }
+
     /**
-     * Loads the entire flight booking system data by delegating to all registered
-     * data managers.
+     * Loads the entire flight booking system data. The {@link BinarySnapshot} is
+     * used when it is up to date with the text files; a snapshot that cannot be
+     * read is deleted. Otherwise the text files are loaded in parallel:
+     * <ul>
+     *   <li>flights and customers, which do not depend on each other, are parsed concurrently;</li>
+     *   <li>bookings are parsed at the same time in byte-range chunks on the common {@link ForkJoinPool};</li>
+     *   <li>only adding the results to the system and linking bookings to their
+     *       customers and flights runs serially, once all parsing has finished.</li>
+     * </ul>
+     * Either way, the ID high-water marks saved by the {@link IdDataManager}
+     * are restored last.
+     * The time taken by each stage is available from {@link #getLastLoadTimings()}
+     * and is printed when the {@code fbs.loadTimings} system property is {@code true}.
      * 
      * @return a populated {@link FlightBookingSystem} instance with loaded data
      * @throws FlightBookingSystemException if any data manager encounters an error
      * @throws IOException if there is an I/O problem reading data files
      */
     public static FlightBookingSystem load() throws FlightBookingSystemException, IOException {
+        return load(DataFiles.getDefault());
+    }
+
+    /**
+     * Loads the entire flight booking system data from the files of the given
+     * data directory, as {@link #load()} does for the default one.
+     *
+     * @param files the data files to load
+     * @return a populated {@link FlightBookingSystem} instance with loaded data
+     * @throws FlightBookingSystemException if any data manager encounters an error
+     * @throws IOException if there is an I/O problem reading data files
+     */
+    public static FlightBookingSystem load(DataFiles files) throws FlightBookingSystemException, IOException {
+        FlightDataManager flightDataManager = new FlightDataManager(files);
+        CustomerDataManager customerDataManager = new CustomerDataManager(files);
+        BookingDataManager bookingDataManager = new BookingDataManager(files);
+        IdDataManager idDataManager = new IdDataManager(files);
+        Map<String, Long> timings = new ConcurrentHashMap<>();
+        long started = System.nanoTime();
+
+        if (BinarySnapshot.isCurrent(files)) {
+            try {
+                FlightBookingSystem fbs = new FlightBookingSystem();
+                BinarySnapshot.load(fbs, files);
+                idDataManager.loadData(fbs);
+                timings.put("snapshot", elapsedMillis(started));
+                reportTimings(timings, started, "snapshot");
+                return archiveIfEnabled(fbs);
+            } catch (IOException | FlightBookingSystemException ex) {
+                // An unreadable snapshot is only a cache: drop it so later starts do not
+                // retry it, and fall back to the text files. The next store writes a new one.
+                try {
+                    BinarySnapshot.delete(files);
+                } catch (IOException deleteFailed) {
+                    // Left in place; the next store replaces it
+                }
+            }
+        }
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        Future<List<Flight>> flights = pool.submit(() -> {
+            long start = System.nanoTime();
+            List<Flight> result = flightDataManager.parseFlights();
+            timings.put("flights", elapsedMillis(start));
+            return result;
+        });
+        Future<List<Customer>> customers = pool.submit(() -> {
+            long start = System.nanoTime();
+            List<Customer> result = customerDataManager.parseCustomers();
+            timings.put("customers", elapsedMillis(start));
+            return result;
+        });
+
+        long start = System.nanoTime();
+        Map<Integer, BookingRecord> bookings = bookingDataManager.parseBookings(pool);
+        timings.put("bookings", elapsedMillis(start));
+
+        List<Flight> parsedFlights = await(flights);
+        List<Customer> parsedCustomers = await(customers);
+
+        start = System.nanoTime();
         FlightBookingSystem fbs = new FlightBookingSystem();
-        for (DataManager dm : dataManagers) {
-            dm.loadData(fbs);
+        for (Flight flight : parsedFlights) {
+            fbs.addFlight(flight);
+        }
+        CustomerDataManager.addCustomers(fbs, parsedCustomers);
+        fbs.markFlightsSaved();
+        fbs.markCustomersSaved();
+        BookingDataManager.replayAndLink(fbs, bookings, files.getJournal());
+        idDataManager.loadData(fbs);
+        timings.put("link", elapsedMillis(start));
+
+        reportTimings(timings, started, "flights", "customers", "bookings", "link");
+        return archiveIfEnabled(fbs);
+    }
+
+    /**
+     * Moves settled bookings of past flights into the system's off-heap
+     * {@link bcu.cmp5332.bookingsystem.model.BookingArchive} when the
+     * {@code fbs.archive} system property is {@code true}, so that a long
+     * booking history does not stay on the heap.
+     *
+     * @param fbs the loaded system
+     * @return the same system
+     */
+    private static FlightBookingSystem archiveIfEnabled(FlightBookingSystem fbs) {
+        if (Boolean.getBoolean("fbs.archive")) {
+            int archived = fbs.archiveSettledBookings(fbs.getSystemDate());
+            if (Boolean.getBoolean("fbs.loadTimings")) {
+                System.out.println("Archived " + archived + " settled bookings off-heap");
+            }
         }
         return fbs;
     }
 
     /**
-     * Stores all data from the given {@link FlightBookingSystem} by delegating to all
-     * registered data managers.
+     * Returns how long each stage of the most recent {@link #load()} took, in
+     * milliseconds, in pipeline order. The {@code total} entry is the wall-clock
+     * time of the whole load; since flights, customers and bookings are parsed
+     * concurrently it is less than the sum of the stages.
+     *
+     * @return the stage timings of the last load
+     */
+    public static Map<String, Long> getLastLoadTimings() {
+        return lastLoadTimings;
+    }
+
+    /**
+     * Waits for a loading task and rethrows its failure with its original type.
+     *
+     * @param task the task to wait for
+     * @param <T> the task result type
+     * @return the task result
+     * @throws IOException if the task failed to read a file
+     * @throws FlightBookingSystemException if the task found malformed data
+     */
+    static <T> T await(Future<T> task) throws IOException, FlightBookingSystemException {
+        try {
+            return task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading data", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            // ForkJoinPool wraps checked exceptions thrown by a Callable in a plain RuntimeException
+            while (cause != null && cause.getClass() == RuntimeException.class && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof FlightBookingSystemException) {
+                throw (FlightBookingSystemException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static long elapsedMillis(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static void reportTimings(Map<String, Long> timings, long started, String... stages) {
+        Map<String, Long> ordered = new LinkedHashMap<>();
+        for (String stage : stages) {
+            ordered.put(stage, timings.get(stage));
+        }
+        ordered.put("total", elapsedMillis(started));
+        lastLoadTimings = Collections.unmodifiableMap(ordered);
+
+        if (Boolean.getBoolean("fbs.loadTimings")) {
+            System.out.println("Data loaded in " + ordered.get("total") + " ms " + ordered);
+        }
+    }
+
+    /**
+     * Stores the changes made to the given {@link FlightBookingSystem} since it
+     * was loaded or last stored.
+     * <p>
+     * Each registered data manager is asked whether its part of the system has
+     * changed: unchanged files are not touched, flights and customers are
+     * rewritten only when one of them was added, edited or removed, and booking
+     * changes are appended to the {@link BookingJournal} record by record. The
+     * {@link BinarySnapshot} is refreshed only when a text file was rewritten.
+     * </p>
      * 
      * @param fbs the flight booking system instance containing data to save
      * @throws IOException if there is an I/O problem writing data files
      */
     public static void store(FlightBookingSystem fbs) throws IOException {
+        store(fbs, DataFiles.getDefault());
+    }
+
+    /**
+     * Stores the changes made to the given {@link FlightBookingSystem} in the
+     * files of the given data directory, as {@link #store(FlightBookingSystem)}
+     * does for the default one.
+     *
+     * @param fbs the flight booking system instance containing data to save
+     * @param files the data files to write
+     * @throws IOException if there is an I/O problem writing data files
+     */
+    public static void store(FlightBookingSystem fbs, DataFiles files) throws IOException {
+        for (DataManager dm : dataManagers(files)) {
+            if (dm.hasChanges(fbs)) {
+                dm.storeChanges(fbs);
+            }
+        }
+        if (!BinarySnapshot.isCurrent(files)) {
+            BinarySnapshot.store(fbs, files);
+        }
+    }
+
+    /**
+     * Prepares the same changes as {@link #store(FlightBookingSystem)} but
+     * leaves the disk writes to the returned {@link DataManager.PendingWrite}.
+     * Only this call reads the system, so a caller can hold the system's lock
+     * for the preparation alone and write after releasing it. The snapshot is
+     * only encoded when a text file is about to be rewritten or it is already
+     * out of date, so a save that only appends to the journal stays cheap.
+     *
+     * @param fbs the flight booking system instance containing data to save
+     * @return the writes that persist the prepared changes, in order
+     * @throws IOException if the changes cannot be prepared
+     */
+    static DataManager.PendingWrite prepareStore(FlightBookingSystem fbs) throws IOException {
+        DataFiles files = DataFiles.getDefault();
+        // Decided before the preparations below mark the changes saved
+        boolean rewritesText = fbs.hasUnsavedFlightChanges() || fbs.hasUnsavedCustomerChanges()
+                || new BookingDataManager(files).rewritesOnSave(fbs);
+        List<DataManager.PendingWrite> writes = new ArrayList<>();
+        for (DataManager dm : dataManagers) {
+            if (dm.hasChanges(fbs)) {
+                writes.add(dm.prepareChanges(fbs));
+            }
+        }
+        DataManager.PendingWrite snapshot = rewritesText || !BinarySnapshot.isCurrent(files)
+                ? BinarySnapshot.prepare(fbs, files) : null;
+        return () -> {
+            for (DataManager.PendingWrite write : writes) {
+                write.write();
+            }
+            if (snapshot != null && !BinarySnapshot.isCurrent(files)) {
+                snapshot.write();
+            }
+        };
+    }
+
+    /**
+     * Prepares a rewrite of every data file from the given system, whether or
+     * not it has changed, leaving the disk writes to the returned
+     * {@link DataManager.PendingWrite} as {@link #prepareStore(FlightBookingSystem)}
+     * does. Used to recover after a prepared write failed, since the prepared
+     * changes were already marked as saved.
+     *
+     * @param fbs the flight booking system instance containing data to save
+     * @return the writes that rewrite every data file, in order
+     * @throws IOException if the data cannot be prepared
+     */
+    static DataManager.PendingWrite prepareStoreAll(FlightBookingSystem fbs) throws IOException {
+        List<DataManager.PendingWrite> writes = new ArrayList<>();
         for (DataManager dm : dataManagers) {
-            dm.storeData(fbs);
+            writes.add(dm.prepareData(fbs));
         }
+        writes.add(BinarySnapshot.prepare(fbs, DataFiles.getDefault()));
+        return () -> {
+            for (DataManager.PendingWrite write : writes) {
+                write.write();
+            }
+        };
     }
 }
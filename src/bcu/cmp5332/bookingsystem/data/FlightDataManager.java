@@ -7,9 +7,12 @@ import bcu.cmp5332.bookingsystem.model.Booking.SeatClass;
 import bcu.cmp5332.bookingsystem.model.FlightStatus;
 
 import java.io.*;
+import java.nio.file.Path;
+import java.time.DateTimeException;
 import java.time.LocalDate;
 import java.time.LocalTime;
-import java.util.Scanner;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Handles the loading and storing of flight data from and to a text file.
@@ -29,7 +32,23 @@ import java.util.Scanner;
 public class FlightDataManager implements DataManager {
 
     private final String SEPARATOR = "::";
-    private final String RESOURCE = "./resources/data/flights.txt";
+    private final Path path;
+
+    /**
+     * Creates a manager for the file in the default {@link DataFiles}.
+     */
+    public FlightDataManager() {
+        this(DataFiles.getDefault());
+    }
+
+    /**
+     * Creates a manager for the file in the given data directory.
+     *
+     * @param files the data files to read and write
+     */
+    public FlightDataManager(DataFiles files) {
+        this.path = files.resolve(DataFiles.FLIGHTS);
+    }
 
     /**
      * Loads flight data from the file and populates the {@link FlightBookingSystem}.
@@ -40,44 +59,59 @@ public class FlightDataManager implements DataManager {
      */
     @Override
     public void loadData(FlightBookingSystem fbs) throws IOException, FlightBookingSystemException, NumberFormatException {
-        try (Scanner sc = new Scanner(new File(RESOURCE))) {
-            int line_idx = 1;
-            while (sc.hasNextLine()) {
-                String line = sc.nextLine().trim();
+        for (Flight flight : parseFlights()) {
+            fbs.addFlight(flight);
+        }
+        fbs.markFlightsSaved();
+    }
 
-                if (line.endsWith(SEPARATOR)) {
-                    line = line.substring(0, line.length() - SEPARATOR.length());
+    /**
+     * Parses all flights from the file without adding them to a system, so
+     * that parsing can run concurrently with the other data files.
+     *
+     * @return the parsed flights in file order
+     * @throws IOException if there is an issue reading the file
+     * @throws FlightBookingSystemException if a line is malformed or data cannot be parsed
+     */
+    List<Flight> parseFlights() throws IOException, FlightBookingSystemException {
+        List<Flight> flights = new ArrayList<>();
+        try (MappedRecordReader reader = new MappedRecordReader(path)) {
+            while (reader.next()) {
+                int lineIndex = reader.lineNumber();
+
+                // A trailing "::" leaves one extra, empty field
+                int fieldCount = reader.fieldCount();
+                if (fieldCount == 18 && reader.isEmpty(17)) {
+                    fieldCount = 17;
                 }
 
-                String[] properties = line.split(SEPARATOR, -1);
-
-                if (properties.length != 17) {
-                    throw new FlightBookingSystemException("Invalid line format on line " + line_idx);
+                if (fieldCount != 17) {
+                    throw new FlightBookingSystemException("Invalid line format on line " + lineIndex);
                 }
 
                 try {
-                    int id = Integer.parseInt(properties[0].trim());
-                    String flightNumber = properties[1].trim();
-                    String origin = properties[2].trim();
-                    String destination = properties[3].trim();
-                    String airlineName = properties[15].trim();
-                    LocalDate departureDate = LocalDate.parse(properties[4].trim());
+                    int id = reader.intField(0);
+                    String flightNumber = reader.trimmedStringField(1);
+                    String origin = reader.trimmedStringField(2);
+                    String destination = reader.trimmedStringField(3);
+                    String airlineName = reader.trimmedStringField(15);
+                    LocalDate departureDate = reader.dateField(4);
 
-                    int economyCapacity = Integer.parseInt(properties[5].trim());
-                    int businessCapacity = Integer.parseInt(properties[6].trim());
-                    int firstClassCapacity = Integer.parseInt(properties[7].trim());
+                    int economyCapacity = reader.intField(5);
+                    int businessCapacity = reader.intField(6);
+                    int firstClassCapacity = reader.intField(7);
 
-                    double economyPrice = Double.parseDouble(properties[8].trim());
-                    double businessPrice = Double.parseDouble(properties[9].trim());
-                    double firstPrice = Double.parseDouble(properties[10].trim());
+                    double economyPrice = reader.doubleField(8);
+                    double businessPrice = reader.doubleField(9);
+                    double firstPrice = reader.doubleField(10);
 
-                    FlightStatus status = FlightStatus.valueOf(properties[11].trim());
+                    FlightStatus status = reader.enumField(11, FlightStatus.values(), false);
 
-                    LocalTime departureTime = LocalTime.parse(properties[12].trim());
-                    LocalTime arrivalTime = LocalTime.parse(properties[13].trim());
-                    LocalDate arrivalDate = LocalDate.parse(properties[14].trim());
+                    LocalTime departureTime = reader.timeField(12);
+                    LocalTime arrivalTime = reader.timeField(13);
+                    LocalDate arrivalDate = reader.dateField(14);
 
-                    boolean isInternational = Boolean.parseBoolean(properties[16].trim());
+                    boolean isInternational = reader.booleanField(16);
 
                     Flight flight = new Flight(id, flightNumber, airlineName, origin, destination, departureDate,
                             departureTime, arrivalTime, arrivalDate, isInternational);
@@ -91,15 +125,14 @@ public class FlightDataManager implements DataManager {
                     flight.setPriceForClass(SeatClass.FIRST, firstPrice);
 
                     flight.setStatus(status);
-                    fbs.addFlight(flight);
+                    flights.add(flight);
 
-                } catch (IllegalArgumentException ex) {
-                    throw new FlightBookingSystemException("Unable to parse flight data on line " + line_idx + ": " + ex);
+                } catch (IllegalArgumentException | DateTimeException ex) {
+                    throw new FlightBookingSystemException("Unable to parse flight data on line " + lineIndex + ": " + ex);
                 }
-
-                line_idx++;
             }
         }
+        return flights;
     }
 
     /**
@@ -110,28 +143,72 @@ public class FlightDataManager implements DataManager {
      */
     @Override
     public void storeData(FlightBookingSystem fbs) throws IOException {
-        try (PrintWriter out = new PrintWriter(new FileWriter(RESOURCE))) {
-            for (Flight flight : fbs.getAllFlights()) {
-                out.println(
-                    flight.getId() + SEPARATOR +
-                    flight.getFlightNumber() + SEPARATOR +
-                    flight.getOrigin() + SEPARATOR +
-                    flight.getDestination() + SEPARATOR +
-                    flight.getDepartureDate() + SEPARATOR +
-                    flight.getCapacityForClass(SeatClass.ECONOMY) + SEPARATOR +
-                    flight.getCapacityForClass(SeatClass.BUSINESS) + SEPARATOR +
-                    flight.getCapacityForClass(SeatClass.FIRST) + SEPARATOR +
-                    flight.getPriceForClass(SeatClass.ECONOMY) + SEPARATOR +
-                    flight.getPriceForClass(SeatClass.BUSINESS) + SEPARATOR +
-                    flight.getPriceForClass(SeatClass.FIRST) + SEPARATOR +
-                    flight.getStatus() + SEPARATOR +
-                    flight.getDepartureTime() + SEPARATOR +
-                    flight.getArrivalTime() + SEPARATOR +
-                    flight.getArrivalDate() + SEPARATOR +
-                    flight.getAirlineName() + SEPARATOR +
-                    flight.getInternational()
-                );
-            }
+        DurableFileWriter.forFile(path).writeText(out -> printFlights(fbs, out));
+        fbs.markFlightsSaved();
+    }
+
+    /**
+     * Renders the flights file now and writes it later, so the system only has
+     * to be locked while the file is rendered.
+     *
+     * @param fbs the flight booking system containing all the flight records
+     * @return the write of the rendered file
+     * @throws IOException if the file cannot be rendered
+     */
+    @Override
+    public PendingWrite prepareChanges(FlightBookingSystem fbs) throws IOException {
+        return prepareData(fbs);
+    }
+
+    /**
+     * Renders the whole flights file now and writes it later, as
+     * {@link #prepareChanges(FlightBookingSystem)} does.
+     *
+     * @param fbs the flight booking system containing all the flight records
+     * @return the write of the rendered file
+     * @throws IOException if the file cannot be rendered
+     */
+    @Override
+    public PendingWrite prepareData(FlightBookingSystem fbs) throws IOException {
+        // Marked before rendering, so an edit made meanwhile stays unsaved
+        fbs.markFlightsSaved();
+        DurableFileWriter.Content content = DurableFileWriter.captureText(out -> printFlights(fbs, out));
+        return () -> DurableFileWriter.forFile(path).write(content);
+    }
+
+    private void printFlights(FlightBookingSystem fbs, PrintWriter out) {
+        for (Flight flight : fbs.getAllFlights()) {
+            out.println(
+                flight.getId() + SEPARATOR +
+                flight.getFlightNumber() + SEPARATOR +
+                flight.getOrigin() + SEPARATOR +
+                flight.getDestination() + SEPARATOR +
+                flight.getDepartureDate() + SEPARATOR +
+                flight.getCapacityForClass(SeatClass.ECONOMY) + SEPARATOR +
+                flight.getCapacityForClass(SeatClass.BUSINESS) + SEPARATOR +
+                flight.getCapacityForClass(SeatClass.FIRST) + SEPARATOR +
+                flight.getPriceForClass(SeatClass.ECONOMY) + SEPARATOR +
+                flight.getPriceForClass(SeatClass.BUSINESS) + SEPARATOR +
+                flight.getPriceForClass(SeatClass.FIRST) + SEPARATOR +
+                flight.getStatus() + SEPARATOR +
+                flight.getDepartureTime() + SEPARATOR +
+                flight.getArrivalTime() + SEPARATOR +
+                flight.getArrivalDate() + SEPARATOR +
+                flight.getAirlineName() + SEPARATOR +
+                flight.getInternational()
+            );
         }
     }
+
+    /**
+     * Returns whether any flight was added, edited or removed since the
+     * flights were last loaded or stored.
+     *
+     * @param fbs the flight booking system to check
+     * @return true if the flights file is out of date
+     */
+    @Override
+    public boolean hasChanges(FlightBookingSystem fbs) {
+        return fbs.hasUnsavedFlightChanges();
+    }
 }
@@ -0,0 +1,141 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import bcu.cmp5332.bookingsystem.model.IdAllocator;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Handles loading and storing the ID high-water marks of the system's
+ * {@link IdAllocator}.
+ * <p>
+ * The marks are kept next to the other data files, one line per kind of ID
+ * in the form {@code booking::120}. Loading them after the data means IDs
+ * of customers, flights and bookings that were removed are not handed out
+ * again. A missing file is not an error: the marks then come from the IDs
+ * found in the loaded data.
+ * </p>
+ *
+ * @author Ashok
+ */
+public class IdDataManager implements DataManager {
+
+    private static final IdAllocator.Kind[] KINDS = IdAllocator.Kind.values();
+
+    private final Path path;
+
+    /**
+     * Creates a manager for the file in the default {@link DataFiles}.
+     */
+    public IdDataManager() {
+        this(DataFiles.getDefault());
+    }
+
+    /**
+     * Creates a manager for the file in the given data directory.
+     *
+     * @param files the data files to read and write
+     */
+    public IdDataManager(DataFiles files) {
+        this.path = files.resolve(DataFiles.IDS);
+    }
+
+    /**
+     * Restores the saved high-water marks into the system's allocator.
+     *
+     * @param fbs the flight booking system whose data is already loaded
+     * @throws IOException if an I/O error occurs while reading the file
+     * @throws FlightBookingSystemException if a line is malformed
+     */
+    @Override
+    public void loadData(FlightBookingSystem fbs) throws IOException, FlightBookingSystemException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        IdAllocator ids = fbs.getIdAllocator();
+        int lineIdx = 0;
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            lineIdx++;
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] properties = line.split(SEPARATOR, -1);
+            try {
+                ids.restore(IdAllocator.Kind.valueOf(properties[0].trim().toUpperCase(Locale.ROOT)),
+                        Integer.parseInt(properties[1].trim()));
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+                throw new FlightBookingSystemException("Unable to parse ID mark on line " + lineIdx
+                        + "\nError: " + ex);
+            }
+        }
+    }
+
+    /**
+     * Stores the current high-water marks.
+     *
+     * @param fbs the flight booking system whose marks are saved
+     * @throws IOException if an I/O error occurs while writing the file
+     */
+    @Override
+    public void storeData(FlightBookingSystem fbs) throws IOException {
+        prepareChanges(fbs).write();
+    }
+
+    /**
+     * Reads the marks now and writes them later. The marks only ever rise,
+     * so a write that lands after a later one is harmless on reload.
+     *
+     * @param fbs the flight booking system whose marks are saved
+     * @return the write of the marks file
+     * @throws IOException if the file cannot be rendered
+     */
+    @Override
+    public PendingWrite prepareChanges(FlightBookingSystem fbs) throws IOException {
+        IdAllocator ids = fbs.getIdAllocator();
+        int[] marks = new int[KINDS.length];
+        for (IdAllocator.Kind kind : KINDS) {
+            marks[kind.ordinal()] = ids.getHighWater(kind);
+        }
+        DurableFileWriter.Content content = DurableFileWriter.captureText(out -> printMarks(marks, out));
+        for (IdAllocator.Kind kind : KINDS) {
+            ids.markSaved(kind, marks[kind.ordinal()]);
+        }
+        return () -> DurableFileWriter.forFile(path).write(content);
+    }
+
+    /**
+     * Reads the marks now and writes them later, as
+     * {@link #prepareChanges(FlightBookingSystem)} does.
+     *
+     * @param fbs the flight booking system whose marks are saved
+     * @return the write of the marks file
+     * @throws IOException if the file cannot be rendered
+     */
+    @Override
+    public PendingWrite prepareData(FlightBookingSystem fbs) throws IOException {
+        return prepareChanges(fbs);
+    }
+
+    private static void printMarks(int[] marks, PrintWriter out) {
+        for (IdAllocator.Kind kind : KINDS) {
+            out.println(kind.name().toLowerCase(Locale.ROOT) + SEPARATOR + marks[kind.ordinal()]);
+        }
+    }
+
+    /**
+     * Returns whether an ID has been handed out or observed beyond the saved marks.
+     *
+     * @param fbs the flight booking system to check
+     * @return true if the marks file is out of date
+     */
+    @Override
+    public boolean hasChanges(FlightBookingSystem fbs) {
+        return fbs.getIdAllocator().hasUnsavedChanges();
+    }
+}
@@ -0,0 +1,550 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+
+/**
+ * Reads {@code ::}-separated record files through a memory-mapped or
+ * window buffer.
+ * <p>
+ * The reader works as a cursor: {@link #next()} advances to the next
+ * non-blank line and records the byte ranges of its fields, and the typed
+ * accessors ({@link #intField(int)}, {@link #dateField(int)},
+ * {@link #enumField(int, Enum[], boolean)}, ...) parse values straight
+ * from the mapped bytes. No line strings, split arrays or trimmed copies are
+ * created; only {@link #stringField(int)} allocates, and only for the fields
+ * a loader actually keeps as text.
+ * </p>
+ * <p>
+ * Typed accessors ignore surrounding blanks, matching the loaders' previous
+ * use of {@code trim()}. Files larger than one mapping window are mapped
+ * window by window, always on a line boundary.
+ * </p>
+ * <p>
+ * Only files of at least {@link #MAP_THRESHOLD} bytes are mapped. A mapping
+ * stays in place until its buffer is garbage collected, and on Windows a
+ * file that is still mapped cannot be replaced, so a store that renames a
+ * new file over it would fail. Smaller files, which is all of them in
+ * normal use, are read into a reused heap window of {@link #READ_WINDOW}
+ * bytes through the channel instead, and nothing is left holding the file
+ * once the reader is closed.
+ * </p>
+ *
+ * @author Ashok
+ */
+public final class MappedRecordReader implements Closeable {
+
+    /** Files at least this large are memory-mapped rather than read. */
+    public static final long MAP_THRESHOLD = 64L * 1024 * 1024;
+    /** Bytes read from the channel at a time for files that are not mapped. */
+    static final int READ_WINDOW = 1024 * 1024;
+
+    private static final long WINDOW = Integer.MAX_VALUE - 8;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long end;
+
+    private final boolean mapped;
+    private ByteBuffer buffer;
+    private long bufferBase;
+    private int position;
+
+    private int lineStart;
+    private int lineEnd;
+    private int[] fieldStart = new int[24];
+    private int[] fieldEnd = new int[24];
+    private int fieldCount;
+    private int lineNumber;
+    private byte[] scratch = new byte[64];
+
+    /**
+     * Opens a reader over the whole file.
+     *
+     * @param path the file to read
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public MappedRecordReader(Path path) throws IOException {
+        this(path, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Opens a reader over the records that start inside the byte range
+     * {@code [start, end)}. A record that starts in the range is read in full
+     * even if it extends past {@code end}, so adjacent ranges never split or
+     * repeat a record.
+     *
+     * @param path the file to read
+     * @param start the first byte offset of the range
+     * @param end the byte offset just past the range
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public MappedRecordReader(Path path, long start, long end) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.end = Math.min(end, fileSize);
+        this.mapped = fileSize >= MAP_THRESHOLD;
+
+        long from = Math.min(start, fileSize);
+        if (from > 0) {
+            // Start at the byte before the range: if it is a newline the range
+            // begins on a record boundary, otherwise skip the partial record.
+            map(from - 1);
+            skipPastNewline();
+        } else {
+            map(0);
+        }
+    }
+
+    /**
+     * Advances to the next non-blank record.
+     *
+     * @return {@code true} if a record is available, {@code false} at the end of the range
+     * @throws IOException if the next window cannot be mapped
+     */
+    public boolean next() throws IOException {
+        while (true) {
+            if (bufferBase + position >= end) {
+                return false;
+            }
+
+            int newline = indexOfNewline(position);
+            if (newline < 0 && bufferBase + buffer.limit() < fileSize) {
+                if (position == 0) {
+                    throw new IOException("Record at offset " + bufferBase + " is larger than the read window.");
+                }
+                map(bufferBase + position);
+                continue;
+            }
+
+            lineStart = position;
+            lineEnd = newline < 0 ? buffer.limit() : newline;
+            position = newline < 0 ? buffer.limit() : newline + 1;
+            if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            lineNumber++;
+
+            if (!isBlank(lineStart, lineEnd)) {
+                splitFields();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns the 1-based number of the current record within the range read
+     * by this reader, counting blank lines.
+     *
+     * @return the current line number
+     */
+    public int lineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Returns the absolute byte offset of the current record in the file.
+     *
+     * @return the record offset
+     */
+    public long recordOffset() {
+        return bufferBase + lineStart;
+    }
+
+    /**
+     * Returns the length in bytes of the current record, excluding the line terminator.
+     *
+     * @return the record length
+     */
+    public int recordLength() {
+        return lineEnd - lineStart;
+    }
+
+    /**
+     * Returns the absolute byte offset of a field of the current record.
+     *
+     * @param index the field index
+     * @return the field offset
+     */
+    public long fieldOffset(int index) {
+        return bufferBase + start(index);
+    }
+
+    /**
+     * Returns the raw length in bytes of a field of the current record.
+     *
+     * @param index the field index
+     * @return the field length, including any padding blanks
+     */
+    public int fieldLength(int index) {
+        return fieldEnd[index] - start(index);
+    }
+
+    /**
+     * Returns the number of fields in the current record.
+     *
+     * @return the field count
+     */
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Returns whether a field is absent or contains only blanks.
+     *
+     * @param index the field index
+     * @return {@code true} if the field has no content
+     */
+    public boolean isEmpty(int index) {
+        return index >= fieldCount || isBlank(fieldStart[index], fieldEnd[index]);
+    }
+
+    /**
+     * Decodes a field as text, exactly as stored.
+     *
+     * @param index the field index
+     * @return the field text
+     */
+    public String stringField(int index) {
+        int from = start(index);
+        int length = fieldEnd[index] - from;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            scratch[i] = buffer.get(from + i);
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes a field as text without surrounding blanks.
+     *
+     * @param index the field index
+     * @return the trimmed field text
+     */
+    public String trimmedStringField(int index) {
+        int from = trimStart(index);
+        int to = trimEnd(index, from);
+        int length = to - from;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            scratch[i] = buffer.get(from + i);
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses a field as a decimal {@code int}.
+     *
+     * @param index the field index
+     * @return the parsed value
+     * @throws NumberFormatException if the field is not a valid int
+     */
+    public int intField(int index) {
+        long value = longField(index);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Value out of int range: \"" + trimmedStringField(index) + "\"");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses a field as a decimal {@code long}.
+     *
+     * @param index the field index
+     * @return the parsed value
+     * @throws NumberFormatException if the field is not a valid long
+     */
+    public long longField(int index) {
+        int from = trimStart(index);
+        int to = trimEnd(index, from);
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        if (i == to) {
+            throw new NumberFormatException("For input string: \"" + trimmedStringField(index) + "\"");
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException("For input string: \"" + trimmedStringField(index) + "\"");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a field as a {@code double}.
+     * <p>
+     * Plain decimals with up to 15 significant digits (everything this
+     * system writes) are converted exactly without allocating; anything else
+     * falls back to {@link Double#parseDouble(String)}.
+     * </p>
+     *
+     * @param index the field index
+     * @return the parsed value
+     * @throws NumberFormatException if the field is not a valid double
+     */
+    public double doubleField(int index) {
+        int from = trimStart(index);
+        int to = trimEnd(index, from);
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        boolean sawDigit = false;
+        int fractionDigits = 0;
+        boolean seenDot = false;
+        boolean fast = i < to;
+        for (; i < to && fast; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                sawDigit = true;
+                if (digits > 0 || b != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (seenDot) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                fast = false;
+            }
+        }
+
+        if (fast && sawDigit && digits <= 15 && fractionDigits < POWERS_OF_TEN.length) {
+            double value = mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(trimmedStringField(index));
+    }
+
+    /**
+     * Parses a field as a boolean using the rules of {@link Boolean#parseBoolean(String)}.
+     *
+     * @param index the field index
+     * @return {@code true} if the field reads "true" in any case
+     */
+    public boolean booleanField(int index) {
+        return matches(index, "true", true);
+    }
+
+    /**
+     * Parses an ISO-8601 date ({@code yyyy-MM-dd}) field.
+     *
+     * @param index the field index
+     * @return the parsed date
+     * @throws IllegalArgumentException if the field is not a valid date
+     */
+    public LocalDate dateField(int index) {
+        int from = trimStart(index);
+        int to = trimEnd(index, from);
+        if (to - from != 10 || buffer.get(from + 4) != '-' || buffer.get(from + 7) != '-') {
+            throw new IllegalArgumentException("Text '" + trimmedStringField(index) + "' could not be parsed as a date");
+        }
+        return LocalDate.of(digits(from, 4, index), digits(from + 5, 2, index), digits(from + 8, 2, index));
+    }
+
+    /**
+     * Parses an ISO-8601 time ({@code HH:mm} or {@code HH:mm:ss}) field.
+     *
+     * @param index the field index
+     * @return the parsed time
+     * @throws IllegalArgumentException if the field is not a valid time
+     */
+    public LocalTime timeField(int index) {
+        int from = trimStart(index);
+        int to = trimEnd(index, from);
+        int length = to - from;
+        if ((length != 5 && length != 8) || buffer.get(from + 2) != ':' || (length == 8 && buffer.get(from + 5) != ':')) {
+            throw new IllegalArgumentException("Text '" + trimmedStringField(index) + "' could not be parsed as a time");
+        }
+        int seconds = length == 8 ? digits(from + 6, 2, index) : 0;
+        return LocalTime.of(digits(from, 2, index), digits(from + 3, 2, index), seconds);
+    }
+
+    /**
+     * Parses a field as one of the given enum constants by name.
+     *
+     * @param <E> the enum type
+     * @param index the field index
+     * @param values the candidate constants, usually {@code E.values()}
+     * @param ignoreCase whether the name comparison ignores case
+     * @return the matching constant
+     * @throws IllegalArgumentException if no constant matches
+     */
+    public <E extends Enum<E>> E enumField(int index, E[] values, boolean ignoreCase) {
+        for (E value : values) {
+            if (matches(index, value.name(), ignoreCase)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("No enum constant " + values[0].getDeclaringClass().getCanonicalName()
+                + "." + trimmedStringField(index));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void map(long base) throws IOException {
+        bufferBase = base;
+        position = 0;
+        if (mapped) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, base, Math.min(WINDOW, fileSize - base));
+            return;
+        }
+        int length = (int) Math.min(READ_WINDOW, fileSize - base);
+        if (buffer == null) {
+            buffer = ByteBuffer.allocate(length);
+        }
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, base + buffer.position()) < 0) {
+                throw new EOFException("File shrank while being read");
+            }
+        }
+        buffer.flip();
+    }
+
+    private void skipPastNewline() throws IOException {
+        while (true) {
+            int newline = indexOfNewline(position);
+            if (newline >= 0) {
+                position = newline + 1;
+                return;
+            }
+            if (bufferBase + buffer.limit() >= fileSize) {
+                position = buffer.limit();
+                return;
+            }
+            map(bufferBase + buffer.limit());
+        }
+    }
+
+    private int indexOfNewline(int from) {
+        int limit = buffer.limit();
+        for (int i = from; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void splitFields() {
+        fieldCount = 0;
+        int start = lineStart;
+        for (int i = lineStart; i < lineEnd - 1; i++) {
+            if (buffer.get(i) == ':' && buffer.get(i + 1) == ':') {
+                addField(start, i);
+                start = i + 2;
+                i++;
+            }
+        }
+        addField(start, lineEnd);
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == fieldStart.length) {
+            fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+            fieldEnd = Arrays.copyOf(fieldEnd, fieldCount * 2);
+        }
+        fieldStart[fieldCount] = start;
+        fieldEnd[fieldCount] = end;
+        fieldCount++;
+    }
+
+    private int start(int index) {
+        if (index >= fieldCount) {
+            throw new ArrayIndexOutOfBoundsException("Index " + index + " out of bounds for length " + fieldCount);
+        }
+        return fieldStart[index];
+    }
+
+    private int trimStart(int index) {
+        int from = start(index);
+        while (from < fieldEnd[index] && isBlank(buffer.get(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private int trimEnd(int index, int from) {
+        int to = fieldEnd[index];
+        while (to > from && isBlank(buffer.get(to - 1))) {
+            to--;
+        }
+        return to;
+    }
+
+    private boolean matches(int index, String text, boolean ignoreCase) {
+        int from = trimStart(index);
+        int to = trimEnd(index, from);
+        if (to - from != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char expected = text.charAt(i);
+            char actual = (char) (buffer.get(from + i) & 0xFF);
+            if (expected != actual && !(ignoreCase && Character.toUpperCase(expected) == Character.toUpperCase(actual))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int digits(int from, int count, int index) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IllegalArgumentException("Text '" + trimmedStringField(index) + "' has a non-digit at offset " + (i - fieldStart[index]));
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private boolean isBlank(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!isBlank(buffer.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+}
@@ -0,0 +1,278 @@
+package bcu.cmp5332.bookingsystem.data;
+
+import bcu.cmp5332.bookingsystem.model.Booking;
+import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background writer that persists changes off the calling thread.
+ * <p>
+ * Commands and windows submit a request and return straight away; a single
+ * daemon thread performs the disk writes, so neither the console nor the
+ * Swing event thread waits for a file to be written and forced to disk.
+ * Requests go through a bounded queue of {@link #QUEUE_CAPACITY} entries:
+ * when the writer falls that far behind, submitting blocks until it catches
+ * up, which keeps memory use bounded.
+ * </p>
+ * <p>
+ * The writer drains every queued request at once and coalesces them. Store
+ * requests for the same system collapse into one incremental
+ * {@link FlightBookingSystemData#store(FlightBookingSystem)}, which also
+ * covers any journal events queued for that system. The remaining journal
+ * events are appended with a single journal commit.
+ * </p>
+ * <p>
+ * The writer holds the system still through
+ * {@link FlightBookingSystem#readConsistently(FlightBookingSystem.ConsistentRead)}
+ * only while the changes are rendered into memory, never while writing to
+ * disk, so a save never sees a half-made change. {@link #flush()} waits
+ * for everything submitted so far to be durable and reports any write
+ * failure; a failed write is kept until then, so console commands flush
+ * before reporting success. It must be called before exiting; a shutdown
+ * hook flushes as a last resort.
+ * </p>
+ *
+ * @author Ashok
+ */
+public final class PersistenceService {
+
+    /** Maximum number of requests waiting to be written. */
+    public static final int QUEUE_CAPACITY = 64;
+
+    /** How long the shutdown hook waits for outstanding writes. */
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private static final PersistenceService INSTANCE = new PersistenceService();
+
+    private final BlockingQueue<Request> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    // Guards the fields below.
+    private final Object lock = new Object();
+
+    // Systems with a store request still in the queue
+    private final Set<FlightBookingSystem> pendingStores = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long submitted;
+    private long completed;
+    private IOException failure;
+
+    private PersistenceService() {
+        Thread writer = new Thread(this::run, "persistence-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                awaitIdle(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }, "persistence-shutdown"));
+    }
+
+    /**
+     * Returns the service shared by the whole application.
+     *
+     * @return the persistence service
+     */
+    public static PersistenceService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Requests that every change made to the system since it was last saved
+     * be stored. Does nothing if a store of the same system is already queued.
+     *
+     * @param fbs the flight booking system to store
+     */
+    public void submitStore(FlightBookingSystem fbs) {
+        synchronized (lock) {
+            if (!pendingStores.add(fbs)) {
+                return;
+            }
+        }
+        enqueue(new Request(fbs, null, null));
+    }
+
+    /**
+     * Requests that a booking event be appended to the {@link BookingJournal}.
+     *
+     * @param fbs the flight booking system holding the booking
+     * @param event the type of change made to the booking
+     * @param booking the booking; its state when the event is written is recorded
+     */
+    public void submitEvent(FlightBookingSystem fbs, BookingJournal.Event event, Booking booking) {
+        enqueue(new Request(fbs, event, booking));
+    }
+
+    /**
+     * Waits until every request submitted before this call has been written.
+     *
+     * @throws IOException if a write failed since the last flush, or the wait was interrupted
+     */
+    public void flush() throws IOException {
+        synchronized (lock) {
+            long target = submitted;
+            while (completed < target) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for data to be saved");
+                }
+            }
+            if (failure != null) {
+                IOException ex = failure;
+                failure = null;
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Waits until the queue is empty and no write is in progress.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @return {@code true} if the writer became idle, {@code false} if the timeout elapsed
+     * @throws InterruptedException if the wait was interrupted
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while (completed < submitted) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                lock.wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    private void enqueue(Request request) {
+        synchronized (lock) {
+            submitted++;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(request);
+                break;
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Request> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException ex) {
+                continue;
+            }
+            queue.drainTo(batch);
+            write(batch);
+            synchronized (lock) {
+                completed += batch.size();
+                lock.notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(List<Request> batch) {
+        // Group by system, keeping the last event per booking
+        Map<FlightBookingSystem, Map<Booking, BookingJournal.Event>> events = new IdentityHashMap<>();
+        Set<FlightBookingSystem> systems = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<FlightBookingSystem> stores = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Request request : batch) {
+            systems.add(request.fbs);
+            if (request.event == null) {
+                stores.add(request.fbs);
+            } else {
+                events.computeIfAbsent(request.fbs, k -> new LinkedHashMap<>()).put(request.booking, request.event);
+            }
+        }
+        synchronized (lock) {
+            pendingStores.removeAll(stores);
+        }
+
+        for (FlightBookingSystem fbs : systems) {
+            DataManager.PendingWrite write;
+            try {
+                // Only the preparation reads the system; the disk writes run unlocked
+                boolean store = stores.contains(fbs);
+                Map<Booking, BookingJournal.Event> systemEvents = events.get(fbs);
+                write = fbs.readConsistently(() -> prepare(fbs, store, systemEvents));
+                write.write();
+            } catch (IOException | RuntimeException ex) {
+                recover(fbs, ex);
+            }
+        }
+    }
+
+    private static DataManager.PendingWrite prepare(FlightBookingSystem fbs, boolean store,
+            Map<Booking, BookingJournal.Event> events) throws IOException {
+        if (store) {
+            // A store journals every unsaved booking, so it covers the events too
+            return FlightBookingSystemData.prepareStore(fbs);
+        }
+        BookingJournal journal = BookingJournal.getInstance();
+        if (journal.needsCompaction(events.size())) {
+            return journal.prepareCompaction(fbs);
+        }
+        return journal.prepareEvents(fbs, events);
+    }
+
+    // The failed changes were already marked saved, so rewrite everything
+    private void recover(FlightBookingSystem fbs, Exception cause) {
+        try {
+            // Rendered under the lock like any other save, and written after it is released
+            DataManager.PendingWrite write = fbs.readConsistently(() -> FlightBookingSystemData.prepareStoreAll(fbs));
+            write.write();
+        } catch (IOException | RuntimeException ex) {
+            ex.addSuppressed(cause);
+            fail(ex instanceof IOException ? (IOException) ex : new IOException(ex));
+        }
+    }
+
+    private void fail(IOException ex) {
+        synchronized (lock) {
+            if (failure == null) {
+                failure = ex;
+            } else {
+                failure.addSuppressed(ex);
+            }
+        }
+    }
+
+    private static final class Request {
+        final FlightBookingSystem fbs;
+        final BookingJournal.Event event;
+        final Booking booking;
+
+        Request(FlightBookingSystem fbs, BookingJournal.Event event, Booking booking) {
+            this.fbs = fbs;
+            this.event = event;
+            this.booking = booking;
+        }
+    }
+}
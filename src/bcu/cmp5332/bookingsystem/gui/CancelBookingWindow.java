@@ -108,22 +108,16 @@ public class CancelBookingWindow extends JFrame implements ActionListener {
                 throw new FlightBookingSystemException(" Customer ID " + customerId + " not found.");
             }
 
-            Booking bookingToCancel = null;
-            for (Booking booking : customer.getBookings()) {
-                if (booking.getFlight().getId() == flightId &&
-                        (booking.getStatus() == Booking.Status.ACTIVE || booking.getStatus() == Booking.Status.COMPLETED)) {
-                    bookingToCancel = booking;
-                    break;
-                }
-            }
+            Booking bookingToCancel = customer.getActiveBookingForFlight(flightId);
 
             if (bookingToCancel == null) {
                 throw new FlightBookingSystemException(" Active booking not found for customer on flight ID " + flightId + ".");
             }
 
             // Cancel booking in memory
-            bookingToCancel.setStatus(Booking.Status.CANCELLED);
-            bookingToCancel.getFlight().removePassenger(customer, bookingToCancel.getSeatClass());
+            if (!bookingToCancel.cancel()) {
+                throw new FlightBookingSystemException(" Booking has already been cancelled.");
+            }
             CancelBookingInMemory.cancelledBookingsMemory.add(bookingToCancel);
 
             JOptionPane.showMessageDialog(this,
@@ -1,5 +1,6 @@
 package bcu.cmp5332.bookingsystem.gui;
 
+import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 import bcu.cmp5332.bookingsystem.model.*;
 
 import javax.swing.*;
@@ -161,13 +162,10 @@ public class EditBookingWindow extends JFrame implements ActionListener {
      * @return the Booking object if found; otherwise, {@code null}
      */
     private Booking findBookingById(FlightBookingSystem system, int id) {
-        for (Customer customer : system.getAllCustomers()) {
-            for (Booking b : customer.getBookings()) {
-                if (b.getBookingId() == id) {
-                    return b;
-                }
-            }
+        try {
+            return system.findBookingById(id);
+        } catch (FlightBookingSystemException ex) {
+            return null;
         }
-        return null;
     }
 }
@@ -3,13 +3,16 @@ package bcu.cmp5332.bookingsystem.gui;
 import javax.swing.*;
 import javax.swing.border.*;
 
+import bcu.cmp5332.bookingsystem.data.PersistenceService;
 import bcu.cmp5332.bookingsystem.model.Booking;
 import bcu.cmp5332.bookingsystem.model.Flight;
 import bcu.cmp5332.bookingsystem.model.Customer;
 import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
+import bcu.cmp5332.bookingsystem.model.SeatHold;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 /**
@@ -29,6 +32,13 @@ import java.time.format.DateTimeParseException;
  * </p>
  * 
  * <p>
+ * As soon as a seat is entered it is held for the agent for
+ * {@link #HOLD_SECONDS} seconds, so it cannot be taken by someone else
+ * while the rest of the form is filled in. Choosing another seat or
+ * closing the window releases the hold.
+ * </p>
+ * 
+ * <p>
  * This class extends JFrame and manages its own UI components and event handling.
  * </p>
  * 
@@ -38,6 +48,9 @@ import java.time.format.DateTimeParseException;
 
 public class InteractiveBookingWindow extends JFrame {
 
+    /** How long an entered seat is held while the form is completed. */
+    public static final int HOLD_SECONDS = 300;
+
     private final FlightBookingSystem system;
 
     // Customer Type
@@ -57,6 +70,8 @@ public class InteractiveBookingWindow extends JFrame {
     private JComboBox<String> cbFlights;
     private JComboBox<String> cbSeatClass;
     private JTextField tfSeatNumber;
+    private JLabel lblHold;
+    private SeatHold hold;  // the seat held for this window, if any
     private JCheckBox cbHasPet;
     private JComboBox<String> cbPetType;
 
@@ -81,6 +96,12 @@ public class InteractiveBookingWindow extends JFrame {
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setLayout(new BorderLayout());
         initComponents();
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                releaseHold();
+            }
+        });
     }
 
     private void initComponents() {
@@ -177,6 +198,9 @@ public class InteractiveBookingWindow extends JFrame {
         tfSeatNumber = new JTextField(5);
         flightPanel.add(tfSeatNumber);
 
+        lblHold = new JLabel(" ");
+        flightPanel.add(lblHold);
+
         gbc.gridy++;
         mainPanel.add(flightPanel, gbc);
 
@@ -246,6 +270,17 @@ public class InteractiveBookingWindow extends JFrame {
 
         btnBook.addActionListener(e -> doBooking());
 
+        // Hold the seat once it is entered, and again if the flight or class changes
+        tfSeatNumber.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                holdSelectedSeat();
+            }
+        });
+        tfSeatNumber.addActionListener(e -> holdSelectedSeat());
+        cbFlights.addActionListener(e -> holdSelectedSeat());
+        cbSeatClass.addActionListener(e -> holdSelectedSeat());
+
         // Default select
         rbNewCustomer.setSelected(true);
         toggleCustomerPanels();
@@ -282,12 +317,61 @@ public class InteractiveBookingWindow extends JFrame {
 
     private void loadFlights() {
         cbFlights.removeAllItems();
-        for (Flight f : system.getAllFlights()) {
-            if (!f.getDepartureDate().isBefore(LocalDate.now())) {
-                cbFlights.addItem(f.getId() + ": " + f.getFlightNumber() + " (" + f.getOrigin() + " -> " + f.getDestination() + ")");
-            }
+        for (Flight f : system.getFlightsDepartingFrom(LocalDate.now().atStartOfDay())) {
+            cbFlights.addItem(f.getId() + ": " + f.getFlightNumber() + " (" + f.getOrigin() + " -> " + f.getDestination() + ")");
+        }
+    }
+    /**
+     * Holds the seat currently entered, releasing any other seat held by
+     * this window. Shows whether the seat could be held; a seat that cannot
+     * be held is reported but left in the form, and is checked again when
+     * the booking is made.
+     */
+    private void holdSelectedSeat() {
+        String seatNumber = tfSeatNumber.getText().trim().toUpperCase();
+        Flight flight = getSelectedFlight();
+        Booking.SeatClass seatClass = Booking.SeatClass.valueOf((String) cbSeatClass.getSelectedItem());
+        if (isHeld(flight, seatClass, seatNumber)) {
+            return;
+        }
+        releaseHold();
+        if (flight == null || seatNumber.isEmpty()) {
+            return;
+        }
+        try {
+            hold = flight.holdSeat(seatClass, seatNumber, Duration.ofSeconds(HOLD_SECONDS));
+            lblHold.setText("Held for " + (HOLD_SECONDS / 60) + " min");
+        } catch (Exception ex) {
+            lblHold.setText(ex.getMessage());
         }
     }
+
+    // Whether this window still holds exactly the given seat
+    private boolean isHeld(Flight flight, Booking.SeatClass seatClass, String seatNumber) {
+        return hold != null && hold.isActive() && hold.getFlight() == flight
+                && hold.getSeatClass() == seatClass && seatNumber.equalsIgnoreCase(hold.getSeatNumber());
+    }
+
+    private void releaseHold() {
+        if (hold != null) {
+            hold.getFlight().releaseHold(hold);
+            hold = null;
+        }
+        lblHold.setText(" ");
+    }
+
+    private Flight getSelectedFlight() {
+        if (cbFlights.getSelectedIndex() == -1) {
+            return null;
+        }
+        String flightSelected = (String) cbFlights.getSelectedItem();
+        try {
+            return system.getFlightById(Integer.parseInt(flightSelected.split(":")[0]));
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
     /**
      * Performs the booking process using data entered by the user.
      * Validates input, creates or fetches customer, calculates discounts,
@@ -343,13 +427,15 @@ public class InteractiveBookingWindow extends JFrame {
 
             String seatClassStr = (String) cbSeatClass.getSelectedItem();
             Booking.SeatClass seatClass = Booking.SeatClass.valueOf(seatClassStr);
-            if (flight.getAvailableSeatsForClass(seatClass) <= 0) {
+            String seatNumber = tfSeatNumber.getText().trim().toUpperCase();
+            // A seat held by this window counts as taken, so skip the availability checks for it
+            SeatHold seatHold = isHeld(flight, seatClass, seatNumber) ? hold : null;
+            if (seatHold == null && flight.getAvailableSeatsForClass(seatClass) <= 0) {
                 throw new Exception("No seats available in " + seatClass + " class.");
             }
 
-            String seatNumber = tfSeatNumber.getText().trim().toUpperCase();
             if (seatNumber.isEmpty()) throw new Exception("Please enter seat number.");
-            if (!flight.isSeatAvailable(seatClass, seatNumber)) {
+            if (seatHold == null && !flight.isSeatAvailable(seatClass, seatNumber)) {
                 throw new Exception("Seat " + seatNumber + " is not available.");
             }
 
@@ -386,10 +472,13 @@ public class InteractiveBookingWindow extends JFrame {
                     seatNumber, discountPercent, manualDiscount, petType, petCharge);
             booking.completeBooking();
 
-            flight.reserveSeat(seatClass, seatNumber);
-            flight.addBooking(booking);
-            customer.addBooking(booking);
-            system.getDataManager().storeData(system);
+            system.placeBooking(booking, seatHold);
+            if (seatHold != null) {
+                hold = null;
+                lblHold.setText(" ");
+            }
+            // Saves the new customer as well, without blocking the event thread
+            PersistenceService.getInstance().submitStore(system);
 
             JOptionPane.showMessageDialog(this,
                     "Booking successful!\n\n" + booking.getBookingDetails(),
@@ -16,7 +16,6 @@ import java.awt.*;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.ArrayList;
 import java.util.stream.Collectors;
 
 /**
@@ -225,18 +224,12 @@ public class ListBookingsWindow extends JFrame {
     }
 
     /**
-     * Retrieves all bookings from all customers in the FlightBookingSystem.
+     * Retrieves all bookings in the FlightBookingSystem.
      * 
      * @param flightBookingSystem the flight booking system containing customers and bookings
-     * @return a list of all bookings from all customers
+     * @return a list of all bookings, ordered by booking ID
      */
     private List<Booking> getAllBookings(FlightBookingSystem flightBookingSystem) {
-        List<Booking> allBookings = new ArrayList<>();
-        for (Customer customer : flightBookingSystem.getAllCustomers()) {
-            if (customer.getBookings() != null) {
-                allBookings.addAll(customer.getBookings());
-            }
-        }
-        return allBookings;
+        return flightBookingSystem.getAllBookings();
     }
 }
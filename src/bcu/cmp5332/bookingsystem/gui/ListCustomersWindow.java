@@ -5,6 +5,8 @@ import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.util.List;
@@ -17,10 +19,17 @@ import java.util.List;
  * 
  * <p>Customer details can be viewed in a separate dialog by selecting a customer and clicking "Show Details".</p>
  * 
+ * <p>Typing in the search field narrows the table, as you type, to customers whose name has a word
+ * starting with the text, or whose phone, email or passport number matches it exactly.</p>
+ * 
  */
 public class ListCustomersWindow extends JFrame {
 
+    /** The maximum number of customers shown for a search. */
+    private static final int MAX_SEARCH_RESULTS = 200;
+
     private final FlightBookingSystem flightBookingSystem;
+    private final JTextField searchField = new JTextField(25);
     private JTable customersTable;
     private DefaultTableModel tableModel;
 
@@ -50,7 +59,31 @@ public class ListCustomersWindow extends JFrame {
         JLabel header = new JLabel("Customers", SwingConstants.CENTER);
         header.setFont(new Font("Arial", Font.BOLD, 22));
         header.setForeground(new Color(25, 25, 112));
-        add(header, BorderLayout.NORTH);
+
+        JPanel searchPanel = new JPanel();
+        searchPanel.add(new JLabel("Search (name, phone, email or passport):"));
+        searchPanel.add(searchField);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                loadCustomers();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                loadCustomers();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                loadCustomers();
+            }
+        });
+
+        JPanel northPanel = new JPanel(new BorderLayout());
+        northPanel.add(header, BorderLayout.NORTH);
+        northPanel.add(searchPanel, BorderLayout.SOUTH);
+        add(northPanel, BorderLayout.NORTH);
 
         String[] columns = {
             "ID", "Name", "Phone", "Age", "Country", "Email", "Gender", "Disabled"
@@ -101,15 +134,19 @@ public class ListCustomersWindow extends JFrame {
     }
 
     /**
-     * Loads the list of customers from the FlightBookingSystem and populates the table.
-     * If no customers are found, shows an information dialog.
+     * Loads the customers matching the search field, or all customers when it is
+     * empty, from the FlightBookingSystem and populates the table.
+     * If there are no customers at all, shows an information dialog.
      */
     private void loadCustomers() {
         tableModel.setRowCount(0); // clear existing rows
 
-        List<Customer> customers = flightBookingSystem.getAllCustomers();
+        String query = searchField.getText().trim();
+        List<Customer> customers = query.isEmpty()
+                ? flightBookingSystem.getAllCustomers()
+                : flightBookingSystem.searchCustomers(query, MAX_SEARCH_RESULTS);
 
-        if (customers.isEmpty()) {
+        if (customers.isEmpty() && query.isEmpty()) {
             JOptionPane.showMessageDialog(this, "No customers found.", "Info", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
@@ -141,12 +178,11 @@ public class ListCustomersWindow extends JFrame {
 
         int customerId = (int) tableModel.getValueAt(selectedRow, 0);
 
-        Customer selectedCustomer = null;
-        for (Customer c : flightBookingSystem.getAllCustomers()) {
-            if (c.getId() == customerId) {
-                selectedCustomer = c;
-                break;
-            }
+        Customer selectedCustomer;
+        try {
+            selectedCustomer = flightBookingSystem.getCustomerById(customerId);
+        } catch (FlightBookingSystemException ex) {
+            selectedCustomer = null;
         }
 
         if (selectedCustomer != null) {
@@ -8,9 +8,8 @@ import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.util.Collection;
 
 /**
  * GUI window that displays a list of upcoming flights in a table format.
@@ -126,11 +125,8 @@ public class ListFlightsWindow extends JFrame {
     private void loadFlights() {
         tableModel.setRowCount(0);  // Clear existing rows
 
-        List<Flight> flights = flightBookingSystem.getAllFlights();
-        LocalDateTime now = LocalDateTime.now();
-
-        // Remove flights that departed before the current time
-        flights.removeIf(flight -> LocalDateTime.of(flight.getDepartureDate(), flight.getDepartureTime()).isBefore(now));
+        // Flights that have not departed yet, already in departure order
+        Collection<Flight> flights = flightBookingSystem.getUpcomingFlights();
 
         if (flights.isEmpty()) {
             JOptionPane.showMessageDialog(this, "No upcoming flights available.", "No Flights", JOptionPane.INFORMATION_MESSAGE);
@@ -1,6 +1,8 @@
 package bcu.cmp5332.bookingsystem.gui;
 
+import bcu.cmp5332.bookingsystem.data.CancellationStore;
 import bcu.cmp5332.bookingsystem.data.FlightBookingSystemData;
+import bcu.cmp5332.bookingsystem.data.PersistenceService;
 import java.net.URL;
 
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
@@ -292,7 +294,9 @@ public class MainWindow extends JFrame {
 
             case "Save Data":
                 try {
-                    FlightBookingSystemData.store(fbs);
+                    PersistenceService.getInstance().submitStore(fbs);
+                    PersistenceService.getInstance().flush();
+                    CancellationStore.getInstance().flush();
                     JOptionPane.showMessageDialog(this, "Data saved successfully!");
                 } catch (IOException ex) {
                     JOptionPane.showMessageDialog(this, "Failed to save: " + ex.getMessage());
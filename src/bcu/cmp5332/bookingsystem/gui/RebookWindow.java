@@ -1,5 +1,8 @@
 package bcu.cmp5332.bookingsystem.gui;
 
+import bcu.cmp5332.bookingsystem.data.BookingJournal;
+import bcu.cmp5332.bookingsystem.data.CancellationStore;
+import bcu.cmp5332.bookingsystem.data.PersistenceService;
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 import bcu.cmp5332.bookingsystem.model.*;
 
@@ -127,7 +130,7 @@ public class RebookWindow extends JFrame implements ActionListener {
      * Validates input data, checks flight and customer availability,
      * calculates pricing including discounts and pet charges,
      * creates a new booking, updates flight and customer data,
-     * persists the booking to a file, and provides user feedback.
+     * records the booking in the booking journal, and provides user feedback.
      * </p>
      * 
      * @param e the {@link ActionEvent} triggered by clicking the rebook button
@@ -157,10 +160,8 @@ public class RebookWindow extends JFrame implements ActionListener {
                 throw new FlightBookingSystemException(" Flight has already departed.");
             }
 
-            for (Booking b : customer.getBookings()) {
-                if (b.getFlight().getId() == flightId) {
-                    throw new FlightBookingSystemException(" Customer already has a booking for this flight.");
-                }
+            if (customer.getBookingForFlight(flightId) != null) {
+                throw new FlightBookingSystemException(" Customer already has a booking for this flight.");
             }
 
             if (flight.getAvailableSeatsForClass(seatClass) <= 0) {
@@ -200,22 +201,16 @@ public class RebookWindow extends JFrame implements ActionListener {
                     seatNumber, discountPercent, manual, petType, petCharge);
             booking.completeBooking();
 
-            flight.reserveSeat(seatClass, seatNumber);
-            flight.addBooking(booking);
-            customer.addBooking(booking);
-
-            // Persist booking to file
-            try (java.io.BufferedWriter writer = new java.io.BufferedWriter(
-                    new java.io.FileWriter("./resources/data/bookings.txt", true))) {
-                String line = booking.getBookingId() + "::" +
-                              customer.getId() + "::" +
-                              flight.getId() + "::" +
-                              booking.getBookingDate() + "::" +
-                              seatClass + "::" +
-                              finalPrice + "::" +
-                              booking.getStatus() + "::" +
-                              seatNumber + "\n";
-                writer.write(line);
+            fbs.placeBooking(booking);
+
+            // Persist booking to the journal in the background
+            PersistenceService.getInstance().submitEvent(fbs, BookingJournal.Event.CREATE, booking);
+
+            // A rebooked cancellation can no longer be rebooked
+            CancellationStore cancellations = CancellationStore.getInstance();
+            CancellationStore.Cancellation cancelled = cancellations.find(customerId, flightId);
+            if (cancelled != null) {
+                cancellations.remove(cancelled.getId());
             }
 
             StringBuilder msg = new StringBuilder();
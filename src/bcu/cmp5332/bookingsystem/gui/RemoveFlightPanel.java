@@ -2,6 +2,7 @@ package bcu.cmp5332.bookingsystem.gui;
 
 
 
+import bcu.cmp5332.bookingsystem.data.PersistenceService;
 import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
 import bcu.cmp5332.bookingsystem.model.Flight;
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
@@ -88,6 +89,7 @@ public class RemoveFlightPanel extends JPanel {
             }
 
             flightBookingSystem.removeFlight(flight);
+            PersistenceService.getInstance().submitStore(flightBookingSystem);
             JOptionPane.showMessageDialog(this, "Flight with ID " + flightId + " has been removed successfully.", "Success", JOptionPane.INFORMATION_MESSAGE);
 
             flightIdField.setText("");
@@ -5,6 +5,7 @@ import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 import bcu.cmp5332.bookingsystem.model.Flight;
 import bcu.cmp5332.bookingsystem.model.FlightStatus;
+import bcu.cmp5332.bookingsystem.model.SymbolTable;
 
 import javax.swing.*;
 import java.awt.*;
@@ -170,22 +171,17 @@ public class SearchFlightWindow extends JFrame {
          * @throws FlightBookingSystemException if an error occurs during the search
          */
         public void search() throws FlightBookingSystemException {
-            List<Flight> allFlights = flightBookingSystem.getAllFlights();
+            // The route and departure date are looked up in the flight index
+            List<Flight> candidates = flightBookingSystem.findFlights(searchCommand.origin,
+                    searchCommand.destination, searchCommand.exactDepartureDate);
             List<Flight> matched = new java.util.ArrayList<>();
+            int airlineCode = SymbolTable.getInstance().find(searchCommand.airline);
 
-            for (Flight flight : allFlights) {
+            for (Flight flight : candidates) {
                 boolean match = true;
 
-                if (searchCommand.origin != null &&
-                        !flight.getOrigin().equalsIgnoreCase(searchCommand.origin))
-                    match = false;
-
-                if (searchCommand.destination != null &&
-                        !flight.getDestination().equalsIgnoreCase(searchCommand.destination))
-                    match = false;
-
                 if (searchCommand.airline != null &&
-                        !flight.getAirlineName().equalsIgnoreCase(searchCommand.airline))
+                        flight.getAirlineCode() != airlineCode)
                     match = false;
 
                 if (searchCommand.status != null) {
@@ -194,10 +190,6 @@ public class SearchFlightWindow extends JFrame {
                         match = false;
                 }
 
-                if (searchCommand.exactDepartureDate != null &&
-                        !flight.getDepartureDate().isEqual(searchCommand.exactDepartureDate))
-                    match = false;
-
                 if (searchCommand.exactArrivalDate != null &&
                         (flight.getArrivalDate() == null ||
                          !flight.getArrivalDate().isEqual(searchCommand.exactArrivalDate)))
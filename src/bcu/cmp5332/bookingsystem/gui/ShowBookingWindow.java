@@ -108,7 +108,7 @@ public class ShowBookingWindow extends JFrame {
             }
 
             StringBuilder result = new StringBuilder("📄 Bookings for: " + customer.getName() + "\n\n");
-            List<Booking> bookings = customer.getBookings();
+            List<Booking> bookings = flightBookingSystem.getBookingsForCustomer(customerId);
 
             if (bookings.isEmpty()) {
                 result.append("⚠ No bookings found.");
@@ -1,5 +1,6 @@
 package bcu.cmp5332.bookingsystem.main;
 
+import bcu.cmp5332.bookingsystem.api.BookingApiServer;
 import bcu.cmp5332.bookingsystem.commands.*;
 import bcu.cmp5332.bookingsystem.commands.InputUtils;
 
@@ -58,6 +59,16 @@ public class CommandParser {
             }
 
 
+            if (cmd.equals("searchcustomer")) {
+                String query = line.substring(cmd.length()).trim();
+                if (query.isEmpty()) {
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+                    System.out.print("Enter name, phone, email or passport number: ");
+                    query = reader.readLine().trim();
+                }
+                return new SearchCustomer(query);
+            }
+
              if (cmd.equals("searchflight")) {
                 Scanner scanner = new Scanner(System.in);
 
@@ -451,6 +462,10 @@ public class CommandParser {
             else if (cmd.equals("loadgui")) {
                 return new LoadGUI();
 
+            } else if (cmd.equals("serveapi")) {
+                int port = parts.length > 1 ? Integer.parseInt(parts[1]) : BookingApiServer.DEFAULT_PORT;
+                return new ServeApi(port);
+
             } else if (cmd.equals("exit")) {
                 System.exit(0);
 
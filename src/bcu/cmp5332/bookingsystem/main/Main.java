@@ -1,6 +1,8 @@
 package bcu.cmp5332.bookingsystem.main;
 
+import bcu.cmp5332.bookingsystem.data.CancellationStore;
 import bcu.cmp5332.bookingsystem.data.FlightBookingSystemData;
+import bcu.cmp5332.bookingsystem.data.PersistenceService;
 import bcu.cmp5332.bookingsystem.commands.Command;
 import bcu.cmp5332.bookingsystem.model.FlightBookingSystem;
 
@@ -65,8 +67,10 @@ public class Main {
             }
         }
 
-        // Store the updated flight booking system data
+        // Wait for background saves, then store anything not yet saved
+        PersistenceService.getInstance().flush();
         FlightBookingSystemData.store(fbs);
+        CancellationStore.getInstance().flush();
 
         // Exit the program
         System.exit(0);
@@ -4,6 +4,7 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 
@@ -15,6 +16,13 @@ import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
  * It provides methods to manage the booking lifecycle including canceling
  * and completing a booking, as well as formatting booking details.
  * </p>
+ * <p>
+ * Cancelling is a single atomic status change, so when several agents
+ * cancel the same booking at once exactly one of them succeeds. A booking
+ * also records whether it holds a place on its flight, and the place is
+ * given back only by the call that clears that record, so it is never
+ * freed twice.
+ * </p>
  * 
  * @author ashok
  */
@@ -38,12 +46,11 @@ public class Booking {
         FIRST 
     }
 
-    private static int nextId = 1;
     private int bookingId;
     private Customer customer;
     private Flight flight;
     private LocalDate bookingDate;
-    private Status status;
+    private volatile Status status;
     private SeatClass seatClass;
     private double price;
     private String seatNumber;
@@ -51,10 +58,17 @@ public class Booking {
     private final boolean manualDiscount;
     private String petType;
     private double petCharge;
+    private boolean dirty = true;
+    // Whether this booking's seat or place is taken on its flight
+    private final AtomicBoolean holdsPlace = new AtomicBoolean();
+    // Set while the booking is registered with a system, to keep its indexes current
+    private BookingRegistry registry;
 
     /**
      * Constructs a new Booking with the given parameters.
-     * Automatically assigns a unique booking ID.
+     * The booking has no ID (0) until it is placed with
+     * {@link FlightBookingSystem#placeBooking(Booking)} or given one with
+     * {@link #setBookingId(int)}.
      *
      * @param customer the customer making the booking
      * @param flight the flight being booked
@@ -70,7 +84,18 @@ public class Booking {
     public Booking(Customer customer, Flight flight, LocalDate bookingDate,
                    SeatClass seatClass, double price, String seatNumber,
                    double discountPercent, boolean manualDiscount, String petType, double petCharge) {
-        this.bookingId = nextId++;
+        this(0, customer, flight, bookingDate, seatClass, price, seatNumber,
+                discountPercent, manualDiscount, petType, petCharge);
+    }
+
+    /**
+     * Constructs a Booking with a known ID, without using up a new one.
+     * Used to rebuild bookings kept outside the heap by a {@link BookingArchive}.
+     */
+    Booking(int bookingId, Customer customer, Flight flight, LocalDate bookingDate,
+            SeatClass seatClass, double price, String seatNumber,
+            double discountPercent, boolean manualDiscount, String petType, double petCharge) {
+        this.bookingId = bookingId;
         this.customer = customer;
         this.flight = flight;
         this.bookingDate = bookingDate;
@@ -101,62 +126,92 @@ public class Booking {
 
     /** Sets the booking ID (useful for loading existing bookings). */
     public void setBookingId(int bookingId) {
+        int old = this.bookingId;
         this.bookingId = bookingId;
+        markDirty();
+        if (registry != null && old != bookingId) {
+            registry.idChanged(this, old);
+        }
     }
 
     /** Sets the pet type. */
     public void setPetType(String petType) { 
         this.petType = petType; 
+        markDirty();
     }
 
     /** Sets the pet charge. */
     public void setPetCharge(double petCharge) { 
         this.petCharge = petCharge; 
-    }
-
-    /** Sets the next booking ID to be assigned. */
-    public static void setNextId(int nextId) {
-        Booking.nextId = nextId;
+        markDirty();
     }
 
     /** Sets the booking status. */
-    public void setStatus(Status status) {
+    public synchronized void setStatus(Status status) {
+        Status old = this.status;
         this.status = status;
+        markDirty();
+        if (registry != null && old != status) {
+            registry.statusChanged(this, old);
+        }
     }
 
     /** Sets the customer for this booking. */
     public void setCustomer(Customer customer) {
+        Customer old = this.customer;
         this.customer = customer;
+        markDirty();
+        if (registry != null && old != customer) {
+            registry.linksChanged(this, old, flight);
+        }
     }
 
     /** Sets the flight for this booking. */
     public void setFlight(Flight flight) {
+        Flight old = this.flight;
         this.flight = flight;
+        markDirty();
+        if (registry != null && old != flight) {
+            registry.linksChanged(this, customer, old);
+        }
+        if (customer != null && old != flight) {
+            customer.flightChanged(this, old);
+        }
+    }
+
+    /** Sets the registry this booking reports index changes to, or null once unregistered. */
+    void setRegistry(BookingRegistry registry) {
+        this.registry = registry;
     }
 
     /** Sets the booking date. */
     public void setBookingDate(LocalDate bookingDate) {
         this.bookingDate = bookingDate;
+        markDirty();
     }
 
     /** Sets the seat class for the booking. */
     public void setSeatClass(SeatClass seatClass) {
         this.seatClass = seatClass;
+        markDirty();
     }
 
     /** Sets the price of the booking. */
     public void setPrice(double price) {
         this.price = price;
+        markDirty();
     }
 
     /** Sets the seat number. */
     public void setSeatNumber(String seatNumber) {
         this.seatNumber = seatNumber;
+        markDirty();
     }
 
     /** Sets the discount percentage. */
     public void setDiscountPercent(double discountPercent) {
         this.discountPercent = discountPercent;
+        markDirty();
     }
 
     /** Returns the booking ID. */
@@ -164,11 +219,6 @@ public class Booking {
         return bookingId;
     }
 
-    /** Returns the next booking ID to be assigned. */
-    public static int getNextId() {
-        return nextId;
-    }
-
     /** Returns the customer associated with this booking. */
     public Customer getCustomer() {
         return customer;
@@ -209,22 +259,101 @@ public class Booking {
         return discountPercent;
     }
 
+    /**
+     * Returns whether this booking has changed since it was last saved.
+     * New bookings start out dirty.
+     *
+     * @return true if the booking needs to be saved
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Marks this booking as saved. Called by the data layer once the
+     * booking's current state has been written.
+     */
+    public void markClean() {
+        dirty = false;
+    }
+
+    // Logs the change with the system's registry, so a save finds it without a scan
+    private void markDirty() {
+        dirty = true;
+        BookingRegistry registry = this.registry;
+        if (registry != null) {
+            registry.logChanged(this);
+        }
+    }
+
+    /**
+     * Sets the booking status only if it is still the expected one, as one
+     * atomic step with respect to other status changes.
+     *
+     * @param expected the status the booking must have
+     * @param status the new status
+     * @return true if the status was changed
+     */
+    public synchronized boolean compareAndSetStatus(Status expected, Status status) {
+        if (this.status != expected) {
+            return false;
+        }
+        setStatus(status);
+        return true;
+    }
+
     /**
      * Marks this booking as completed.
      */
     public void completeBooking() {
-        this.status = Status.COMPLETED;
+        setStatus(Status.COMPLETED);
     }
 
     /**
-     * Cancels this booking and removes the passenger from the flight.
+     * Cancels this booking unless it is cancelled already, removes the
+     * passenger from the flight and gives back the booking's place.
      * 
+     * @return true if this call cancelled the booking, false if it was cancelled already
      * @throws FlightBookingSystemException if an error occurs when removing the passenger
      */
-    public void cancel() throws FlightBookingSystemException {
-        this.status = Status.CANCELLED;
-        flight.removePassenger(customer, seatClass);  // existing passenger removal
-        flight.releaseSeat(seatClass, seatNumber);    // new: release the seat number explicitly
+    public boolean cancel() throws FlightBookingSystemException {
+        Status old = status;
+        while (old != Status.CANCELLED && !compareAndSetStatus(old, Status.CANCELLED)) {
+            old = status;
+        }
+        if (old == Status.CANCELLED) {
+            return false;
+        }
+        leaveFlight();
+        return true;
+    }
+
+    /**
+     * Cancels this booking if it is active, as {@link #cancel()} does.
+     *
+     * @throws FlightBookingSystemException if the booking is not active,
+     *         including when another agent has just cancelled it
+     */
+    public void cancelActive() throws FlightBookingSystemException {
+        if (!compareAndSetStatus(Status.ACTIVE, Status.CANCELLED)) {
+            throw new FlightBookingSystemException("Only active bookings can be cancelled.");
+        }
+        leaveFlight();
+    }
+
+    private void leaveFlight() {
+        flight.removePassenger(customer, seatClass);
+        flight.removeBooking(this);
+    }
+
+    // Records that the booking's place has been taken; true only for the call that recorded it
+    boolean takePlace() {
+        return holdsPlace.compareAndSet(false, true);
+    }
+
+    // Clears the record of a taken place; true only for the call that cleared it
+    boolean releasePlace() {
+        return holdsPlace.compareAndSet(true, false);
     }
 
 
@@ -0,0 +1,350 @@
+package bcu.cmp5332.bookingsystem.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Off-heap, columnar store for settled bookings of a {@link FlightBookingSystem}.
+ * <p>
+ * Completed and cancelled bookings on flights that have departed are rarely
+ * read again, yet as {@link Booking} objects they stay on the heap forever,
+ * each holding its customer and flight. The archive keeps them instead as
+ * rows of plain values in direct {@link ByteBuffer}s outside the heap, so the
+ * garbage collector never scans them and its pauses do not grow with the
+ * booking history. The only on-heap cost is a sorted {@code long[]} of IDs,
+ * eight bytes a booking.
+ * </p>
+ * <p>
+ * Rows are stored in segments of {@value #ROWS_PER_SEGMENT} rows, each segment
+ * one buffer laid out column by column: IDs, customer IDs, flight IDs,
+ * booking days, prices, discounts, pet charges, seat classes, statuses,
+ * manual discount flags, seat numbers and pet types. A lookup or filter
+ * therefore reads only the columns it needs. Seat numbers and pet types are
+ * stored in {@value #TEXT_WIDTH} bytes, so bookings with longer or non-ASCII
+ * values are not archived. Removed rows are marked in the status column.
+ * </p>
+ * <p>
+ * Bookings are materialized as new {@link Booking} objects when they are
+ * needed and are not kept. Those copies are detached: they are not
+ * registered with the system and changing them changes nothing. All methods
+ * are synchronized.
+ * </p>
+ *
+ * @author Ashok
+ */
+public class BookingArchive {
+
+    /** Number of rows in each off-heap segment. */
+    public static final int ROWS_PER_SEGMENT = 16384;
+
+    /** Maximum length of an archived seat number or pet type. */
+    public static final int TEXT_WIDTH = 8;
+
+    /** Tests the indexed columns of an archived row. */
+    interface RowFilter {
+        boolean test(int customerId, int flightId, Booking.Status status);
+    }
+
+    private static final int TEXT_SLOT = TEXT_WIDTH + 1;  // length byte, then the characters
+    private static final byte NULL_TEXT = -1;
+    private static final byte REMOVED = -1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final Booking.Status[] STATUSES = Booking.Status.values();
+    private static final Booking.SeatClass[] SEAT_CLASSES = Booking.SeatClass.values();
+
+    // Start of each column within a segment
+    private static final int IDS = 0;
+    private static final int CUSTOMERS = IDS + 4 * ROWS_PER_SEGMENT;
+    private static final int FLIGHTS = CUSTOMERS + 4 * ROWS_PER_SEGMENT;
+    private static final int DAYS = FLIGHTS + 4 * ROWS_PER_SEGMENT;
+    private static final int PRICES = DAYS + 4 * ROWS_PER_SEGMENT;
+    private static final int DISCOUNTS = PRICES + 8 * ROWS_PER_SEGMENT;
+    private static final int PET_CHARGES = DISCOUNTS + 8 * ROWS_PER_SEGMENT;
+    private static final int CLASSES = PET_CHARGES + 8 * ROWS_PER_SEGMENT;
+    private static final int STATUS = CLASSES + ROWS_PER_SEGMENT;
+    private static final int MANUAL = STATUS + ROWS_PER_SEGMENT;
+    private static final int SEATS = MANUAL + ROWS_PER_SEGMENT;
+    private static final int PETS = SEATS + TEXT_SLOT * ROWS_PER_SEGMENT;
+    private static final int SEGMENT_BYTES = PETS + TEXT_SLOT * ROWS_PER_SEGMENT;
+
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private int rows;   // rows written, including removed ones
+    private int live;
+    // (id << 32 | row) of every row ever written, sorted once rebuilt
+    private long[] index = new long[0];
+    private boolean indexSorted = true;
+
+    /**
+     * Returns the number of archived bookings.
+     *
+     * @return the number of bookings in the archive
+     */
+    public synchronized int size() {
+        return live;
+    }
+
+    /**
+     * Returns the number of off-heap bytes allocated for the archive.
+     *
+     * @return the allocated size in bytes
+     */
+    public synchronized long getOffHeapBytes() {
+        return (long) segments.size() * SEGMENT_BYTES;
+    }
+
+    /**
+     * Returns whether a booking can be stored in the archive: it has a
+     * customer, a flight and a seat class, and its seat number and pet type
+     * fit the fixed-width columns.
+     *
+     * @param booking the booking
+     * @return true if the booking can be archived without losing any field
+     */
+    public static boolean canArchive(Booking booking) {
+        return booking.getCustomer() != null && booking.getFlight() != null && booking.getSeatClass() != null
+                && booking.getStatus() != null && fits(booking.getSeatNumber()) && fits(booking.getPetType());
+    }
+
+    /**
+     * Returns whether a booking with the given ID is archived.
+     *
+     * @param bookingId the booking ID
+     * @return true if the booking is in the archive
+     */
+    public synchronized boolean contains(int bookingId) {
+        return find(bookingId) >= 0;
+    }
+
+    /**
+     * Appends a booking to the archive.
+     *
+     * @param booking the booking, which must pass {@link #canArchive(Booking)}
+     */
+    synchronized void add(Booking booking) {
+        if (!canArchive(booking)) {
+            throw new IllegalArgumentException("Booking " + booking.getBookingId() + " cannot be archived.");
+        }
+        int row = rows++;
+        if (row / ROWS_PER_SEGMENT == segments.size()) {
+            segments.add(ByteBuffer.allocateDirect(SEGMENT_BYTES));
+        }
+        ByteBuffer segment = segments.get(row / ROWS_PER_SEGMENT);
+        int r = row % ROWS_PER_SEGMENT;
+        segment.putInt(IDS + 4 * r, booking.getBookingId());
+        segment.putInt(CUSTOMERS + 4 * r, booking.getCustomer().getId());
+        segment.putInt(FLIGHTS + 4 * r, booking.getFlight().getId());
+        segment.putInt(DAYS + 4 * r, booking.getBookingDate() == null
+                ? NO_DATE : (int) booking.getBookingDate().toEpochDay());
+        segment.putDouble(PRICES + 8 * r, booking.getPrice());
+        segment.putDouble(DISCOUNTS + 8 * r, booking.getDiscountPercent());
+        segment.putDouble(PET_CHARGES + 8 * r, booking.getPetCharge());
+        segment.put(CLASSES + r, (byte) booking.getSeatClass().ordinal());
+        segment.put(STATUS + r, (byte) booking.getStatus().ordinal());
+        segment.put(MANUAL + r, (byte) (booking.isManualDiscount() ? 1 : 0));
+        putText(segment, SEATS + TEXT_SLOT * r, booking.getSeatNumber());
+        putText(segment, PETS + TEXT_SLOT * r, booking.getPetType());
+        live++;
+
+        if (rows > index.length) {
+            index = Arrays.copyOf(index, Math.max(64, index.length * 2));
+        }
+        index[row] = (long) booking.getBookingId() << 32 | row;
+        indexSorted = false;
+    }
+
+    /**
+     * Materializes an archived booking.
+     *
+     * @param bookingId the booking ID
+     * @param fbs the system holding the booking's customer and flight
+     * @return a detached copy of the booking, or null if it is not archived
+     */
+    synchronized Booking get(int bookingId, FlightBookingSystem fbs) {
+        int row = find(bookingId);
+        return row < 0 ? null : materialize(row, fbs);
+    }
+
+    /**
+     * Materializes every archived booking whose row passes a filter, in
+     * the order they were archived.
+     *
+     * @param filter the row filter
+     * @param fbs the system holding the bookings' customers and flights
+     * @return detached copies of the matching bookings
+     */
+    synchronized List<Booking> select(RowFilter filter, FlightBookingSystem fbs) {
+        List<Booking> result = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            if (matches(row, filter)) {
+                Booking booking = materialize(row, fbs);
+                if (booking != null) {
+                    result.add(booking);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes a booking from the archive.
+     *
+     * @param bookingId the booking ID
+     * @return true if the booking was archived
+     */
+    synchronized boolean remove(int bookingId) {
+        int row = find(bookingId);
+        if (row < 0) {
+            return false;
+        }
+        markRemoved(row);
+        return true;
+    }
+
+    /**
+     * Removes every booking whose row passes a filter.
+     *
+     * @param filter the row filter
+     * @param removedIds receives the ID of each removed booking
+     */
+    synchronized void removeIf(RowFilter filter, IntConsumer removedIds) {
+        for (int row = 0; row < rows; row++) {
+            if (matches(row, filter)) {
+                removedIds.accept(segment(row).getInt(IDS + 4 * (row % ROWS_PER_SEGMENT)));
+                markRemoved(row);
+            }
+        }
+    }
+
+    /**
+     * Passes the ID of every archived booking to an action.
+     *
+     * @param action receives each booking ID
+     */
+    synchronized void forEachId(IntConsumer action) {
+        for (int row = 0; row < rows; row++) {
+            if (isLive(row)) {
+                action.accept(segment(row).getInt(IDS + 4 * (row % ROWS_PER_SEGMENT)));
+            }
+        }
+    }
+
+    private boolean matches(int row, RowFilter filter) {
+        ByteBuffer segment = segment(row);
+        int r = row % ROWS_PER_SEGMENT;
+        byte status = segment.get(STATUS + r);
+        return status != REMOVED && filter.test(segment.getInt(CUSTOMERS + 4 * r),
+                segment.getInt(FLIGHTS + 4 * r), STATUSES[status]);
+    }
+
+    private void markRemoved(int row) {
+        segment(row).put(STATUS + row % ROWS_PER_SEGMENT, REMOVED);
+        live--;
+    }
+
+    /** Returns the row of a live booking, or -1. */
+    private int find(int bookingId) {
+        if (!indexSorted) {
+            Arrays.sort(index, 0, rows);
+            indexSorted = true;
+        }
+        int low = 0;
+        int high = rows - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int id = (int) (index[mid] >> 32);
+            if (id < bookingId) {
+                low = mid + 1;
+            } else if (id > bookingId) {
+                high = mid - 1;
+            } else {
+                // A re-archived ID has several rows; only one of them is live
+                for (int i = mid; i >= 0 && (int) (index[i] >> 32) == bookingId; i--) {
+                    if (isLive((int) index[i])) {
+                        return (int) index[i];
+                    }
+                }
+                for (int i = mid + 1; i < rows && (int) (index[i] >> 32) == bookingId; i++) {
+                    if (isLive((int) index[i])) {
+                        return (int) index[i];
+                    }
+                }
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isLive(int row) {
+        return segment(row).get(STATUS + row % ROWS_PER_SEGMENT) != REMOVED;
+    }
+
+    private Booking materialize(int row, FlightBookingSystem fbs) {
+        ByteBuffer segment = segment(row);
+        int r = row % ROWS_PER_SEGMENT;
+        Customer customer = fbs.lookupCustomer(segment.getInt(CUSTOMERS + 4 * r));
+        Flight flight = fbs.lookupFlight(segment.getInt(FLIGHTS + 4 * r));
+        if (customer == null || flight == null) {
+            return null;
+        }
+        int day = segment.getInt(DAYS + 4 * r);
+        Booking booking = new Booking(segment.getInt(IDS + 4 * r), customer, flight,
+                day == NO_DATE ? null : LocalDate.ofEpochDay(day),
+                SEAT_CLASSES[segment.get(CLASSES + r)],
+                segment.getDouble(PRICES + 8 * r),
+                getText(segment, SEATS + TEXT_SLOT * r),
+                segment.getDouble(DISCOUNTS + 8 * r),
+                segment.get(MANUAL + r) == 1,
+                getText(segment, PETS + TEXT_SLOT * r),
+                segment.getDouble(PET_CHARGES + 8 * r));
+        booking.setStatus(STATUSES[segment.get(STATUS + r)]);
+        booking.markClean();
+        return booking;
+    }
+
+    private ByteBuffer segment(int row) {
+        return segments.get(row / ROWS_PER_SEGMENT);
+    }
+
+    private static boolean fits(String text) {
+        if (text == null) {
+            return true;
+        }
+        if (text.length() > TEXT_WIDTH) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void putText(ByteBuffer segment, int offset, String text) {
+        if (text == null) {
+            segment.put(offset, NULL_TEXT);
+            return;
+        }
+        segment.put(offset, (byte) text.length());
+        for (int i = 0; i < text.length(); i++) {
+            segment.put(offset + 1 + i, (byte) text.charAt(i));
+        }
+    }
+
+    private static String getText(ByteBuffer segment, int offset) {
+        int length = segment.get(offset);
+        if (length == NULL_TEXT) {
+            return null;
+        }
+        byte[] chars = new byte[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = segment.get(offset + 1 + i);
+        }
+        return new String(chars, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,488 @@
+package bcu.cmp5332.bookingsystem.model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Registry of every booking held by a {@link FlightBookingSystem}.
+ * <p>
+ * Bookings are indexed by ID and, as secondary indexes, by customer, flight,
+ * status and flight departure date, so that each lookup costs O(1) or the
+ * size of its result instead of a walk over every customer's bookings.
+ * </p>
+ * <p>
+ * A booking is registered while it belongs to a customer of the system:
+ * {@link Customer#addBooking(Booking)} registers it and removing it from the
+ * customer unregisters it. Registered bookings and the system's flights keep
+ * a reference to the registry and report changes to the indexed fields, so
+ * the indexes never go stale. Lists returned by the lookup methods are
+ * copies and can be changed freely.
+ * </p>
+ * <p>
+ * The registry also keeps the system's save log: the bookings, flights and
+ * customers changed since they were last saved, which report themselves as
+ * they change, the IDs of bookings never saved, and the IDs of saved
+ * bookings unregistered since. Checking for unsaved changes and saving them
+ * therefore cost as much as the changes, not the whole system.
+ * </p>
+ * <p>
+ * All methods are synchronized. The registry never calls out to customers
+ * or flights while holding its lock, so it can be used from under their
+ * locks without risk of deadlock.
+ * </p>
+ *
+ * @author Ashok
+ */
+public class BookingRegistry {
+
+    private final IntObjectMap<Booking> byId = new IntObjectMap<>();
+    private final Map<Integer, Set<Booking>> byCustomer = new HashMap<>();
+    private final Map<Integer, Set<Booking>> byFlight = new HashMap<>();
+    private final Map<Booking.Status, Set<Booking>> byStatus = new EnumMap<>(Booking.Status.class);
+    private final NavigableMap<LocalDate, Set<Booking>> byDeparture = new TreeMap<>();
+    private final Set<Integer> removedIds = new HashSet<>();
+    private final Set<Integer> unsavedIds = new HashSet<>();
+    private final Set<Booking> changedBookings = new HashSet<>();
+    private final Set<Flight> changedFlights = new HashSet<>();
+    private final Set<Customer> changedCustomers = new HashSet<>();
+    private final IdAllocator ids;
+
+    /**
+     * Creates an empty registry.
+     *
+     * @param ids the allocator told about the ID of every registered booking,
+     *            so that it never hands out an ID already in use
+     */
+    public BookingRegistry(IdAllocator ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * Returns the booking with the given ID.
+     *
+     * @param bookingId the booking ID
+     * @return the booking, or null if no such booking is registered
+     */
+    public synchronized Booking get(int bookingId) {
+        return byId.get(bookingId);
+    }
+
+    /**
+     * Returns whether the given booking is registered.
+     *
+     * @param booking the booking
+     * @return true if the booking is registered
+     */
+    public synchronized boolean contains(Booking booking) {
+        return byId.get(booking.getBookingId()) == booking;
+    }
+
+    /**
+     * Returns the number of registered bookings.
+     *
+     * @return the number of bookings
+     */
+    public synchronized int size() {
+        return byId.size();
+    }
+
+    /**
+     * Returns every registered booking, ordered by booking ID.
+     *
+     * @return all bookings
+     */
+    public synchronized List<Booking> getAll() {
+        List<Booking> all = new ArrayList<>(byId.values());
+        all.sort(Comparator.comparingInt(Booking::getBookingId));
+        return all;
+    }
+
+    /**
+     * Returns the bookings made by a customer, in the order they were added.
+     *
+     * @param customerId the customer ID
+     * @return the customer's bookings
+     */
+    public synchronized List<Booking> getByCustomer(int customerId) {
+        return copy(byCustomer.get(customerId));
+    }
+
+    /**
+     * Returns the bookings on a flight, in the order they were added.
+     *
+     * @param flightId the flight ID
+     * @return the flight's bookings
+     */
+    public synchronized List<Booking> getByFlight(int flightId) {
+        return copy(byFlight.get(flightId));
+    }
+
+    /**
+     * Returns the bookings with the given status, in the order they reached it.
+     *
+     * @param status the booking status
+     * @return the bookings with that status
+     */
+    public synchronized List<Booking> getByStatus(Booking.Status status) {
+        return copy(byStatus.get(status));
+    }
+
+    /**
+     * Returns the bookings whose flight departs between two dates inclusive,
+     * ordered by departure date. A null bound is open.
+     *
+     * @param from the earliest departure date
+     * @param to the latest departure date
+     * @return the bookings departing in the range
+     */
+    public synchronized List<Booking> getByDeparture(LocalDate from, LocalDate to) {
+        NavigableMap<LocalDate, Set<Booking>> range = byDeparture;
+        if (from != null && to != null) {
+            if (from.isAfter(to)) {
+                return new ArrayList<>();
+            }
+            range = byDeparture.subMap(from, true, to, true);
+        } else if (from != null) {
+            range = byDeparture.tailMap(from, true);
+        } else if (to != null) {
+            range = byDeparture.headMap(to, true);
+        }
+        List<Booking> result = new ArrayList<>();
+        for (Set<Booking> bookings : range.values()) {
+            result.addAll(bookings);
+        }
+        return result;
+    }
+
+    /**
+     * Registers a booking. Registering a booking twice has no effect.
+     *
+     * @param booking the booking to register
+     * @throws IllegalStateException if another booking with the same ID is registered
+     */
+    synchronized void add(Booking booking) {
+        Booking existing = byId.get(booking.getBookingId());
+        if (existing == booking) {
+            return;
+        }
+        if (existing != null) {
+            throw new IllegalStateException("Booking with ID " + booking.getBookingId() + " already exists.");
+        }
+        byId.put(booking.getBookingId(), booking);
+        // A booking taking the place of a removed one replaces its saved record
+        boolean saved = removedIds.remove(booking.getBookingId());
+        ids.observe(IdAllocator.Kind.BOOKING, booking.getBookingId());
+        index(booking);
+        booking.setRegistry(this);
+        if (booking.isDirty()) {
+            changedBookings.add(booking);
+            if (!saved) {
+                unsavedIds.add(booking.getBookingId());
+            }
+        }
+    }
+
+    /**
+     * Unregisters a booking. Does nothing if it is not registered.
+     *
+     * @param booking the booking to unregister
+     */
+    synchronized void remove(Booking booking) {
+        if (evict(booking) && !unsavedIds.remove(booking.getBookingId())) {
+            removedIds.add(booking.getBookingId());
+        }
+    }
+
+    /**
+     * Unregisters a booking without recording its ID as removed, for a
+     * booking that still exists elsewhere, such as in a {@link BookingArchive}.
+     *
+     * @param booking the booking to unregister
+     * @return true if the booking was registered
+     */
+    synchronized boolean evict(Booking booking) {
+        if (!contains(booking)) {
+            return false;
+        }
+        byId.remove(booking.getBookingId());
+        unindex(booking);
+        changedBookings.remove(booking);
+        booking.setRegistry(null);
+        return true;
+    }
+
+    /**
+     * Moves a booking whose ID has changed.
+     *
+     * @param booking the booking, already holding its new ID
+     * @param oldId the ID it was registered under
+     */
+    synchronized void idChanged(Booking booking, int oldId) {
+        if (byId.get(oldId) == booking) {
+            byId.remove(oldId);
+            byId.put(booking.getBookingId(), booking);
+            boolean saved = removedIds.remove(booking.getBookingId());
+            if (!unsavedIds.remove(oldId)) {
+                removedIds.add(oldId);
+            } else if (!saved) {
+                unsavedIds.add(booking.getBookingId());
+            }
+            ids.observe(IdAllocator.Kind.BOOKING, booking.getBookingId());
+        }
+    }
+
+    /**
+     * Re-indexes a booking whose status has changed.
+     *
+     * @param booking the booking, already holding its new status
+     * @param oldStatus the status it was indexed under
+     */
+    synchronized void statusChanged(Booking booking, Booking.Status oldStatus) {
+        removeFrom(byStatus, oldStatus, booking);
+        addTo(byStatus, booking.getStatus(), booking);
+    }
+
+    /**
+     * Re-indexes a booking whose customer or flight has changed.
+     *
+     * @param booking the booking, already holding its new customer and flight
+     * @param oldCustomer the customer it was indexed under
+     * @param oldFlight the flight it was indexed under
+     */
+    synchronized void linksChanged(Booking booking, Customer oldCustomer, Flight oldFlight) {
+        if (oldCustomer != null) {
+            removeFrom(byCustomer, oldCustomer.getId(), booking);
+        }
+        if (oldFlight != null) {
+            removeFrom(byFlight, oldFlight.getId(), booking);
+            removeFrom(byDeparture, oldFlight.getDepartureDate(), booking);
+        }
+        if (booking.getCustomer() != null) {
+            addTo(byCustomer, booking.getCustomer().getId(), booking);
+        }
+        if (booking.getFlight() != null) {
+            addTo(byFlight, booking.getFlight().getId(), booking);
+            addTo(byDeparture, booking.getFlight().getDepartureDate(), booking);
+        }
+    }
+
+    /**
+     * Re-indexes the bookings on a flight whose departure date has changed.
+     *
+     * @param flight the flight, already holding its new date
+     * @param oldDate the date its bookings were indexed under
+     */
+    synchronized void departureChanged(Flight flight, LocalDate oldDate) {
+        Set<Booking> bookings = byFlight.get(flight.getId());
+        if (bookings == null) {
+            return;
+        }
+        for (Booking booking : bookings) {
+            removeFrom(byDeparture, oldDate, booking);
+            addTo(byDeparture, flight.getDepartureDate(), booking);
+        }
+    }
+
+    private void index(Booking booking) {
+        linksChanged(booking, null, null);
+        addTo(byStatus, booking.getStatus(), booking);
+    }
+
+    private void unindex(Booking booking) {
+        if (booking.getCustomer() != null) {
+            removeFrom(byCustomer, booking.getCustomer().getId(), booking);
+        }
+        if (booking.getFlight() != null) {
+            removeFrom(byFlight, booking.getFlight().getId(), booking);
+            removeFrom(byDeparture, booking.getFlight().getDepartureDate(), booking);
+        }
+        removeFrom(byStatus, booking.getStatus(), booking);
+    }
+
+    private static <K> void addTo(Map<K, Set<Booking>> index, K key, Booking booking) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(booking);
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, Set<Booking>> index, K key, Booking booking) {
+        if (key == null) {
+            return;
+        }
+        Set<Booking> bookings = index.get(key);
+        if (bookings != null && bookings.remove(booking) && bookings.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private static List<Booking> copy(Set<Booking> bookings) {
+        return bookings == null ? new ArrayList<>() : new ArrayList<>(bookings);
+    }
+
+    /**
+     * Returns the IDs no longer registered since they were last forgotten,
+     * whether their booking was unregistered or renumbered.
+     *
+     * @return a copy of the removed booking IDs
+     */
+    synchronized List<Integer> getRemovedIds() {
+        return new ArrayList<>(removedIds);
+    }
+
+    /**
+     * Records the ID of a booking removed outside the registry, such as
+     * from a {@link BookingArchive}.
+     *
+     * @param bookingId the removed booking ID
+     */
+    synchronized void logRemoved(int bookingId) {
+        removedIds.add(bookingId);
+    }
+
+    /**
+     * Forgets a removed booking ID, once its removal is saved or there is
+     * nothing to remove.
+     *
+     * @param bookingId the booking ID
+     */
+    synchronized void forgetRemoved(int bookingId) {
+        removedIds.remove(bookingId);
+    }
+
+    /**
+     * Records that a registered booking has changed since it was last saved.
+     *
+     * @param booking the changed booking
+     */
+    synchronized void logChanged(Booking booking) {
+        changedBookings.add(booking);
+    }
+
+    /**
+     * Records that a flight of the system has changed since it was last saved.
+     *
+     * @param flight the changed flight
+     */
+    synchronized void logChanged(Flight flight) {
+        changedFlights.add(flight);
+    }
+
+    /**
+     * Records that a customer of the system has changed since it was last saved.
+     *
+     * @param customer the changed customer
+     */
+    synchronized void logChanged(Customer customer) {
+        changedCustomers.add(customer);
+    }
+
+    /**
+     * Returns whether a booking was changed, added or removed since it was
+     * last saved.
+     *
+     * @return true if there are booking changes to save
+     */
+    synchronized boolean hasBookingChanges() {
+        return !changedBookings.isEmpty() || !removedIds.isEmpty();
+    }
+
+    /**
+     * Returns the registered bookings changed or added since they were last saved.
+     *
+     * @return a copy of the changed bookings, in no particular order
+     */
+    synchronized List<Booking> getChangedBookings() {
+        List<Booking> changed = new ArrayList<>(changedBookings.size());
+        for (Booking booking : changedBookings) {
+            // A booking may report a change just as it is unregistered
+            if (contains(booking)) {
+                changed.add(booking);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns whether a booking has changes that are not saved, or was never saved.
+     *
+     * @param booking the booking
+     * @return true if the booking needs to be saved
+     */
+    synchronized boolean isUnsaved(Booking booking) {
+        return changedBookings.contains(booking) || unsavedIds.contains(booking.getBookingId());
+    }
+
+    /**
+     * Records that a booking's current state has been saved.
+     *
+     * @param booking the saved booking
+     */
+    synchronized void logSaved(Booking booking) {
+        changedBookings.remove(booking);
+        unsavedIds.remove(booking.getBookingId());
+    }
+
+    /**
+     * Records that every booking has been saved and forgets every removed
+     * booking ID.
+     *
+     * @return the bookings that were changed, to be marked clean by the caller
+     */
+    synchronized List<Booking> takeChangedBookings() {
+        List<Booking> changed = new ArrayList<>(changedBookings);
+        changedBookings.clear();
+        unsavedIds.clear();
+        removedIds.clear();
+        return changed;
+    }
+
+    /**
+     * Returns whether a flight has changed since the flights were last saved.
+     *
+     * @return true if there are flight changes to save
+     */
+    synchronized boolean hasFlightChanges() {
+        return !changedFlights.isEmpty();
+    }
+
+    /**
+     * Records that every flight has been saved.
+     *
+     * @return the flights that were changed, to be marked clean by the caller
+     */
+    synchronized List<Flight> takeChangedFlights() {
+        List<Flight> changed = new ArrayList<>(changedFlights);
+        changedFlights.clear();
+        return changed;
+    }
+
+    /**
+     * Returns whether a customer has changed since the customers were last saved.
+     *
+     * @return true if there are customer changes to save
+     */
+    synchronized boolean hasCustomerChanges() {
+        return !changedCustomers.isEmpty();
+    }
+
+    /**
+     * Records that every customer has been saved.
+     *
+     * @return the customers that were changed, to be marked clean by the caller
+     */
+    synchronized List<Customer> takeChangedCustomers() {
+        List<Customer> changed = new ArrayList<>(changedCustomers);
+        changedCustomers.clear();
+        return changed;
+    }
+}
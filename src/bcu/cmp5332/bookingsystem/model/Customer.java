@@ -4,7 +4,10 @@ import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a customer in the flight booking system.
@@ -18,6 +21,13 @@ import java.util.List;
  * details in both short and long formats, and check if a customer has a
  * booking on a specific flight.
  * </p>
+ * <p>
+ * A customer holds at most one booking per flight, and bookings are also
+ * indexed by flight ID, so duplicate checks and per-flight lookups take
+ * constant time however many bookings the customer has. The booking list
+ * and index are guarded by the customer's monitor, so several agents can
+ * book for the same customer at once.
+ * </p>
  * 
  * @author ashok
  */
@@ -30,15 +40,20 @@ public class Customer {
     // Additional personal information
     private int age;
     private String address;
-    private String country;
+    private Symbol country;  // interned in the SymbolTable
     private String passportNumber;
     private LocalDate passportExpiryDate;
     private boolean disabled = false;
     private String email;
     private LocalDate dob;
     private String gender;
+    private boolean dirty = true;
 
     private final List<Booking> bookings = new ArrayList<>();
+    private final Map<Integer, Booking> bookingsByFlight = new HashMap<>();
+    // Registry and customer index of the system this customer belongs to, if any
+    private BookingRegistry registry;
+    private CustomerIndex index;
 
     /**
      * Constructs a Customer with basic details.
@@ -77,7 +92,7 @@ public class Customer {
         this.phone = phone;
         this.age = age;
         this.address = address;
-        this.country = country;
+        this.country = SymbolTable.getInstance().intern(country);
         this.passportNumber = passportNumber;
         this.passportExpiryDate = passportExpiryDate;
         this.disabled = disabled;
@@ -104,6 +119,7 @@ public class Customer {
      */
     public void setDisabled(boolean disabled) {
         this.disabled = disabled;
+        markDirty();
     }
 
     /**
@@ -121,7 +137,12 @@ public class Customer {
      * @param email the email address to set
      */
     public void setEmail(String email) { 
+        String old = this.email;
         this.email = email; 
+        markDirty();
+        if (index != null) {
+            index.moved(this, name, phone, old, passportNumber);
+        }
     }
 
     /**
@@ -140,6 +161,7 @@ public class Customer {
      */
     public void setDob(LocalDate dob) { 
         this.dob = dob; 
+        markDirty();
     }
 
     /**
@@ -158,6 +180,7 @@ public class Customer {
      */
     public void setGender(String gender) { 
         this.gender = gender; 
+        markDirty();
     }
 
     /**
@@ -176,6 +199,7 @@ public class Customer {
      */
     public void setId(int id) {
         this.id = id;
+        markDirty();
     }
 
     /**
@@ -193,7 +217,12 @@ public class Customer {
      * @param name the name to set
      */
     public void setName(String name) {
+        String old = this.name;
         this.name = name;
+        markDirty();
+        if (index != null) {
+            index.moved(this, old, phone, email, passportNumber);
+        }
     }
 
     /**
@@ -211,7 +240,12 @@ public class Customer {
      * @param phone the phone number to set
      */
     public void setPhone(String phone) {
+        String old = this.phone;
         this.phone = phone;
+        markDirty();
+        if (index != null) {
+            index.moved(this, name, old, email, passportNumber);
+        }
     }
 
     /**
@@ -230,6 +264,7 @@ public class Customer {
      */
     public void setAge(int age) {
         this.age = age;
+        markDirty();
     }
 
     /**
@@ -248,6 +283,7 @@ public class Customer {
      */
     public void setAddress(String address) {
         this.address = address;
+        markDirty();
     }
 
     /**
@@ -256,7 +292,17 @@ public class Customer {
      * @return the country
      */
     public String getCountry() {
-        return country;
+        return Symbol.textOf(country);
+    }
+
+    /**
+     * Returns the {@link SymbolTable} code of the customer's country, equal
+     * for every spelling of the same country.
+     * 
+     * @return the country code, or {@link SymbolTable#NO_CODE} if there is no country
+     */
+    public int getCountryCode() {
+        return Symbol.codeOf(country);
     }
 
     /**
@@ -265,7 +311,8 @@ public class Customer {
      * @param country the country to set
      */
     public void setCountry(String country) {
-        this.country = country;
+        this.country = SymbolTable.getInstance().intern(country);
+        markDirty();
     }
 
     /**
@@ -283,7 +330,12 @@ public class Customer {
      * @param passportNumber the passport number to set
      */
     public void setPassportNumber(String passportNumber) {
+        String old = this.passportNumber;
         this.passportNumber = passportNumber;
+        markDirty();
+        if (index != null) {
+            index.moved(this, name, phone, email, old);
+        }
     }
 
     /**
@@ -302,15 +354,71 @@ public class Customer {
      */
     public void setPassportExpiryDate(LocalDate passportExpiryDate) {
         this.passportExpiryDate = passportExpiryDate;
+        markDirty();
     }
 
     /**
-     * Returns the list of bookings associated with this customer.
+     * Returns whether any of this customer's stored details have changed
+     * since they were last saved. New customers start out dirty.
+     * 
+     * @return true if the customer needs to be saved
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Marks this customer as saved. Called by the data layer once the
+     * customer's current details have been written.
+     */
+    public void markClean() {
+        dirty = false;
+    }
+
+    // Logs the change with the system's registry, so a save finds it without a scan
+    private void markDirty() {
+        dirty = true;
+        BookingRegistry registry = this.registry;
+        if (registry != null) {
+            registry.logChanged(this);
+        }
+    }
+
+    /**
+     * Returns a read-only copy of the bookings associated with this customer,
+     * in the order they were added. Use {@link #addBooking(Booking)} and
+     * {@link #removeBooking(Booking)} to change them.
      * 
      * @return the list of bookings
      */
-    public List<Booking> getBookings() {
-        return bookings;
+    public synchronized List<Booking> getBookings() {
+        return Collections.unmodifiableList(new ArrayList<>(bookings));
+    }
+
+    /**
+     * Returns this customer's booking on a flight, whatever its status.
+     * 
+     * @param flightId the flight ID
+     * @return the booking, or null if the customer has none on the flight
+     */
+    public synchronized Booking getBookingForFlight(int flightId) {
+        return bookingsByFlight.get(flightId);
+    }
+
+    /**
+     * Returns this customer's active or completed booking on a flight, that
+     * is the booking that can still be cancelled.
+     * 
+     * @param flightId the flight ID
+     * @return the booking, or null if the customer has no such booking on the flight
+     */
+    public synchronized Booking getActiveBookingForFlight(int flightId) {
+        Booking booking = bookingsByFlight.get(flightId);
+        if (booking != null && (booking.getStatus() == Booking.Status.ACTIVE
+                || booking.getStatus() == Booking.Status.COMPLETED)) {
+            return booking;
+        }
+        return null;
     }
 
     /**
@@ -323,13 +431,17 @@ public class Customer {
      * @param booking the booking to add
      * @throws FlightBookingSystemException if a booking for the flight already exists
      */
-    public void addBooking(Booking booking) throws FlightBookingSystemException {
-        for (Booking b : bookings) {
-            if (b.getFlight().equals(booking.getFlight())) {
-                throw new FlightBookingSystemException("Customer already has a booking for this flight.");
-            }
+    public synchronized void addBooking(Booking booking) throws FlightBookingSystemException {
+        if (booking.getFlight() != null && hasBooking(booking.getFlight())) {
+            throw new FlightBookingSystemException("Customer already has a booking for this flight.");
+        }
+        if (registry != null) {
+            registry.add(booking);
         }
         bookings.add(booking);
+        if (booking.getFlight() != null) {
+            bookingsByFlight.put(booking.getFlight().getId(), booking);
+        }
     }
 
     /**
@@ -342,11 +454,11 @@ public class Customer {
      * @throws FlightBookingSystemException if the booking is not found
      */
     public void cancelBooking(Booking booking) throws FlightBookingSystemException {
-        if (!bookings.contains(booking)) {
+        if (!hasBooking(booking)) {
             throw new FlightBookingSystemException("Booking not found for this customer.");
         }
         booking.cancel();
-        bookings.remove(booking);
+        removeBooking(booking);
     }
 
     /**
@@ -382,6 +494,7 @@ public class Customer {
                .append("Passport Expiry Date: ").append(passportExpiryDate).append("\n")
                .append("----------------------------------------------------------------\n");
 
+        List<Booking> bookings = getBookings();
         if (!bookings.isEmpty()) {
             details.append("Bookings:\n");
             for (Booking booking : bookings) {
@@ -400,17 +513,92 @@ public class Customer {
      * @param flight the flight to check bookings for
      * @return true if a booking exists for the flight, false otherwise
      */
-    public boolean hasBooking(Flight flight) {
-        for (Booking b : bookings) {
-            if (b.getFlight().equals(flight)) {
-                return true;
-            }
+    public synchronized boolean hasBooking(Flight flight) {
+        Booking booking = bookingsByFlight.get(flight.getId());
+        return booking != null && booking.getFlight().equals(flight);
+    }
+
+    /**
+     * Removes a booking from this customer.
+     * 
+     * @param booking the booking to remove
+     */
+    public synchronized void removeBooking(Booking booking) {
+        if (unlink(booking) && registry != null) {
+            registry.remove(booking);
+        }
+    }
+
+    /**
+     * Drops a booking that has been moved to the system's
+     * {@link BookingArchive}, without recording it as removed.
+     * 
+     * @param booking the archived booking
+     */
+    synchronized void evictBooking(Booking booking) {
+        if (unlink(booking) && registry != null) {
+            registry.evict(booking);
+        }
+    }
+
+    private synchronized boolean hasBooking(Booking booking) {
+        return bookings.contains(booking);
+    }
+
+    private boolean unlink(Booking booking) {
+        if (!bookings.remove(booking)) {
+            return false;
+        }
+        if (booking.getFlight() != null) {
+            bookingsByFlight.remove(booking.getFlight().getId(), booking);
         }
-        return false;
+        return true;
     }
 
-    public void removeBooking(Booking booking) {
-        bookings.remove(booking);
+    /**
+     * Re-indexes one of this customer's bookings whose flight has changed.
+     * 
+     * @param booking the booking, already holding its new flight
+     * @param oldFlight the flight it was indexed under
+     */
+    synchronized void flightChanged(Booking booking, Flight oldFlight) {
+        boolean indexed = oldFlight != null
+                ? bookingsByFlight.remove(oldFlight.getId(), booking)
+                : bookings.contains(booking);
+        if (indexed && booking.getFlight() != null) {
+            bookingsByFlight.putIfAbsent(booking.getFlight().getId(), booking);
+        }
+    }
+
+    /**
+     * Sets the customer index notified when the name, phone, email or
+     * passport number changes, or null.
+     * 
+     * @param index the system's customer index, or null
+     */
+    void setIndex(CustomerIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Attaches this customer to the registry of the system it was added to,
+     * registering its existing bookings, or detaches it when given null.
+     * 
+     * @param registry the system's booking registry, or null
+     */
+    synchronized void setRegistry(BookingRegistry registry) {
+        if (this.registry == registry) {
+            return;
+        }
+        for (Booking booking : bookings) {
+            if (this.registry != null) {
+                this.registry.remove(booking);
+            }
+            if (registry != null) {
+                registry.add(booking);
+            }
+        }
+        this.registry = registry;
     }
 
 
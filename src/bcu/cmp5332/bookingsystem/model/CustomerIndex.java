@@ -0,0 +1,291 @@
+package bcu.cmp5332.bookingsystem.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Lookup index over the customers of a {@link FlightBookingSystem}.
+ * <p>
+ * Names are normalized (lower case, single spaces) and stored in a prefix
+ * trie once for each word, so a prefix of any word of a name finds the
+ * customer: "jo", "john s" and "smi" all find John Smith. A prefix search
+ * walks down to the prefix's node and collects customers below it, in
+ * alphabetical order, until it has enough, so its cost depends on the
+ * prefix and the number of results, not on the number of customers.
+ * </p>
+ * <p>
+ * Phone numbers (by their digits only), email addresses (ignoring case)
+ * and passport numbers (ignoring case) are kept in hash indexes. Customers
+ * added to the system report changes to these fields, so the index never
+ * goes stale. All methods are synchronized.
+ * </p>
+ *
+ * @author Ashok
+ */
+public class CustomerIndex {
+
+    /** A trie node: children by character and the customers whose key ends here. */
+    private static final class Node {
+        private final TreeMap<Character, Node> children = new TreeMap<>();
+        private Set<Customer> customers;
+    }
+
+    private final Node names = new Node();
+    private final Map<String, Set<Customer>> byPhone = new HashMap<>();
+    private final Map<String, Set<Customer>> byEmail = new HashMap<>();
+    private final Map<String, Set<Customer>> byPassport = new HashMap<>();
+
+    /**
+     * Returns customers with a name word starting with the given prefix, in
+     * alphabetical order of the matching part of the name.
+     *
+     * @param prefix the start of the name, or of any later word of it
+     * @param limit the maximum number of customers to return
+     * @return the matching customers
+     */
+    public synchronized List<Customer> findByNamePrefix(String prefix, int limit) {
+        Set<Customer> found = new LinkedHashSet<>();
+        String key = normalizeName(prefix);
+        if (key != null) {
+            collect(names, key, limit, found);
+        }
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * Returns the customers with a phone number, comparing digits only.
+     *
+     * @param phone the phone number
+     * @return the matching customers
+     */
+    public synchronized List<Customer> findByPhone(String phone) {
+        return copy(byPhone.get(normalizePhone(phone)));
+    }
+
+    /**
+     * Returns the customers with an email address, ignoring case.
+     *
+     * @param email the email address
+     * @return the matching customers
+     */
+    public synchronized List<Customer> findByEmail(String email) {
+        return copy(byEmail.get(normalizeEmail(email)));
+    }
+
+    /**
+     * Returns the customers with a passport number, ignoring case.
+     *
+     * @param passportNumber the passport number
+     * @return the matching customers
+     */
+    public synchronized List<Customer> findByPassport(String passportNumber) {
+        return copy(byPassport.get(normalizePassport(passportNumber)));
+    }
+
+    /**
+     * Searches by whatever the query looks like: an exact passport number,
+     * email address or phone number, then customers whose name has a word
+     * starting with the query.
+     *
+     * @param query the text typed by the user
+     * @param limit the maximum number of customers to return
+     * @return the matching customers, exact matches first
+     */
+    public synchronized List<Customer> search(String query, int limit) {
+        Set<Customer> found = new LinkedHashSet<>();
+        if (query == null || query.trim().isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        addUpTo(found, byPassport.get(normalizePassport(query)), limit);
+        if (query.indexOf('@') >= 0) {
+            addUpTo(found, byEmail.get(normalizeEmail(query)), limit);
+        }
+        addUpTo(found, byPhone.get(normalizePhone(query)), limit);
+        String key = normalizeName(query);
+        if (key != null && found.size() < limit) {
+            collect(names, key, limit, found);
+        }
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * Adds a customer to the index.
+     *
+     * @param customer the customer to add
+     */
+    synchronized void add(Customer customer) {
+        addName(customer, customer.getName());
+        addTo(byPhone, normalizePhone(customer.getPhone()), customer);
+        addTo(byEmail, normalizeEmail(customer.getEmail()), customer);
+        addTo(byPassport, normalizePassport(customer.getPassportNumber()), customer);
+    }
+
+    /**
+     * Removes a customer from the index.
+     *
+     * @param customer the customer to remove
+     */
+    synchronized void remove(Customer customer) {
+        removeName(customer, customer.getName());
+        removeFrom(byPhone, normalizePhone(customer.getPhone()), customer);
+        removeFrom(byEmail, normalizeEmail(customer.getEmail()), customer);
+        removeFrom(byPassport, normalizePassport(customer.getPassportNumber()), customer);
+    }
+
+    /**
+     * Moves a customer whose name, phone, email or passport number has changed.
+     *
+     * @param customer the customer, already holding its new values
+     * @param oldName the name it was indexed under
+     * @param oldPhone the phone number it was indexed under
+     * @param oldEmail the email address it was indexed under
+     * @param oldPassport the passport number it was indexed under
+     */
+    synchronized void moved(Customer customer, String oldName, String oldPhone, String oldEmail, String oldPassport) {
+        removeName(customer, oldName);
+        removeFrom(byPhone, normalizePhone(oldPhone), customer);
+        removeFrom(byEmail, normalizeEmail(oldEmail), customer);
+        removeFrom(byPassport, normalizePassport(oldPassport), customer);
+        add(customer);
+    }
+
+    private void addName(Customer customer, String name) {
+        String key = normalizeName(name);
+        if (key == null) {
+            return;
+        }
+        for (int start = 0; start >= 0; start = nextWord(key, start)) {
+            Node node = names;
+            for (int i = start; i < key.length(); i++) {
+                node = node.children.computeIfAbsent(key.charAt(i), c -> new Node());
+            }
+            if (node.customers == null) {
+                node.customers = new LinkedHashSet<>();
+            }
+            node.customers.add(customer);
+        }
+    }
+
+    private void removeName(Customer customer, String name) {
+        String key = normalizeName(name);
+        if (key == null) {
+            return;
+        }
+        for (int start = 0; start >= 0; start = nextWord(key, start)) {
+            removeName(names, key, start, customer);
+        }
+    }
+
+    /** Removes the customer from the key's node and prunes nodes left empty. */
+    private static boolean removeName(Node node, String key, int i, Customer customer) {
+        if (i == key.length()) {
+            if (node.customers != null && node.customers.remove(customer) && node.customers.isEmpty()) {
+                node.customers = null;
+            }
+        } else {
+            Node child = node.children.get(key.charAt(i));
+            if (child != null && removeName(child, key, i + 1, customer)) {
+                node.children.remove(key.charAt(i));
+            }
+        }
+        return node.customers == null && node.children.isEmpty();
+    }
+
+    private static void collect(Node root, String prefix, int limit, Set<Customer> found) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        if (node != null) {
+            collect(node, limit, found);
+        }
+    }
+
+    private static void collect(Node node, int limit, Set<Customer> found) {
+        addUpTo(found, node.customers, limit);
+        for (Node child : node.children.values()) {
+            if (found.size() >= limit) {
+                return;
+            }
+            collect(child, limit, found);
+        }
+    }
+
+    private static void addUpTo(Set<Customer> found, Collection<Customer> customers, int limit) {
+        if (customers == null) {
+            return;
+        }
+        for (Customer customer : customers) {
+            if (found.size() >= limit) {
+                return;
+            }
+            found.add(customer);
+        }
+    }
+
+    private static int nextWord(String key, int start) {
+        int space = key.indexOf(' ', start);
+        return space < 0 ? -1 : space + 1;
+    }
+
+    private static void addTo(Map<String, Set<Customer>> index, String key, Customer customer) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(customer);
+        }
+    }
+
+    private static void removeFrom(Map<String, Set<Customer>> index, String key, Customer customer) {
+        if (key == null) {
+            return;
+        }
+        Set<Customer> customers = index.get(key);
+        if (customers != null && customers.remove(customer) && customers.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private static List<Customer> copy(Set<Customer> customers) {
+        return customers == null ? new ArrayList<>() : new ArrayList<>(customers);
+    }
+
+    /** Lower-cases a name and collapses its spaces, or returns null if it is blank. */
+    private static String normalizeName(String name) {
+        if (name == null) {
+            return null;
+        }
+        String key = name.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        return key.isEmpty() ? null : key;
+    }
+
+    /** Keeps only the digits of a phone number, or returns null if there are none. */
+    private static String normalizePhone(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.length() == 0 ? null : digits.toString();
+    }
+
+    /** Trims and lower-cases an email address, or returns null if it is blank. */
+    private static String normalizeEmail(String email) {
+        return email == null || email.trim().isEmpty() ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Trims and upper-cases a passport number, or returns null if it is blank. */
+    private static String normalizePassport(String passportNumber) {
+        return passportNumber == null || passportNumber.trim().isEmpty() ? null : passportNumber.trim().toUpperCase(Locale.ROOT);
+    }
+}
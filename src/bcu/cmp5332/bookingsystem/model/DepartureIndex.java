@@ -0,0 +1,120 @@
+package bcu.cmp5332.bookingsystem.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Flights ordered by departure time, for the "upcoming flights" views.
+ * <p>
+ * Flights are kept in a skip list keyed by their departure minute (minutes
+ * since the epoch, with the date and time read as UTC) and, to keep keys
+ * unique, their ID. The flights departing after a given moment are then just
+ * the tail of the map: a live view that costs nothing to create, needs no
+ * copying or per-flight date arithmetic, and is already in departure order.
+ * Departed flights stay in the map but simply fall below the tail as time
+ * passes.
+ * </p>
+ * <p>
+ * The skip list allows reads while flights are added, removed or moved; a
+ * view being iterated at that moment may or may not reflect the change.
+ * </p>
+ *
+ * @author Ashok
+ */
+public class DepartureIndex {
+
+    private static final long MINUTES_PER_DAY = 24 * 60;
+
+    private final ConcurrentSkipListMap<Long, Flight> flights = new ConcurrentSkipListMap<>();
+
+    /**
+     * Returns a live, read-only view of the flights departing at or after the
+     * given moment, in departure order. Only the minute of the moment is used.
+     *
+     * @param from the earliest departure
+     * @return the flights departing from then on
+     */
+    public Collection<Flight> departingFrom(LocalDateTime from) {
+        return Collections.unmodifiableCollection(tail(from).values());
+    }
+
+    /**
+     * Returns one page of the flights departing at or after the given moment,
+     * in departure order.
+     *
+     * @param from the earliest departure
+     * @param offset the number of flights to skip
+     * @param limit the maximum number of flights to return
+     * @return the flights on the page
+     */
+    public List<Flight> page(LocalDateTime from, int offset, int limit) {
+        List<Flight> page = new ArrayList<>(Math.min(limit, 64));
+        Iterator<Flight> iterator = tail(from).values().iterator();
+        for (int i = 0; i < offset && iterator.hasNext(); i++) {
+            iterator.next();
+        }
+        while (page.size() < limit && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        return page;
+    }
+
+    /**
+     * Adds a flight to the index. Flights without a departure date are not indexed.
+     *
+     * @param flight the flight to add
+     */
+    void add(Flight flight) {
+        if (flight.getDepartureDate() != null) {
+            flights.put(key(flight.getDepartureDate(), flight.getDepartureTime(), flight.getId()), flight);
+        }
+    }
+
+    /**
+     * Removes a flight from the index.
+     *
+     * @param flight the flight to remove
+     */
+    void remove(Flight flight) {
+        remove(flight, flight.getDepartureDate(), flight.getDepartureTime());
+    }
+
+    /**
+     * Moves a flight whose departure date or time has changed.
+     *
+     * @param flight the flight, already holding its new departure
+     * @param oldDate the departure date it was indexed under
+     * @param oldTime the departure time it was indexed under
+     */
+    void moved(Flight flight, LocalDate oldDate, LocalTime oldTime) {
+        remove(flight, oldDate, oldTime);
+        add(flight);
+    }
+
+    private void remove(Flight flight, LocalDate date, LocalTime time) {
+        if (date != null) {
+            flights.remove(key(date, time, flight.getId()), flight);
+        }
+    }
+
+    private ConcurrentNavigableMap<Long, Flight> tail(LocalDateTime from) {
+        return flights.tailMap(key(from.toLocalDate(), from.toLocalTime(), 0), true);
+    }
+
+    /**
+     * Builds a key whose high 32 bits hold the departure minute and low 32
+     * bits the flight ID, so keys sort by departure and then by ID.
+     */
+    private static long key(LocalDate date, LocalTime time, int id) {
+        long minute = date.toEpochDay() * MINUTES_PER_DAY + (time == null ? 0 : time.toSecondOfDay() / 60);
+        return (minute << 32) | (id & 0xFFFFFFFFL);
+    }
+}
@@ -4,6 +4,7 @@ import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 
 import bcu.cmp5332.bookingsystem.model.Booking.SeatClass;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -11,26 +12,44 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A scheduled flight with its route, times, prices and seat inventory.
+ * <p>
+ * Seats, passengers and the booking list can be changed by several agents
+ * at once without locking. Each cabin is a lock-free {@link SeatInventory},
+ * and {@link #bookSeat(Booking)} takes a place and a seat in one atomic
+ * step, so a cabin cannot be overbooked and agents booking the same flight
+ * never wait for each other. A seat can also be held for a few minutes
+ * while a booking is completed, see {@link #holdSeat(SeatClass, String, Duration)}.
+ * The flight's other details are not guarded and are meant to be edited
+ * by one agent at a time.
+ * </p>
+ */
 public class Flight {
 
     private int id;
     private String flightNumber;
-    private String origin;
-    private String destination;
+    // Airport and airline names are interned in the SymbolTable
+    private Symbol origin;
+    private Symbol destination;
     private LocalDate departureDate;
-    private final Map<Booking.SeatClass, Integer> seatCapacities;
-    private final Map<Booking.SeatClass, Integer> seatsBooked;
-    private final Map<Booking.SeatClass, Double> pricing;
+    private final Map<Booking.SeatClass, SeatInventory> seats = new EnumMap<>(Booking.SeatClass.class);
+    private final double[] pricing = new double[Booking.SeatClass.values().length];  // by seat class ordinal
     private final Set<Customer> passengers;
-    private Map<Booking.SeatClass, Set<String>> bookedSeats = new HashMap<>();
-    private List<Booking> bookings = new ArrayList<>();  // Add a list to store bookings
+    private final Queue<Booking> bookings = new ConcurrentLinkedQueue<>();  // bookings added in this session
     private FlightStatus status = FlightStatus.SCHEDULED;
     private LocalTime departureTime;
     private LocalTime arrivalTime;
     private LocalDate arrivalDate;
-    private String airlineName;
+    private Symbol airlineName;
     private boolean isInternational;
+    private boolean dirty = true;
+    // Registry and flight index of the system this flight belongs to, if any
+    private BookingRegistry registry;
+    private FlightIndex index;
 
 
 
@@ -40,35 +59,29 @@ public class Flight {
             boolean isInternational) {
 		  this.id = id;
 		  this.flightNumber = flightNumber;
-		  this.airlineName = airlineName;
-		  this.origin = origin;
-		  this.destination = destination;
+		  this.airlineName = SymbolTable.getInstance().intern(airlineName);
+		  this.origin = SymbolTable.getInstance().intern(origin);
+		  this.destination = SymbolTable.getInstance().intern(destination);
 		  this.departureDate = departureDate;
 		  this.departureTime = departureTime;
 		  this.arrivalTime = arrivalTime;
 		  this.arrivalDate = arrivalDate;
 		  this.isInternational = isInternational;
 
-		  seatCapacities = new HashMap<>();
-		  seatsBooked = new HashMap<>();
-		  passengers = new HashSet<>();
-		  pricing = new HashMap<>();
-		
-		  seatCapacities.put(Booking.SeatClass.ECONOMY, 60);
-		  seatCapacities.put(Booking.SeatClass.BUSINESS, 25);
-		  seatCapacities.put(Booking.SeatClass.FIRST, 15);
+		  passengers = ConcurrentHashMap.newKeySet();
 		
-		  seatsBooked.put(Booking.SeatClass.ECONOMY, 0);
-		  seatsBooked.put(Booking.SeatClass.BUSINESS, 0);
-		  seatsBooked.put(Booking.SeatClass.FIRST, 0);
+		  seats.put(Booking.SeatClass.ECONOMY, SeatInventory.forClass(Booking.SeatClass.ECONOMY, 60));
+		  seats.put(Booking.SeatClass.BUSINESS, SeatInventory.forClass(Booking.SeatClass.BUSINESS, 25));
+		  seats.put(Booking.SeatClass.FIRST, SeatInventory.forClass(Booking.SeatClass.FIRST, 15));
 		
-		  pricing.put(Booking.SeatClass.ECONOMY, 100.0);
-		  pricing.put(Booking.SeatClass.BUSINESS, 250.0);
-		  pricing.put(Booking.SeatClass.FIRST, 500.0);
+		  pricing[Booking.SeatClass.ECONOMY.ordinal()] = 100.0;
+		  pricing[Booking.SeatClass.BUSINESS.ordinal()] = 250.0;
+		  pricing[Booking.SeatClass.FIRST.ordinal()] = 500.0;
 		}
 
     public void setInternational(boolean isInternational) {
         this.isInternational = isInternational;
+        markDirty();
     }
     public boolean getInternational() {
     	return isInternational;
@@ -80,6 +93,7 @@ public class Flight {
 
     public void setArrivalDate(LocalDate arrivalDate) {
         this.arrivalDate = arrivalDate;
+        markDirty();
     }
 
 
@@ -89,7 +103,12 @@ public class Flight {
     }
 
     public void setDepartureTime(LocalTime departureTime) {
+        LocalTime old = this.departureTime;
         this.departureTime = departureTime;
+        markDirty();
+        if (index != null) {
+            index.moved(this, origin, destination, departureDate, old);
+        }
     }
 
     public LocalTime getArrivalTime() {
@@ -98,9 +117,11 @@ public class Flight {
 
     public void setArrivalTime(LocalTime arrivalTime) {
         this.arrivalTime = arrivalTime;
+        markDirty();
     }
     public void setAirlineName(String name) {
-        this.airlineName = name;
+        this.airlineName = SymbolTable.getInstance().intern(name);
+        markDirty();
     }
 
 
@@ -115,11 +136,41 @@ public class Flight {
 
 
     public String getOrigin() {
-        return origin;
+        return Symbol.textOf(origin);
     }
 
     public String getDestination() {
-        return destination;
+        return Symbol.textOf(destination);
+    }
+
+    /**
+     * Returns the {@link SymbolTable} code of the origin, equal for every
+     * spelling of the same airport.
+     *
+     * @return the origin code, or {@link SymbolTable#NO_CODE} if there is no origin
+     */
+    public int getOriginCode() {
+        return Symbol.codeOf(origin);
+    }
+
+    /**
+     * Returns the {@link SymbolTable} code of the destination, equal for every
+     * spelling of the same airport.
+     *
+     * @return the destination code, or {@link SymbolTable#NO_CODE} if there is no destination
+     */
+    public int getDestinationCode() {
+        return Symbol.codeOf(destination);
+    }
+
+    /**
+     * Returns the {@link SymbolTable} code of the airline, equal for every
+     * spelling of the same airline.
+     *
+     * @return the airline code, or {@link SymbolTable#NO_CODE} if there is no airline
+     */
+    public int getAirlineCode() {
+        return Symbol.codeOf(airlineName);
     }
 
     public LocalDate getDepartureDate() {
@@ -127,27 +178,81 @@ public class Flight {
     }
 
     public int getCapacityForClass(Booking.SeatClass seatClass) {
-        return seatCapacities.getOrDefault(seatClass, 0);
+        return seats.get(seatClass).getCapacity();
     }
 
     public int getAvailableSeatsForClass(Booking.SeatClass seatClass) {
-        return seatCapacities.getOrDefault(seatClass, 0) - seatsBooked.getOrDefault(seatClass, 0);
+        return seats.get(seatClass).getAvailable();
+    }
+
+    /**
+     * Returns the seat inventory of a cabin, for seat maps and seat queries.
+     *
+     * @param seatClass the seat class of the cabin
+     * @return the cabin's seat inventory
+     */
+    public SeatInventory getSeatInventory(Booking.SeatClass seatClass) {
+        return seats.get(seatClass);
+    }
+
+    /**
+     * Returns the lowest free seat of a cabin.
+     *
+     * @param seatClass the seat class of the cabin
+     * @return the seat number, or null if the cabin is full
+     */
+    public String getNextFreeSeat(Booking.SeatClass seatClass) {
+        return seats.get(seatClass).nextFreeSeat();
     }
 
     public void setFlightNumber(String flightNumber) {
         this.flightNumber = flightNumber;
+        markDirty();
     }
 
     public void setOrigin(String origin) {
-        this.origin = origin;
+        Symbol old = this.origin;
+        this.origin = SymbolTable.getInstance().intern(origin);
+        markDirty();
+        if (index != null) {
+            index.moved(this, old, destination, departureDate, departureTime);
+        }
     }
 
     public void setDestination(String destination) {
-        this.destination = destination;
+        Symbol old = this.destination;
+        this.destination = SymbolTable.getInstance().intern(destination);
+        markDirty();
+        if (index != null) {
+            index.moved(this, origin, old, departureDate, departureTime);
+        }
     }
 
     public void setDepartureDate(LocalDate departureDate) {
+        LocalDate old = this.departureDate;
         this.departureDate = departureDate;
+        markDirty();
+        if (registry != null && !Objects.equals(old, departureDate)) {
+            registry.departureChanged(this, old);
+        }
+        if (index != null) {
+            index.moved(this, origin, destination, old, departureTime);
+        }
+    }
+
+    /** Sets the registry notified when the departure date changes, or null. */
+    void setRegistry(BookingRegistry registry) {
+        this.registry = registry;
+    }
+
+    /** Returns the index this flight reports changes to, or null. */
+    FlightIndex getIndex() {
+        return index;
+    }
+
+    /** Sets the index notified when the route or departure date changes, or null. */
+    void setIndex(FlightIndex index) {
+        this.index = index;
     }
 
 
@@ -160,21 +265,20 @@ public class Flight {
         return totalAvailableSeats;
     }
 
+    // Seats are counted when they are reserved or a booking is added, not here
     public void addPassenger(Customer passenger, Booking.SeatClass seatClass) throws FlightBookingSystemException {
-        if (seatsBooked.get(seatClass) >= seatCapacities.get(seatClass)) {
+        if (seats.get(seatClass).getAvailable() <= 0) {
             throw new FlightBookingSystemException("No available seats in " + seatClass + " class.");
         }
         passengers.add(passenger);
-        seatsBooked.put(seatClass, seatsBooked.get(seatClass) + 1);
     }
 
     public void removePassenger(Customer passenger, Booking.SeatClass seatClass) {
         passengers.remove(passenger);
-        seatsBooked.put(seatClass, seatsBooked.get(seatClass) - 1);
     }
 
     public double getPriceForClass(Booking.SeatClass seatClass) {
-        return pricing.getOrDefault(seatClass, 0.0);
+        return seatClass == null ? 0.0 : pricing[seatClass.ordinal()];
     }
 
     public String getDetailsShort() {
@@ -185,7 +289,7 @@ public class Flight {
 
         return String.format(
             "%-5s %-10s %-20s %-15s %-15s %-22s %-22s %-12s %-12s | $%.2f / $%.2f / $%.2f",
-            "[" + id + "]", flightNumber, airlineName, origin, destination,
+            "[" + id + "]", flightNumber, getAirlineName(), getOrigin(), getDestination(),
             departureDate + " " + depTime,
             arrivalDate + " " + arrTime,
             status, flightType,
@@ -204,40 +308,226 @@ public class Flight {
 
 
     public void setCapacityForClass(Booking.SeatClass seatClass, int capacity) {
-        seatCapacities.put(seatClass, capacity);
+        seats.get(seatClass).setCapacity(capacity);
+        markDirty();
     }
 
     public void setPriceForClass(Booking.SeatClass seatClass, double price) throws FlightBookingSystemException {
-        if (pricing.containsKey(seatClass)) {
-            pricing.put(seatClass, price);
+        if (seatClass != null) {
+            pricing[seatClass.ordinal()] = price;
         } else {
             throw new FlightBookingSystemException("Invalid seat class.");
         }
+        markDirty();
     }
 
     // Check if seat is available for the given class and seat number
     public boolean isSeatAvailable(SeatClass seatClass, String seatNumber) {
-        return !bookedSeats.getOrDefault(seatClass, new HashSet<>()).contains(seatNumber);
+        return seats.get(seatClass).isFree(seatNumber);
     }
 
-    // Reserve the seat by adding it to the set of booked seats
+    // Reserve the seat by marking it occupied in the cabin's inventory, or just a place if there is no seat
     public void reserveSeat(SeatClass seatClass, String seatNumber) {
-        bookedSeats.computeIfAbsent(seatClass, k -> new HashSet<>()).add(seatNumber);
+        SeatInventory cabin = seats.get(seatClass);
+        if (seatNumber != null && !seatNumber.trim().isEmpty()) {
+            cabin.reserve(seatNumber);
+        } else {
+            cabin.addUnseated();
+        }
     }
 
-    // Add booking and track the booked seat
+    // Add booking and track the booked seat, unless the booking already holds it
     public void addBooking(Booking booking) {
         bookings.add(booking);  // Add booking to flight's list
-        seatsBooked.put(booking.getSeatClass(), seatsBooked.get(booking.getSeatClass()) + 1);  // Increment seat count
+        reserveSeat(booking);
+        passengers.add(booking.getCustomer());
+    }
 
-        // Track the booked seat number for the specific class
-        if (booking.getSeatNumber() != null && !booking.getSeatNumber().isEmpty()) {
-            bookedSeats.computeIfAbsent(booking.getSeatClass(), k -> new HashSet<>()).add(booking.getSeatNumber());
+    /**
+     * Takes the seat, or just the place, of a stored booking even beyond the
+     * capacity, without adding the booking to this session's list. Does
+     * nothing if the booking already holds its place.
+     *
+     * @param booking the stored booking
+     */
+    public void reserveSeat(Booking booking) {
+        if (booking.takePlace()) {
+            reserveSeat(booking.getSeatClass(), booking.getSeatNumber());
         }
+    }
+
+    /**
+     * Adds a booking only if its cabin has a free place and its seat, if it
+     * has one, is free, taking the place and the seat in one lock-free step
+     * with {@link SeatInventory#tryReserve(String)}. Concurrent bookings can
+     * therefore never overbook the cabin or share a seat, whatever they
+     * checked beforehand.
+     *
+     * @param booking the booking to add
+     * @throws FlightBookingSystemException if the cabin is full or the seat is taken
+     */
+    public void bookSeat(Booking booking) throws FlightBookingSystemException {
+        take(booking.getSeatClass(), booking.getSeatNumber());
+        booking.takePlace();
+        bookings.add(booking);
         passengers.add(booking.getCustomer());
     }
+
+    /**
+     * Holds a place in a cabin, and a seat if one is given, for a limited
+     * time while a booking for it is completed. The place and seat are taken
+     * the same way as by {@link #bookSeat(Booking)}, so a held seat cannot be
+     * booked or held by anyone else. The hold must be confirmed with
+     * {@link FlightBookingSystem#placeBooking(Booking, SeatHold)} or released
+     * with {@link #releaseHold(SeatHold)} before the time runs out, or it
+     * expires and the seat is freed.
+     *
+     * @param seatClass the cabin to hold a place in
+     * @param seatNumber the seat to hold, or null or empty for any place
+     * @param ttl how long to hold the seat for
+     * @return the hold
+     * @throws FlightBookingSystemException if the cabin is full or the seat is taken
+     */
+    public SeatHold holdSeat(SeatClass seatClass, String seatNumber, Duration ttl) throws FlightBookingSystemException {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new FlightBookingSystemException("A seat must be held for a positive time.");
+        }
+        seatNumber = seatNumber == null || seatNumber.isEmpty() ? null : seatNumber;
+        take(seatClass, seatNumber);
+        SeatHold hold = new SeatHold(this, seatClass, seatNumber, System.nanoTime() + ttl.toNanos());
+        HoldTimer.shared().schedule(hold);
+        return hold;
+    }
+
+    /**
+     * Releases a hold on this flight and frees its seat.
+     *
+     * @param hold the hold to release
+     * @return true if the hold was still active and has been released
+     */
+    public boolean releaseHold(SeatHold hold) {
+        if (hold.getFlight() != this || !hold.end(SeatHold.Status.RELEASED)) {
+            return false;
+        }
+        free(hold.getSeatClass(), hold.getSeatNumber());
+        return true;
+    }
+
+    // Called by the hold timer when a hold runs out
+    boolean expireHold(SeatHold hold) {
+        if (!hold.end(SeatHold.Status.EXPIRED)) {
+            return false;
+        }
+        free(hold.getSeatClass(), hold.getSeatNumber());
+        return true;
+    }
+
+    /**
+     * Adds a booking for a held seat, turning the hold into the booking
+     * without taking the seat again. If the hold has already expired or been
+     * released, the seat is booked as by {@link #bookSeat(Booking)} instead,
+     * which succeeds if nobody has taken it since.
+     *
+     * @param booking the booking to add
+     * @param hold the hold on the booking's seat
+     * @throws FlightBookingSystemException if the hold is for another seat, or
+     *         it has ended and the cabin is now full or the seat taken
+     */
+    public void bookHeldSeat(Booking booking, SeatHold hold) throws FlightBookingSystemException {
+        String seatNumber = booking.getSeatNumber() == null || booking.getSeatNumber().isEmpty() ? null : booking.getSeatNumber();
+        if (hold.getFlight() != this || hold.getSeatClass() != booking.getSeatClass()
+                || (seatNumber == null ? hold.getSeatNumber() != null : !seatNumber.equalsIgnoreCase(hold.getSeatNumber()))) {
+            throw new FlightBookingSystemException("The held seat does not match the booking.");
+        }
+        if (!hold.end(SeatHold.Status.CONFIRMED)) {
+            bookSeat(booking);
+            return;
+        }
+        booking.takePlace();
+        bookings.add(booking);
+        passengers.add(booking.getCustomer());
+    }
+
+    // Takes a place, and the seat if there is one, or explains why it cannot
+    private void take(SeatClass seatClass, String seatNumber) throws FlightBookingSystemException {
+        SeatInventory cabin = seats.get(seatClass);
+        if (!cabin.tryReserve(seatNumber == null || seatNumber.isEmpty() ? null : seatNumber)) {
+            if (cabin.getAvailable() <= 0) {
+                throw new FlightBookingSystemException("No available seats in " + seatClass + " class.");
+            }
+            throw new FlightBookingSystemException("Seat " + seatNumber + " in " + seatClass + " is already booked.");
+        }
+    }
+
+    // Frees the seat number, or just the place if there is none
+    private void free(SeatClass seatClass, String seatNumber) {
+        SeatInventory cabin = seats.get(seatClass);
+        if (seatNumber != null && !seatNumber.isEmpty()) {
+            cabin.release(seatNumber);
+        } else {
+            cabin.removeUnseated();
+        }
+    }
+
+    /**
+     * Returns whether any of this flight's stored details have changed since
+     * they were last saved. Seat and passenger counts are not stored, so
+     * bookings do not make a flight dirty. New flights start out dirty.
+     *
+     * @return true if the flight needs to be saved
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Marks this flight as saved. Called by the data layer once the flight's
+     * current details have been written.
+     */
+    public void markClean() {
+        dirty = false;
+    }
+
+    // Logs the change with the system's registry, so a save finds it without a scan
+    private void markDirty() {
+        dirty = true;
+        BookingRegistry registry = this.registry;
+        if (registry != null) {
+            registry.logChanged(this);
+        }
+    }
+
+    /**
+     * Returns a copy of the bookings added to this flight in this session.
+     *
+     * @return the flight's bookings
+     */
     public List<Booking> getBookings() {
-        return bookings;
+        return new ArrayList<>(bookings);
+    }
+
+    /**
+     * Drops a booking from this flight's list without freeing its seat, for
+     * a booking moved to a {@link BookingArchive}.
+     *
+     * @param booking the archived booking
+     */
+    void dropBooking(Booking booking) {
+        bookings.remove(booking);
+    }
+
+    /**
+     * Puts back a booking dropped by {@link #dropBooking(Booking)} when it
+     * leaves the archive. Its seat was never freed, so it is not taken again.
+     *
+     * @param booking the restored booking
+     */
+    void restoreBooking(Booking booking) {
+        if (booking.getStatus() != Booking.Status.CANCELLED) {
+            booking.takePlace();
+            passengers.add(booking.getCustomer());
+        }
+        bookings.add(booking);
     }
     public FlightStatus getStatus() {
         return status;
@@ -245,6 +535,7 @@ public class Flight {
 
     public void setStatus(FlightStatus status) {
         this.status = status;
+        markDirty();
     }
 
     public String getDetailsLong() {
@@ -259,17 +550,17 @@ public class Flight {
 
         return new StringBuilder()
             .append("Flight #").append(id).append(" - ").append(flightNumber)
-            .append(" (").append(airlineName).append(")")
+            .append(" (").append(getAirlineName()).append(")")
             .append(" [").append(flightType).append("]")
-            .append("\nFrom: ").append(origin).append(" to ").append(destination)
+            .append("\nFrom: ").append(getOrigin()).append(" to ").append(getDestination())
             .append("\nDeparture: ").append(formattedDate).append(" at ").append(formattedDepartureTime)
             .append("\nArrival: ").append(formattedArrivalDate).append(" at ").append(formattedArrivalTime)
             .append("\nStatus: ").append(status)
             .append("\nFlight Type: ").append(flightType)
             .append("\nSeats Available: ").append(getAvailableSeats())
-            .append("\nSeat Capacities: Economy = ").append(seatCapacities.get(Booking.SeatClass.ECONOMY))
-            .append(", Business = ").append(seatCapacities.get(Booking.SeatClass.BUSINESS))
-            .append(", First = ").append(seatCapacities.get(Booking.SeatClass.FIRST))
+            .append("\nSeat Capacities: Economy = ").append(getCapacityForClass(Booking.SeatClass.ECONOMY))
+            .append(", Business = ").append(getCapacityForClass(Booking.SeatClass.BUSINESS))
+            .append(", First = ").append(getCapacityForClass(Booking.SeatClass.FIRST))
             .append("\nSeat Prices: Economy = $").append(String.format("%.2f", getPriceForClass(Booking.SeatClass.ECONOMY)))
             .append(", Business = $").append(String.format("%.2f", getPriceForClass(Booking.SeatClass.BUSINESS)))
             .append(", First = $").append(String.format("%.2f", getPriceForClass(Booking.SeatClass.FIRST)))
@@ -287,17 +578,17 @@ public class Flight {
 
         StringBuilder details = new StringBuilder();
         details.append("Flight #").append(id).append(" - ").append(flightNumber)
-               .append(" (").append(airlineName).append(")")
+               .append(" (").append(getAirlineName()).append(")")
                .append(" [").append(flightType).append("]")
-               .append(" from ").append(origin).append(" to ").append(destination).append("\n")
+               .append(" from ").append(getOrigin()).append(" to ").append(getDestination()).append("\n")
                .append("Departure: ").append(departureDate).append(" at ").append(departureTime.format(timeFormatter)).append("\n")
                .append("Arrival: ").append(arrivalDate).append(" at ").append(arrivalTime.format(timeFormatter)).append("\n")
                .append("Status: ").append(status).append("\n")
                .append("Flight Type: ").append(flightType).append("\n")
                .append("Seats Available: ").append(getAvailableSeats()).append("\n")
-               .append("Seat Capacities: Economy=").append(seatCapacities.get(Booking.SeatClass.ECONOMY))
-               .append(", Business=").append(seatCapacities.get(Booking.SeatClass.BUSINESS))
-               .append(", First=").append(seatCapacities.get(Booking.SeatClass.FIRST)).append("\n");
+               .append("Seat Capacities: Economy=").append(getCapacityForClass(Booking.SeatClass.ECONOMY))
+               .append(", Business=").append(getCapacityForClass(Booking.SeatClass.BUSINESS))
+               .append(", First=").append(getCapacityForClass(Booking.SeatClass.FIRST)).append("\n");
 
         if (passengers.isEmpty()) {
             details.append("\nPassengers:\nNo passengers booked.\n");
@@ -320,18 +611,22 @@ public class Flight {
 
 
 
+    /**
+     * Removes a booking from this flight and gives back its seat or place,
+     * if the booking still holds it. A place is only ever given back once,
+     * however many agents remove or cancel the booking at the same time.
+     *
+     * @param booking the booking to remove
+     */
     public void removeBooking(Booking booking) {
         bookings.remove(booking);
-        seatsBooked.put(booking.getSeatClass(), seatsBooked.get(booking.getSeatClass()) - 1);
-
-        // Remove the seat number from booked seats
-        if (booking.getSeatNumber() != null && !booking.getSeatNumber().isEmpty()) {
-            bookedSeats.getOrDefault(booking.getSeatClass(), new HashSet<>()).remove(booking.getSeatNumber());
+        if (booking.releasePlace()) {
+            free(booking.getSeatClass(), booking.getSeatNumber());
         }
     }
 	public String getAirlineName() {
 		// TODO Auto-generated method stub
-		return airlineName;
+		return Symbol.textOf(airlineName);
 	}
 
 
@@ -359,14 +654,7 @@ public class Flight {
 	}
 
 	public double getBasePrice(SeatClass seatClass) {
-	    return pricing.getOrDefault(seatClass, 0.0);
-	}
-
-	public void releaseSeat(SeatClass seatClass, String seatNumber) {
-	    Set<String> seats = bookedSeats.get(seatClass);
-	    if (seats != null && seats.remove(seatNumber)) {
-	        seatsBooked.put(seatClass, seatsBooked.get(seatClass) - 1);
-	    }
+	    return seatClass == null ? 0.0 : pricing[seatClass.ordinal()];
 	}
 
 
@@ -6,23 +6,70 @@ import bcu.cmp5332.bookingsystem.data.FlightDataManager;
 import bcu.cmp5332.bookingsystem.main.FlightBookingSystemException;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Core class representing the flight booking system.
  * Manages customers, flights, and bookings.
+ * <p>
+ * Several agents may book at once. The consistency model is:
+ * </p>
+ * <ul>
+ *   <li>The customer and flight tables are guarded by a read-write lock.
+ *       Lookups and bookings share the read lock; adding or removing a
+ *       customer or flight takes the write lock, so neither can disappear
+ *       while a booking on it is being placed.</li>
+ *   <li>New customer, flight and booking IDs come from the system's
+ *       {@link IdAllocator}, which needs no lock.</li>
+ *   <li>Seats are taken without locking: each cabin's {@link SeatInventory}
+ *       claims a place and a seat with atomic compare-and-set, and
+ *       {@link #placeBooking(Booking)} checks and takes a seat in one step,
+ *       so a cabin is never overbooked and bookings on the same or different
+ *       flights never wait for each other. A {@link SeatHold} takes a seat
+ *       the same way ahead of its booking, and
+ *       {@link #placeBooking(Booking, SeatHold)} turns it into the booking.</li>
+ *   <li>Each customer's bookings, the {@link BookingRegistry} and the search
+ *       indexes are guarded by their own monitors, held only briefly. Locks
+ *       are always taken in the order system, table, customer, registry.</li>
+ *   <li>Queries return copies. Each is consistent on its own, but a query
+ *       running while a booking is placed may see its seat taken before the
+ *       booking itself appears.</li>
+ *   <li>The save-tracking methods are synchronized on the system. The data
+ *       layer prepares a save through {@link #readConsistently(ConsistentRead)},
+ *       which also holds the table write lock, so that no customer or flight
+ *       is added or removed and no booking is placed or cancelled halfway
+ *       through the save.</li>
+ * </ul>
+ * <p>
+ * Editing a customer's or flight's details is not atomic with respect to
+ * other edits of the same entity; the details are edited by one agent at a
+ * time.
+ * </p>
  */
 public class FlightBookingSystem {
 
-    private final Map<Integer, Customer> customers = new HashMap<>();
-    private final Map<Integer, Flight> flights = new HashMap<>();
-    private final List<Booking> bookings = new ArrayList<>();
-    private final Map<String, Customer> customersByPassport = new HashMap<>();
+    private final IntObjectMap<Customer> customers = new IntObjectMap<>();
+    private final IntObjectMap<Flight> flights = new IntObjectMap<>();
+    private final IdAllocator ids = new IdAllocator();
+    private final BookingRegistry bookings = new BookingRegistry(ids);
+    private final FlightIndex flightIndex = new FlightIndex();
+    private final CustomerIndex customerIndex = new CustomerIndex();
+    // Guards the customer and flight tables
+    private final ReentrantReadWriteLock tableLock = new ReentrantReadWriteLock();
+    private final Lock readLock = tableLock.readLock();
+    private final Lock writeLock = tableLock.writeLock();
 
-    private int nextCustomerId = 1;
-    private int nextFlightId = 1;
-    private int nextBookingId = 1;
+    // Change tracking for incremental saves. Changed entities log themselves
+    // with the booking registry; flight and customer removals are recorded here.
+    private volatile boolean flightsRemoved;
+    private volatile boolean customersRemoved;
+
+    // Off-heap store for settled bookings, created when first used
+    private volatile BookingArchive archive;
 
     /**
      * Adds a new customer with an auto-generated ID.
@@ -32,9 +79,15 @@ public class FlightBookingSystem {
      * @return the newly created Customer object
      */
     public Customer addCustomer(String name, String phone) {
-        Customer customer = new Customer(nextCustomerId++, name, phone);
-        customers.put(customer.getId(), customer);
-        return customer;
+        int id = ids.next(IdAllocator.Kind.CUSTOMER);
+        writeLock.lock();
+        try {
+            Customer customer = new Customer(id, name, phone);
+            attach(customer);
+            return customer;
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
@@ -46,12 +99,14 @@ public class FlightBookingSystem {
      * @return the newly created Customer object
      */
     public Customer addCustomer(int id, String name, String phone) {
-        Customer customer = new Customer(id, name, phone);
-        customers.put(customer.getId(), customer);
-        if (id >= nextCustomerId) {
-            nextCustomerId = id + 1; // Update next available customer ID
+        writeLock.lock();
+        try {
+            Customer customer = new Customer(id, name, phone);
+            attach(customer);
+            return customer;
+        } finally {
+            writeLock.unlock();
         }
-        return customer;
     }
 
     /**
@@ -73,11 +128,16 @@ public class FlightBookingSystem {
     public Customer addCustomer(String name, String phone, int age, String address, String country,
             String passportNumber, LocalDate passportExpiryDate,
             boolean disabled, String email, LocalDate dob, String gender) {
-        Customer customer = new Customer(nextCustomerId++, name, phone, age, address, country,
-                passportNumber, passportExpiryDate, disabled, email, dob, gender);
-        customers.put(customer.getId(), customer);
-        customersByPassport.put(passportNumber.toUpperCase(), customer);
-        return customer;
+        int id = ids.next(IdAllocator.Kind.CUSTOMER);
+        writeLock.lock();
+        try {
+            Customer customer = new Customer(id, name, phone, age, address, country,
+                    passportNumber, passportExpiryDate, disabled, email, dob, gender);
+            attach(customer);
+            return customer;
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
@@ -89,20 +149,20 @@ public class FlightBookingSystem {
     public void addCustomerDirect(Customer customer) throws FlightBookingSystemException {
         int id = customer.getId();
 
-        if (customers.containsKey(id)) {
-            throw new FlightBookingSystemException("Customer with ID " + id + " already exists.");
-        }
-
-        if (customersByPassport.containsKey(customer.getPassportNumber().toUpperCase())) {
-            throw new FlightBookingSystemException("Customer with passport " + customer.getPassportNumber() + " already exists.");
-        }
+        writeLock.lock();
+        try {
+            if (customers.containsKey(id)) {
+                throw new FlightBookingSystemException("Customer with ID " + id + " already exists.");
+            }
 
-        customers.put(id, customer);
-        customersByPassport.put(customer.getPassportNumber().toUpperCase(), customer);
+            if (customer.getPassportNumber() != null
+                    && !customerIndex.findByPassport(customer.getPassportNumber()).isEmpty()) {
+                throw new FlightBookingSystemException("Customer with passport " + customer.getPassportNumber() + " already exists.");
+            }
 
-        // Ensure nextCustomerId is always greater than the highest used ID
-        if (id >= nextCustomerId) {
-            nextCustomerId = id + 1;
+            attach(customer);
+        } finally {
+            writeLock.unlock();
         }
     }
 
@@ -124,11 +184,18 @@ public class FlightBookingSystem {
             LocalDate departureDate, LocalTime departureTime,
             LocalTime arrivalTime, LocalDate arrivalDate,
             boolean isInternational) {
-        Flight flight = new Flight(nextFlightId++, flightNumber, airlineName, origin, destination,
-                departureDate, departureTime, arrivalTime, arrivalDate,
-                isInternational);
-        flights.put(flight.getId(), flight);
-        return flight;
+        int id = ids.next(IdAllocator.Kind.FLIGHT);
+        writeLock.lock();
+        try {
+            Flight flight = new Flight(id, flightNumber, airlineName, origin, destination,
+                    departureDate, departureTime, arrivalTime, arrivalDate,
+                    isInternational);
+            flights.put(flight.getId(), flight);
+            attach(flight);
+            return flight;
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
@@ -139,7 +206,7 @@ public class FlightBookingSystem {
      * @throws FlightBookingSystemException if no customer with the given ID exists
      */
     public Customer getCustomerById(int id) throws FlightBookingSystemException {
-        Customer customer = customers.get(id);
+        Customer customer = lookupCustomer(id);
         if (customer == null) {
             throw new FlightBookingSystemException("Customer with ID " + id + " not found.");
         }
@@ -154,7 +221,7 @@ public class FlightBookingSystem {
      * @throws FlightBookingSystemException if no flight with the given ID exists
      */
     public Flight getFlightById(int id) throws FlightBookingSystemException {
-        Flight flight = flights.get(id);
+        Flight flight = lookupFlight(id);
         if (flight == null) {
             throw new FlightBookingSystemException("Flight with ID " + id + " not found.");
         }
@@ -205,13 +272,67 @@ public class FlightBookingSystem {
                 petCharge
         );
 
-        booking.setBookingId(nextBookingId++);
+        placeBooking(booking);
+        return booking;
+    }
 
-        customer.addBooking(booking);
-        flight.addPassenger(customer, seatClass);
-        flight.addBooking(booking);
+    /**
+     * Places a new booking: takes its seat on the flight and adds it to its
+     * customer, as one step that is safe to run concurrently with other
+     * bookings. The seat is checked and taken atomically by the flight, so
+     * earlier availability checks by the caller are only advisory. If the
+     * customer turns out to have a booking on the flight already, the seat
+     * is given back. A booking without an ID is given one from the
+     * system's {@link IdAllocator} once its seat is taken.
+     *
+     * @param booking the new booking, holding its customer, flight and seat
+     * @throws FlightBookingSystemException if the customer or flight is not in
+     *         the system, the cabin is full, the seat is taken or the customer
+     *         already has a booking on the flight
+     */
+    public void placeBooking(Booking booking) throws FlightBookingSystemException {
+        placeBooking(booking, null);
+    }
 
-        return booking;
+    /**
+     * Places a new booking for a seat held with
+     * {@link Flight#holdSeat(Booking.SeatClass, String, java.time.Duration)},
+     * as {@link #placeBooking(Booking)} does but confirming the hold instead
+     * of taking the seat again. If the hold has expired or been released in
+     * the meantime the seat is booked as usual, which fails only if someone
+     * else has taken it since.
+     *
+     * @param booking the new booking, holding its customer, flight and seat
+     * @param hold the hold on the booking's seat, or null if there is none
+     * @throws FlightBookingSystemException if the customer or flight is not in
+     *         the system, the hold is for another seat, the hold has ended and
+     *         the seat is gone, or the customer already has a booking on the flight
+     */
+    public void placeBooking(Booking booking, SeatHold hold) throws FlightBookingSystemException {
+        readLock.lock();
+        try {
+            Customer customer = booking.getCustomer();
+            Flight flight = booking.getFlight();
+            if (customers.get(customer.getId()) != customer || flights.get(flight.getId()) != flight) {
+                throw new FlightBookingSystemException("The customer or flight is no longer in the system.");
+            }
+            if (hold == null) {
+                flight.bookSeat(booking);
+            } else {
+                flight.bookHeldSeat(booking, hold);
+            }
+            try {
+                if (booking.getBookingId() == 0) {
+                    booking.setBookingId(ids.next(IdAllocator.Kind.BOOKING));
+                }
+                customer.addBooking(booking);
+            } catch (FlightBookingSystemException | RuntimeException ex) {
+                flight.removeBooking(booking);
+                throw ex;
+            }
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -222,53 +343,122 @@ public class FlightBookingSystem {
      */
     public void cancelBooking(int bookingId) throws FlightBookingSystemException {
         Booking booking = findBookingById(bookingId);
-        if (booking.getStatus() != Booking.Status.ACTIVE) {
-            throw new FlightBookingSystemException("Only active bookings can be cancelled.");
+        readLock.lock();
+        try {
+            // Checks and changes the status in one step, so only one of several concurrent cancels succeeds
+            booking.cancelActive();
+            booking.getCustomer().removeBooking(booking);
+        } finally {
+            readLock.unlock();
         }
-        booking.getCustomer().cancelBooking(booking);
     }
 
     /**
-     * Finds a booking by its ID.
+     * Finds a booking by its ID. An archived booking is moved back into
+     * memory first, as described for {@link #archiveSettledBookings(LocalDate)}.
      *
      * @param bookingId the booking ID
      * @return the Booking object
      * @throws FlightBookingSystemException if no booking with given ID exists
      */
     public Booking findBookingById(int bookingId) throws FlightBookingSystemException {
-        for (Booking booking : bookings) {
-            if (booking.getBookingId() == bookingId) {
-                return booking;
-            }
+        Booking booking = bookings.get(bookingId);
+        if (booking != null) {
+            return booking;
+        }
+        booking = archive == null ? null : restore(bookingId);
+        if (booking != null) {
+            return booking;
         }
         throw new FlightBookingSystemException("Booking with ID " + bookingId + " not found.");
     }
 
     /**
-     * Returns a list of all customers in the system.
+     * Returns a list of all customers in the system, ordered by customer ID.
      *
      * @return list of customers
      */
     public List<Customer> getAllCustomers() {
-        return new ArrayList<>(customers.values());
+        List<Customer> all;
+        readLock.lock();
+        try {
+            all = new ArrayList<>(customers.values());
+        } finally {
+            readLock.unlock();
+        }
+        all.sort(Comparator.comparingInt(Customer::getId));
+        return all;
     }
 
     /**
-     * Returns a list of all flights in the system.
+     * Returns a list of all flights in the system, ordered by flight ID.
      *
      * @return list of flights
      */
     public List<Flight> getAllFlights() {
-        return new ArrayList<>(flights.values());
+        List<Flight> all;
+        readLock.lock();
+        try {
+            all = new ArrayList<>(flights.values());
+        } finally {
+            readLock.unlock();
+        }
+        all.sort(Comparator.comparingInt(Flight::getId));
+        return all;
     }
 
     /**
-     * Returns a list of all bookings in the system.
+     * Returns a list of all bookings in the system, ordered by booking ID.
      *
      * @return list of bookings
      */
     public List<Booking> getAllBookings() {
-        return new ArrayList<>(bookings);
+        if (archive == null || archive.size() == 0) {
+            return bookings.getAll();
+        }
+        List<Booking> all = archive.select((customerId, flightId, status) -> true, this);
+        all.addAll(bookings.getAll());
+        all.sort(Comparator.comparingInt(Booking::getBookingId));
+        return all;
+    }
+
+    /**
+     * Returns all bookings on a specific flight.
+     *
+     * @param flightId the flight's ID
+     * @return list of bookings on the flight
+     */
+    public List<Booking> getBookingsForFlight(int flightId) {
+        return withArchived((customerId, id, status) -> id == flightId, bookings.getByFlight(flightId));
+    }
+
+    /**
+     * Returns all bookings with the given status.
+     *
+     * @param status the booking status
+     * @return list of bookings with that status
+     */
+    public List<Booking> getBookingsByStatus(Booking.Status status) {
+        return withArchived((customerId, flightId, s) -> s == status, bookings.getByStatus(status));
+    }
+
+    /**
+     * Returns all bookings on flights departing between two dates inclusive,
+     * ordered by departure date. A null date leaves that end of the range open.
+     *
+     * @param from the earliest departure date
+     * @param to the latest departure date
+     * @return list of bookings departing in the range
+     */
+    public List<Booking> getBookingsDepartingBetween(LocalDate from, LocalDate to) {
+        List<Booking> result = withArchived((customerId, flightId, status) -> {
+            Flight flight = lookupFlight(flightId);
+            return flight != null && flight.getDepartureDate() != null
+                    && (from == null || !flight.getDepartureDate().isBefore(from))
+                    && (to == null || !flight.getDepartureDate().isAfter(to));
+        }, bookings.getByDeparture(from, to));
+        result.sort(Comparator.comparing(booking -> booking.getFlight().getDepartureDate()));
+        return result;
     }
 
     /**
@@ -279,8 +469,118 @@ public class FlightBookingSystem {
      * @throws FlightBookingSystemException if customer not found
      */
     public List<Booking> getBookingsForCustomer(int customerId) throws FlightBookingSystemException {
-        Customer customer = getCustomerById(customerId);
-        return customer.getBookings();
+        getCustomerById(customerId);
+        return withArchived((id, flightId, status) -> id == customerId, bookings.getByCustomer(customerId));
+    }
+
+    /**
+     * Moves settled bookings out of the heap into the system's
+     * {@link BookingArchive}: completed and cancelled bookings on flights that
+     * departed before the given date, which are saved and unchanged since.
+     * Archived bookings are still returned by the booking queries, as copies
+     * rebuilt from the archive, and {@link #findBookingById(int)} moves a
+     * booking back to its customer and flight so that it can be changed
+     * again. Seats held by archived bookings stay taken.
+     *
+     * @param before bookings on flights departing before this date are archived
+     * @return the number of bookings archived
+     */
+    public synchronized int archiveSettledBookings(LocalDate before) {
+        int archived = 0;
+        for (Booking booking : bookings.getByDeparture(null, before.minusDays(1))) {
+            if (booking.getStatus() == Booking.Status.ACTIVE || booking.isDirty()
+                    || bookings.isUnsaved(booking) || !BookingArchive.canArchive(booking)) {
+                continue;
+            }
+            if (archive == null) {
+                archive = new BookingArchive();
+            }
+            archive.add(booking);
+            booking.getCustomer().evictBooking(booking);
+            bookings.evict(booking);
+            booking.getFlight().dropBooking(booking);
+            archived++;
+        }
+        return archived;
+    }
+
+    /**
+     * Returns the number of bookings held in the system's {@link BookingArchive}.
+     *
+     * @return the number of archived bookings
+     */
+    public int getArchivedBookingCount() {
+        return archive == null ? 0 : archive.size();
+    }
+
+    /** Returns the archived bookings matching a filter, followed by the given bookings. */
+    private List<Booking> withArchived(BookingArchive.RowFilter filter, List<Booking> current) {
+        if (archive == null || archive.size() == 0) {
+            return current;
+        }
+        List<Booking> result = archive.select(filter, this);
+        result.addAll(current);
+        return result;
+    }
+
+    /**
+     * Moves an archived booking back to its customer and flight, unless the
+     * customer has since rebooked the flight, in which case a detached copy
+     * is returned and the booking stays archived. Synchronized like
+     * {@link #archiveSettledBookings(LocalDate)}, so a booking is never
+     * archived and restored at the same time, or restored twice.
+     *
+     * @param bookingId the booking ID
+     * @return the booking, or null if it is not archived either
+     */
+    private synchronized Booking restore(int bookingId) {
+        Booking booking = bookings.get(bookingId);
+        if (booking != null) {
+            return booking;  // restored by another agent in the meantime
+        }
+        booking = archive.get(bookingId, this);
+        if (booking == null) {
+            return null;
+        }
+        try {
+            booking.getCustomer().addBooking(booking);
+        } catch (FlightBookingSystemException ex) {
+            return booking;
+        }
+        archive.remove(bookingId);
+        booking.getFlight().restoreBooking(booking);
+        markBookingSaved(booking);
+        return booking;
+    }
+
+    /**
+     * Returns a customer for the {@link BookingArchive}.
+     *
+     * @param id the customer ID
+     * @return the customer, or null if there is none
+     */
+    Customer lookupCustomer(int id) {
+        readLock.lock();
+        try {
+            return customers.get(id);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Returns a flight for the {@link BookingArchive}.
+     *
+     * @param id the flight ID
+     * @return the flight, or null if there is none
+     */
+    Flight lookupFlight(int id) {
+        readLock.lock();
+        try {
+            return flights.get(id);
+        } finally {
+            readLock.unlock();
+        }
     }
 
     /**
@@ -288,9 +588,12 @@ public class FlightBookingSystem {
      */
     public void displaySystemSummary() {
         System.out.println("System contains:");
-        System.out.println(customers.size() + " customers");
-        System.out.println(flights.size() + " flights");
+        System.out.println(getAllCustomers().size() + " customers");
+        System.out.println(getAllFlights().size() + " flights");
         System.out.println(bookings.size() + " bookings");
+        if (getArchivedBookingCount() > 0) {
+            System.out.println(getArchivedBookingCount() + " archived bookings");
+        }
     }
 
     /**
@@ -309,11 +612,57 @@ public class FlightBookingSystem {
      * @return the added flight
      */
     public Flight addFlight(Flight flight) {
-        flights.put(flight.getId(), flight);
-        if (flight.getId() >= nextFlightId) {
-            nextFlightId = flight.getId() + 1;
+        writeLock.lock();
+        try {
+            Flight replaced = flights.put(flight.getId(), flight);
+            if (replaced != null && replaced != flight) {
+                detach(replaced);
+            }
+            attach(flight);
+            return flight;
+        } finally {
+            writeLock.unlock();
         }
-        return flight;
+    }
+
+    private void attach(Flight flight) {
+        ids.observe(IdAllocator.Kind.FLIGHT, flight.getId());
+        if (flight.getIndex() != flightIndex) {
+            flightIndex.add(flight);
+        }
+        flight.setRegistry(bookings);
+        flight.setIndex(flightIndex);
+        if (flight.isDirty()) {
+            bookings.logChanged(flight);
+        }
+    }
+
+    private void attach(Customer customer) {
+        ids.observe(IdAllocator.Kind.CUSTOMER, customer.getId());
+        Customer replaced = customers.put(customer.getId(), customer);
+        if (replaced != null && replaced != customer) {
+            detach(replaced);
+        }
+        customerIndex.add(customer);
+        customer.setRegistry(bookings);
+        customer.setIndex(customerIndex);
+        if (customer.isDirty()) {
+            bookings.logChanged(customer);
+        }
+    }
+
+    private void detach(Customer customer) {
+        customerIndex.remove(customer);
+        customer.setRegistry(null);
+        customer.setIndex(null);
+    }
+
+    private void detach(Flight flight) {
+        if (flight.getIndex() == flightIndex) {
+            flightIndex.remove(flight);
+        }
+        flight.setRegistry(null);
+        flight.setIndex(null);
     }
 
     private DataManager dataManager;
@@ -335,6 +684,69 @@ public class FlightBookingSystem {
         return this.dataManager;
     }
 
+    /**
+     * Finds the flights on a route departing on a given date, ordered by
+     * departure time. Only the matching flights are visited, through the
+     * system's {@link FlightIndex}.
+     *
+     * @param origin the origin, ignoring case, or null for any
+     * @param destination the destination, ignoring case, or null for any
+     * @param date the departure date, or null for any
+     * @return the matching flights
+     */
+    public List<Flight> findFlights(String origin, String destination, LocalDate date) {
+        return flightIndex.find(origin, destination, date, date);
+    }
+
+    /**
+     * Finds the flights on a route departing between two dates inclusive,
+     * ordered by departure. Only the matching flights are visited, through
+     * the system's {@link FlightIndex}.
+     *
+     * @param origin the origin, ignoring case, or null for any
+     * @param destination the destination, ignoring case, or null for any
+     * @param from the earliest departure date, or null for no lower bound
+     * @param to the latest departure date, or null for no upper bound
+     * @return the matching flights
+     */
+    public List<Flight> findFlights(String origin, String destination, LocalDate from, LocalDate to) {
+        return flightIndex.find(origin, destination, from, to);
+    }
+
+    /**
+     * Returns a live, read-only view of the flights that have not departed
+     * yet, in departure order. Departed flights drop out of the view as time
+     * passes, without the view being rebuilt.
+     *
+     * @return the upcoming flights
+     */
+    public Collection<Flight> getUpcomingFlights() {
+        return flightIndex.getDepartures().departingFrom(LocalDateTime.now());
+    }
+
+    /**
+     * Returns a live, read-only view of the flights departing at or after the
+     * given moment, in departure order.
+     *
+     * @param from the earliest departure
+     * @return the flights departing from then on
+     */
+    public Collection<Flight> getFlightsDepartingFrom(LocalDateTime from) {
+        return flightIndex.getDepartures().departingFrom(from);
+    }
+
+    /**
+     * Returns one page of the flights that have not departed yet, in
+     * departure order.
+     *
+     * @param offset the number of upcoming flights to skip
+     * @param limit the maximum number of flights to return
+     * @return the flights on the page
+     */
+    public List<Flight> getUpcomingFlights(int offset, int limit) {
+        return flightIndex.getDepartures().page(LocalDateTime.now(), offset, limit);
+    }
+
     /**
      * Retrieves a customer by their passport number.
      *
@@ -342,56 +754,120 @@ public class FlightBookingSystem {
      * @return the Customer object, or null if not found
      */
     public Customer getCustomerByPassportNumber(String passportNumber) {
-        return customersByPassport.get(passportNumber.toUpperCase()); // assuming passport numbers are case-insensitive
+        List<Customer> found = customerIndex.findByPassport(passportNumber); // passport numbers are case-insensitive
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * Searches customers by passport number, email address or phone number,
+     * or by the start of any word of their name, for type-ahead search.
+     *
+     * @param query the text typed by the user
+     * @param limit the maximum number of customers to return
+     * @return the matching customers, exact matches first
+     */
+    public List<Customer> searchCustomers(String query, int limit) {
+        return customerIndex.search(query, limit);
+    }
+
+    /**
+     * Returns the allocator that hands out this system's customer, flight
+     * and booking IDs.
+     *
+     * @return the ID allocator
+     */
+    public IdAllocator getIdAllocator() {
+        return ids;
     }
 
     /**
-     * Returns the next available customer ID.
+     * Returns the lookup index over this system's customers.
+     *
+     * @return the customer index
+     */
+    public CustomerIndex getCustomerIndex() {
+        return customerIndex;
+    }
+
+    /**
+     * Returns the customer ID the calling thread would be given next.
      *
      * @return next customer ID
      */
     public int getNextCustomerId() {
-        return nextCustomerId;
+        return ids.peek(IdAllocator.Kind.CUSTOMER);
     }
 
     /**
-     * Returns the next available flight ID.
+     * Returns the flight ID the calling thread would be given next.
      *
      * @return next flight ID
      */
     public int getNextFlightId() {
-        return nextFlightId;
+        return ids.peek(IdAllocator.Kind.FLIGHT);
     }
 
     /**
-     * Removes a customer from the internal customer map.
+     * Removes a customer and all of their bookings from the system, freeing
+     * the bookings' seats on their flights. Only the customer's own bookings
+     * are visited.
      *
      * @param customer the customer to remove
      */
     public void removeCustomer(Customer customer) {
-        customers.remove(customer.getId());
+        writeLock.lock();
+        try {
+            for (Booking booking : bookings.getByCustomer(customer.getId())) {
+                if (booking.getFlight() != null) {
+                    booking.getFlight().removeBooking(booking);
+                }
+                removeBooking(booking);
+            }
+            if (archive != null) {
+                archive.removeIf((id, flightId, status) -> id == customer.getId(), bookings::logRemoved);
+            }
+            if (customers.remove(customer.getId()) != null) {
+                customersRemoved = true;
+                detach(customer);
+            }
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
-     * Removes a booking from the internal bookings list.
+     * Removes a booking from the system and from its customer.
      *
      * @param booking the booking to remove
      */
     public void removeBooking(Booking booking) {
+        if (!bookings.contains(booking) && archive != null && archive.remove(booking.getBookingId())) {
+            // A copy of an archived booking, which takes over the archived booking's place for the caller to free
+            if (booking.getStatus() != Booking.Status.CANCELLED) {
+                booking.takePlace();
+            }
+            bookings.logRemoved(booking.getBookingId());
+            return;
+        }
+        booking.getCustomer().removeBooking(booking);
         bookings.remove(booking);
     }
 
     /**
-     * Cancels all bookings for a given customer ID.
+     * Removes all bookings of a given customer ID from the system.
      *
      * @param customerId the customer ID
      */
     public void cancelAllBookingsForCustomer(int customerId) {
-        bookings.removeIf(booking -> booking.getCustomer().getId() == customerId);
+        for (Booking booking : bookings.getByCustomer(customerId)) {
+            removeBooking(booking);
+        }
     }
 
     /**
-     * Adds a booking to the system's internal booking list.
+     * Registers a booking with the system. Bookings added to a customer of the
+     * system through {@link Customer#addBooking(Booking)} are registered
+     * already, so this is only needed for bookings created outside it.
      *
      * @param booking the booking to add
      */
@@ -399,25 +875,177 @@ public class FlightBookingSystem {
         bookings.add(booking);
     }
 
+    /**
+     * Removes a flight and all of its bookings from the system and from their
+     * customers. Only the flight's own bookings are visited.
+     *
+     * @param flight the flight to remove
+     */
     public void removeFlight(Flight flight) {
         if (flight == null) {
             return;
         }
-        
-        // Remove flight from flights map
-        flights.remove(flight.getId());
-        
-        // Remove all bookings associated with this flight from the system bookings list
-        bookings.removeIf(booking -> booking.getFlight().equals(flight));
-        
-        // Remove flight from each customer's booking list and the flight's passenger list
-        // We'll iterate over all customers and remove bookings related to this flight
-        for (Customer customer : customers.values()) {
-            // Remove bookings of this flight from customer's bookings
-            customer.getBookings().removeIf(booking -> booking.getFlight().equals(flight));
+
+        writeLock.lock();
+        try {
+            // Remove flight from flights map
+            if (flights.remove(flight.getId()) != null) {
+                flightsRemoved = true;
+            }
+
+            detach(flight);
+
+            // Remove all bookings of this flight from the system and their customers
+            for (Booking booking : bookings.getByFlight(flight.getId())) {
+                removeBooking(booking);
+            }
+            if (archive != null) {
+                archive.removeIf((customerId, id, status) -> id == flight.getId(), bookings::logRemoved);
+            }
+        } finally {
+            writeLock.unlock();
         }
-        
     }
 
+    /**
+     * Runs a read of the whole system, such as preparing a save, while no
+     * customer or flight is added or removed and no booking is placed or
+     * cancelled. The read may call the save-tracking methods and any query.
+     * It should not do disk I/O, since every booking waits for it.
+     *
+     * @param read the read to run
+     * @param <T> the result of the read
+     * @param <E> the exception the read may throw
+     * @return the result of the read
+     * @throws E if the read fails
+     */
+    public <T, E extends Exception> T readConsistently(ConsistentRead<T, E> read) throws E {
+        // The monitor first, as for restore(int), which takes the table lock inside it
+        synchronized (this) {
+            writeLock.lock();
+            try {
+                return read.read();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
 
+    /**
+     * A read of the whole system run by {@link #readConsistently(ConsistentRead)}.
+     *
+     * @param <T> the result of the read
+     * @param <E> the exception the read may throw
+     */
+    @FunctionalInterface
+    public interface ConsistentRead<T, E extends Exception> {
+
+        /**
+         * Reads the system.
+         *
+         * @return the result of the read
+         * @throws E if the read fails
+         */
+        T read() throws E;
+    }
+
+    /**
+     * Returns whether the flights file is out of date: a flight was added,
+     * edited or removed since the flights were last saved.
+     *
+     * @return true if the flights need to be saved
+     */
+    public synchronized boolean hasUnsavedFlightChanges() {
+        return flightsRemoved || bookings.hasFlightChanges();
+    }
+
+    /**
+     * Records that all flights have just been saved.
+     */
+    public synchronized void markFlightsSaved() {
+        flightsRemoved = false;
+        for (Flight flight : bookings.takeChangedFlights()) {
+            flight.markClean();
+        }
+    }
+
+    /**
+     * Returns whether the customers file is out of date: a customer was added,
+     * edited or removed since the customers were last saved.
+     *
+     * @return true if the customers need to be saved
+     */
+    public synchronized boolean hasUnsavedCustomerChanges() {
+        return customersRemoved || bookings.hasCustomerChanges();
+    }
+
+    /**
+     * Records that all customers have just been saved.
+     */
+    public synchronized void markCustomersSaved() {
+        customersRemoved = false;
+        for (Customer customer : bookings.takeChangedCustomers()) {
+            customer.markClean();
+        }
+    }
+
+    /**
+     * Returns whether a booking was added, edited or removed since it was
+     * last saved.
+     *
+     * @return true if there are booking changes to save
+     */
+    public synchronized boolean hasUnsavedBookingChanges() {
+        return bookings.hasBookingChanges();
+    }
+
+    /**
+     * Returns the bookings that were added or edited since they were last saved.
+     *
+     * @return the unsaved bookings, ordered by booking ID
+     */
+    public synchronized List<Booking> getUnsavedBookings() {
+        List<Booking> unsaved = bookings.getChangedBookings();
+        unsaved.sort(Comparator.comparingInt(Booking::getBookingId));
+        return unsaved;
+    }
+
+    /**
+     * Returns the IDs of saved bookings that no longer belong to any customer.
+     *
+     * @return the removed booking IDs, in ascending order
+     */
+    public synchronized List<Integer> getRemovedBookingIds() {
+        List<Integer> removed = bookings.getRemovedIds();
+        Collections.sort(removed);
+        return removed;
+    }
+
+    /**
+     * Records that a booking's current state has been saved.
+     *
+     * @param booking the saved booking
+     */
+    public synchronized void markBookingSaved(Booking booking) {
+        bookings.logSaved(booking);
+        booking.markClean();
+    }
+
+    /**
+     * Records that the removal of a booking has been saved.
+     *
+     * @param bookingId the ID of the removed booking
+     */
+    public synchronized void markBookingRemovalSaved(int bookingId) {
+        bookings.forgetRemoved(bookingId);
+    }
+
+    /**
+     * Records that all current bookings have just been saved.
+     */
+    public synchronized void markBookingsSaved() {
+        for (Booking booking : bookings.takeChangedBookings()) {
+            booking.markClean();
+        }
+    }
 }
@@ -0,0 +1,213 @@
+package bcu.cmp5332.bookingsystem.model;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Route and departure date index over the flights of a {@link FlightBookingSystem}.
+ * <p>
+ * Flights are grouped by the {@link SymbolTable} code of their origin, then of
+ * their destination, and
+ * within each route kept in a date-sorted {@link NavigableMap}. A search for a
+ * route, a route on a date or a route over a date range therefore only
+ * touches the flights that match; searches by origin or destination alone
+ * visit only the routes from or to that place, and a search by date alone
+ * uses a separate date-sorted map of every flight. A {@link DepartureIndex}
+ * orders the same flights by departure time for the upcoming flights views.
+ * </p>
+ * <p>
+ * Origins and destinations are compared ignoring case and surrounding
+ * spaces, as int codes. Flights added to the system report changes to their route and
+ * departure date, so the index never goes stale. All methods are
+ * synchronized; the {@link DepartureIndex} is a concurrent map of its own.
+ * </p>
+ *
+ * @author Ashok
+ */
+public class FlightIndex {
+
+    /** Order of search results: departure date and time, then flight ID. */
+    static final Comparator<Flight> DEPARTURE_ORDER = Comparator.comparing(Flight::getDepartureDate,
+                    Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Flight::getDepartureTime, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingInt(Flight::getId);
+
+    // origin code -> destination code -> departure date -> flights
+    private final Map<Integer, Map<Integer, NavigableMap<LocalDate, Set<Flight>>>> routes = new HashMap<>();
+    // destination code -> codes of origins with at least one flight there
+    private final Map<Integer, Set<Integer>> originsByDestination = new HashMap<>();
+    private final NavigableMap<LocalDate, Set<Flight>> byDate = new TreeMap<>();
+    private final DepartureIndex departures = new DepartureIndex();
+
+    /**
+     * Returns the departure time index of the same flights.
+     *
+     * @return the departure index
+     */
+    public DepartureIndex getDepartures() {
+        return departures;
+    }
+
+    /**
+     * Returns the flights matching every given criterion, ordered by departure.
+     * A null criterion matches every flight.
+     *
+     * @param origin the origin, ignoring case
+     * @param destination the destination, ignoring case
+     * @param from the earliest departure date
+     * @param to the latest departure date
+     * @return the matching flights
+     */
+    public synchronized List<Flight> find(String origin, String destination, LocalDate from, LocalDate to) {
+        List<Flight> result = new ArrayList<>();
+        if (from != null && to != null && from.isAfter(to)) {
+            return result;
+        }
+
+        if (origin == null && destination == null) {
+            collect(byDate, from, to, result);
+        } else if (origin != null) {
+            Map<Integer, NavigableMap<LocalDate, Set<Flight>>> fromOrigin = routes.get(code(origin));
+            if (fromOrigin == null) {
+                return result;
+            }
+            if (destination != null) {
+                NavigableMap<LocalDate, Set<Flight>> dates = fromOrigin.get(code(destination));
+                if (dates != null) {
+                    collect(dates, from, to, result);
+                }
+            } else {
+                for (NavigableMap<LocalDate, Set<Flight>> dates : fromOrigin.values()) {
+                    collect(dates, from, to, result);
+                }
+            }
+        } else {
+            int key = code(destination);
+            Set<Integer> origins = originsByDestination.get(key);
+            if (origins == null) {
+                return result;
+            }
+            for (int originKey : origins) {
+                collect(routes.get(originKey).get(key), from, to, result);
+            }
+        }
+        result.sort(DEPARTURE_ORDER);
+        return result;
+    }
+
+    /**
+     * Adds a flight to the index.
+     *
+     * @param flight the flight to add
+     */
+    synchronized void add(Flight flight) {
+        add(flight, flight.getOriginCode(), flight.getDestinationCode(), flight.getDepartureDate());
+        departures.add(flight);
+    }
+
+    /**
+     * Removes a flight from the index.
+     *
+     * @param flight the flight to remove
+     */
+    synchronized void remove(Flight flight) {
+        remove(flight, flight.getOriginCode(), flight.getDestinationCode(), flight.getDepartureDate());
+        departures.remove(flight);
+    }
+
+    /**
+     * Moves a flight whose origin, destination or departure has changed.
+     *
+     * @param flight the flight, already holding its new values
+     * @param oldOrigin the origin it was indexed under
+     * @param oldDestination the destination it was indexed under
+     * @param oldDate the departure date it was indexed under
+     * @param oldTime the departure time it was indexed under
+     */
+    synchronized void moved(Flight flight, Symbol oldOrigin, Symbol oldDestination, LocalDate oldDate, LocalTime oldTime) {
+        remove(flight, Symbol.codeOf(oldOrigin), Symbol.codeOf(oldDestination), oldDate);
+        add(flight, flight.getOriginCode(), flight.getDestinationCode(), flight.getDepartureDate());
+        departures.moved(flight, oldDate, oldTime);
+    }
+
+    private void add(Flight flight, int originKey, int destinationKey, LocalDate date) {
+        if (date == null) {
+            return;
+        }
+        byDate.computeIfAbsent(date, k -> new LinkedHashSet<>()).add(flight);
+        if (originKey == SymbolTable.NO_CODE || destinationKey == SymbolTable.NO_CODE) {
+            return;
+        }
+        routes.computeIfAbsent(originKey, k -> new HashMap<>())
+                .computeIfAbsent(destinationKey, k -> new TreeMap<>())
+                .computeIfAbsent(date, k -> new LinkedHashSet<>())
+                .add(flight);
+        originsByDestination.computeIfAbsent(destinationKey, k -> new LinkedHashSet<>()).add(originKey);
+    }
+
+    private void remove(Flight flight, int originKey, int destinationKey, LocalDate date) {
+        if (date == null) {
+            return;
+        }
+        removeFrom(byDate, date, flight);
+        if (originKey == SymbolTable.NO_CODE || destinationKey == SymbolTable.NO_CODE) {
+            return;
+        }
+        Map<Integer, NavigableMap<LocalDate, Set<Flight>>> fromOrigin = routes.get(originKey);
+        if (fromOrigin == null) {
+            return;
+        }
+        NavigableMap<LocalDate, Set<Flight>> dates = fromOrigin.get(destinationKey);
+        if (dates == null) {
+            return;
+        }
+        removeFrom(dates, date, flight);
+        if (dates.isEmpty()) {
+            fromOrigin.remove(destinationKey);
+            Set<Integer> origins = originsByDestination.get(destinationKey);
+            origins.remove(originKey);
+            if (origins.isEmpty()) {
+                originsByDestination.remove(destinationKey);
+            }
+            if (fromOrigin.isEmpty()) {
+                routes.remove(originKey);
+            }
+        }
+    }
+
+    private static void removeFrom(NavigableMap<LocalDate, Set<Flight>> dates, LocalDate date, Flight flight) {
+        Set<Flight> flights = dates.get(date);
+        if (flights != null && flights.remove(flight) && flights.isEmpty()) {
+            dates.remove(date);
+        }
+    }
+
+    private static void collect(NavigableMap<LocalDate, Set<Flight>> dates, LocalDate from, LocalDate to,
+                                List<Flight> result) {
+        NavigableMap<LocalDate, Set<Flight>> range = dates;
+        if (from != null && to != null) {
+            range = dates.subMap(from, true, to, true);
+        } else if (from != null) {
+            range = dates.tailMap(from, true);
+        } else if (to != null) {
+            range = dates.headMap(to, true);
+        }
+        for (Collection<Flight> flights : range.values()) {
+            result.addAll(flights);
+        }
+    }
+
+    private static int code(String place) {
+        return SymbolTable.getInstance().find(place);
+    }
+}
@@ -0,0 +1,146 @@
+package bcu.cmp5332.bookingsystem.model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timer wheel that expires {@link SeatHold}s.
+ * <p>
+ * Time is cut into ticks of {@link #TICK_MILLIS}, and the wheel has
+ * {@link #WHEEL_SIZE} buckets, one per tick, reused every turn. A hold goes
+ * into the bucket of the tick it is due in, with a count of the whole turns
+ * left before then. Each tick the timer thread visits one bucket: due holds
+ * are expired and the others have their count lowered. Scheduling and
+ * expiring a hold are O(1) and the cost of a tick depends only on the holds
+ * in its bucket, so thousands of holds cost no more than a sorted queue of
+ * them would, without its O(log n) inserts or a lock shared by every agent.
+ * </p>
+ * <p>
+ * Agents add holds to a lock-free queue that the timer thread moves into the
+ * buckets at the start of each tick; only that thread touches the buckets.
+ * Released and confirmed holds are not removed from their bucket but skipped
+ * when it comes round. Holds expire up to one tick late, never early. The
+ * thread is a daemon started with the first hold.
+ * </p>
+ *
+ * @author Ashok
+ */
+final class HoldTimer {
+
+    /** Length of a tick, and the precision of expiry. */
+    static final long TICK_MILLIS = 100;
+
+    /** Number of buckets; one turn of the wheel covers this many ticks. */
+    static final int WHEEL_SIZE = 512;
+
+    private static final HoldTimer SHARED = new HoldTimer(TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS), WHEEL_SIZE);
+
+    private final long tickNanos;
+    private final List<List<SeatHold>> buckets;
+    private final Queue<SeatHold> incoming = new ConcurrentLinkedQueue<>();
+    private final long startNanos = System.nanoTime();
+    // Next tick to process; used only by the timer thread
+    private long tick;
+    private volatile Thread worker;
+
+    HoldTimer(long tickNanos, int wheelSize) {
+        this.tickNanos = tickNanos;
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Returns the timer shared by all flights.
+     *
+     * @return the shared timer
+     */
+    static HoldTimer shared() {
+        return SHARED;
+    }
+
+    /**
+     * Schedules a hold to expire at its expiry time unless it ends first.
+     *
+     * @param hold the new hold
+     */
+    void schedule(SeatHold hold) {
+        incoming.add(hold);
+        if (worker == null) {
+            start();
+        }
+    }
+
+    private synchronized void start() {
+        if (worker == null) {
+            Thread thread = new Thread(this::run, "seat-hold-timer");
+            thread.setDaemon(true);
+            thread.start();
+            worker = thread;
+        }
+    }
+
+    private void run() {
+        while (true) {
+            long wait = startNanos + (tick + 1) * tickNanos - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+            advance(System.nanoTime());
+        }
+    }
+
+    /**
+     * Processes every tick that has ended by the given time, expiring the
+     * holds that are due. Must only be called from one thread at a time.
+     *
+     * @param now the current {@link System#nanoTime()}
+     * @return the number of holds expired
+     */
+    int advance(long now) {
+        int expired = 0;
+        while (startNanos + (tick + 1) * tickNanos <= now) {
+            transferIncoming();
+            Iterator<SeatHold> holds = buckets.get((int) (tick % buckets.size())).iterator();
+            while (holds.hasNext()) {
+                SeatHold hold = holds.next();
+                if (!hold.isActive()) {
+                    holds.remove();
+                } else if (hold.rounds > 0) {
+                    hold.rounds--;
+                } else {
+                    holds.remove();
+                    if (hold.getFlight().expireHold(hold)) {
+                        expired++;
+                    }
+                }
+            }
+            tick++;
+        }
+        return expired;
+    }
+
+    private void transferIncoming() {
+        SeatHold hold;
+        while ((hold = incoming.poll()) != null) {
+            if (!hold.isActive()) {
+                continue;
+            }
+            // The tick whose end is the first at or after the expiry time, or this one if that has passed
+            long due = Math.max(tick, ceilDiv(hold.getExpiresAtNanos() - startNanos, tickNanos) - 1);
+            hold.rounds = (due - tick) / buckets.size();
+            buckets.get((int) (due % buckets.size())).add(hold);
+        }
+    }
+
+    private static long ceilDiv(long a, long b) {
+        return -Math.floorDiv(-a, b);
+    }
+}
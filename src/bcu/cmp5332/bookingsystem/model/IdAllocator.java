@@ -0,0 +1,151 @@
+package bcu.cmp5332.bookingsystem.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Hands out the customer, flight and booking IDs of a {@link FlightBookingSystem}.
+ * <p>
+ * Each kind of ID has an atomic high-water mark: no ID at or above it has
+ * been handed out. A thread does not take IDs from the mark one at a time;
+ * it leases a block of {@link #BLOCK_SIZE} IDs with a single atomic add and
+ * then hands them out from a thread-local lease without touching any shared
+ * state, so threads allocating at once never contend except when one of
+ * them starts a new block.
+ * </p>
+ * <p>
+ * IDs that were not allocated here, such as those of loaded data, are
+ * reported with {@link #observe(Kind, int)}, which raises the mark above
+ * them. An observed ID below the mark is assumed to have been handed out
+ * already. The mark is saved with the data and restored with
+ * {@link #restore(Kind, int)}, so the IDs of removed entities are not
+ * handed out again after a restart. IDs left over in a lease are never
+ * handed out, so the IDs of a system have gaps of up to one block for each
+ * thread and session.
+ * </p>
+ *
+ * @author Ashok
+ */
+public class IdAllocator {
+
+    /** The kinds of ID, each allocated independently. */
+    public enum Kind {
+        CUSTOMER,
+        FLIGHT,
+        BOOKING
+    }
+
+    /** The number of IDs a thread leases at a time. */
+    public static final int BLOCK_SIZE = 32;
+
+    private static final Kind[] KINDS = Kind.values();
+
+    // One counter object per kind, so the kinds do not share a cache line
+    private final AtomicInteger[] highWater = new AtomicInteger[KINDS.length];
+    private final AtomicIntegerArray saved = new AtomicIntegerArray(KINDS.length);
+    // Per thread: the next ID and the end of the leased block of each kind
+    private final ThreadLocal<int[]> leases = ThreadLocal.withInitial(() -> new int[KINDS.length * 2]);
+
+    /**
+     * Creates an allocator whose IDs all start at 1.
+     */
+    public IdAllocator() {
+        for (Kind kind : KINDS) {
+            highWater[kind.ordinal()] = new AtomicInteger(1);
+            saved.set(kind.ordinal(), 1);
+        }
+    }
+
+    /**
+     * Returns a new ID of the given kind, never handed out before.
+     *
+     * @param kind the kind of ID
+     * @return the new ID
+     */
+    public int next(Kind kind) {
+        int[] lease = leases.get();
+        int slot = kind.ordinal() * 2;
+        if (lease[slot] >= lease[slot + 1]) {
+            int start = highWater[kind.ordinal()].getAndAdd(BLOCK_SIZE);
+            lease[slot] = start;
+            lease[slot + 1] = start + BLOCK_SIZE;
+        }
+        return lease[slot]++;
+    }
+
+    /**
+     * Returns the ID the calling thread would get from {@link #next(Kind)},
+     * without taking it. Another thread may take the same ID first only if
+     * the calling thread has no lease yet.
+     *
+     * @param kind the kind of ID
+     * @return the next ID for this thread
+     */
+    public int peek(Kind kind) {
+        int[] lease = leases.get();
+        int slot = kind.ordinal() * 2;
+        return lease[slot] < lease[slot + 1] ? lease[slot] : highWater[kind.ordinal()].get();
+    }
+
+    /**
+     * Records an ID allocated elsewhere, so that it is never handed out.
+     *
+     * @param kind the kind of ID
+     * @param id the ID in use
+     */
+    public void observe(Kind kind, int id) {
+        AtomicInteger mark = highWater[kind.ordinal()];
+        // Only write when the mark moves, so observing known IDs stays contention-free
+        if (id >= mark.get()) {
+            mark.accumulateAndGet(id + 1, Math::max);
+        }
+    }
+
+    /**
+     * Restores a high-water mark saved by an earlier session. A mark below
+     * the current one has no effect.
+     *
+     * @param kind the kind of ID
+     * @param mark the saved mark
+     */
+    public void restore(Kind kind, int mark) {
+        observe(kind, mark - 1);
+        saved.accumulateAndGet(kind.ordinal(), mark, Math::max);
+    }
+
+    /**
+     * Returns the high-water mark of a kind of ID: every ID handed out or
+     * leased so far is below it.
+     *
+     * @param kind the kind of ID
+     * @return the high-water mark
+     */
+    public int getHighWater(Kind kind) {
+        return highWater[kind.ordinal()].get();
+    }
+
+    /**
+     * Returns whether any high-water mark has moved since it was last saved
+     * or restored.
+     *
+     * @return true if the marks need to be saved
+     */
+    public boolean hasUnsavedChanges() {
+        for (Kind kind : KINDS) {
+            if (getHighWater(kind) != saved.get(kind.ordinal())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records that a high-water mark has been saved.
+     *
+     * @param kind the kind of ID
+     * @param mark the mark that was saved
+     */
+    public void markSaved(Kind kind, int mark) {
+        saved.set(kind.ordinal(), mark);
+    }
+}
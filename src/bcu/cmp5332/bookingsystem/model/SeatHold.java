@@ -0,0 +1,96 @@
+package bcu.cmp5332.bookingsystem.model;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A seat kept for one agent for a limited time while a booking is completed.
+ * <p>
+ * A hold is taken with {@link Flight#holdSeat(Booking.SeatClass, String, java.time.Duration)}.
+ * Until it ends, its seat and a place in its cabin count as booked, so no
+ * other agent can book or hold them. It ends in exactly one of three ways:
+ * it is confirmed by placing a booking for the seat with
+ * {@link FlightBookingSystem#placeBooking(Booking, SeatHold)}, it is released
+ * with {@link Flight#releaseHold(SeatHold)}, or it expires and the
+ * {@link HoldTimer} gives the seat back. The end is decided by an atomic
+ * status change, so a hold that expires while it is being confirmed either
+ * becomes the booking or frees its seat, never both.
+ * </p>
+ *
+ * @author Ashok
+ */
+public class SeatHold {
+
+    /** The state of a hold. */
+    public enum Status {
+        HELD,
+        CONFIRMED,
+        RELEASED,
+        EXPIRED
+    }
+
+    private final Flight flight;
+    private final Booking.SeatClass seatClass;
+    private final String seatNumber;
+    private final long expiresAtNanos;
+    private final AtomicReference<Status> status = new AtomicReference<>(Status.HELD);
+    // Wheel turns left before the hold is due; used only by the timer thread
+    long rounds;
+
+    SeatHold(Flight flight, Booking.SeatClass seatClass, String seatNumber, long expiresAtNanos) {
+        this.flight = flight;
+        this.seatClass = seatClass;
+        this.seatNumber = seatNumber;
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    /** Returns the flight the seat is held on. */
+    public Flight getFlight() {
+        return flight;
+    }
+
+    /** Returns the cabin the seat is held in. */
+    public Booking.SeatClass getSeatClass() {
+        return seatClass;
+    }
+
+    /** Returns the held seat number, or null if only a place in the cabin is held. */
+    public String getSeatNumber() {
+        return seatNumber;
+    }
+
+    /** Returns the state of the hold. */
+    public Status getStatus() {
+        return status.get();
+    }
+
+    /** Returns true while the seat is still held. */
+    public boolean isActive() {
+        return status.get() == Status.HELD;
+    }
+
+    /**
+     * Returns how long the hold has left before it expires, or zero if it
+     * is due. A due hold stays active until the timer expires it, which is
+     * at most one timer tick later.
+     *
+     * @return the remaining time in milliseconds
+     */
+    public long getRemainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime()));
+    }
+
+    long getExpiresAtNanos() {
+        return expiresAtNanos;
+    }
+
+    /**
+     * Ends an active hold.
+     *
+     * @param end the state the hold ends in
+     * @return true if the hold was active and this call ended it
+     */
+    boolean end(Status end) {
+        return status.compareAndSet(Status.HELD, end);
+    }
+}
@@ -0,0 +1,448 @@
+package bcu.cmp5332.bookingsystem.model;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Seat inventory of one cabin of a {@link Flight}.
+ * <p>
+ * The cabin is laid out as rows of lettered seats, row 1 first, and a seat
+ * number such as {@code "12C"} is encoded as the small int
+ * {@code (row - 1) * letters + letter}. Only the first {@code capacity} seats of
+ * the layout exist, so the last row may be partly filled. Occupied seats are
+ * the set bits of an atomic bitmap, one {@link AtomicLong} per 64 seats, so
+ * checking, reserving and releasing a seat costs a parse and a bit operation,
+ * and the next free seat and the seat map are read straight from the bits
+ * without allocating.
+ * </p>
+ * <p>
+ * The inventory is lock-free. The number of places taken is an atomic
+ * counter, and {@link #tryReserve(String)} takes a place and a seat in one
+ * step: it claims a place by compare-and-set against the capacity, then the
+ * seat's bit by compare-and-set, and gives the place back if the seat was
+ * taken meanwhile. Concurrent bookings on the same cabin therefore never
+ * overbook it or share a seat, and never wait for each other. Growing the
+ * cabin copies references to the bitmap words rather than their bits, so no
+ * concurrent reservation is lost.
+ * </p>
+ * <p>
+ * Seat numbers that do not fit the layout, such as those stored before
+ * layouts existed, are still accepted and kept by name in a small set that is
+ * only created when first needed. Bookings without a seat number take a place
+ * in the cabin without occupying a seat.
+ * </p>
+ *
+ * @author Ashok
+ */
+public class SeatInventory {
+
+    private final String letters;
+    // Bit (seat & 63) of words[seat >>> 6] is set when the seat is occupied
+    private volatile AtomicLong[] words;
+    private volatile Set<String> unmapped;
+    // Places taken: occupied and unmapped seats plus bookings without a seat
+    private final AtomicInteger booked = new AtomicInteger();
+    private final AtomicInteger unseated = new AtomicInteger();
+    private volatile int capacity;
+
+    /**
+     * Creates an empty cabin.
+     *
+     * @param letters the seat letters of each row, in order, e.g. {@code "ABCDEF"}
+     * @param capacity the number of seats in the cabin
+     */
+    public SeatInventory(String letters, int capacity) {
+        if (letters == null || letters.isEmpty()) {
+            throw new IllegalArgumentException("A cabin needs at least one seat letter.");
+        }
+        this.letters = letters;
+        this.capacity = Math.max(0, capacity);
+        this.words = grow(new AtomicLong[0], this.capacity);
+    }
+
+    /**
+     * Creates an empty cabin with the standard layout of a seat class:
+     * six seats a row in economy, four in business and two in first class.
+     *
+     * @param seatClass the seat class
+     * @param capacity the number of seats in the cabin
+     * @return the new cabin
+     */
+    public static SeatInventory forClass(Booking.SeatClass seatClass, int capacity) {
+        switch (seatClass) {
+            case FIRST:
+                return new SeatInventory("AB", capacity);
+            case BUSINESS:
+                return new SeatInventory("ABCD", capacity);
+            default:
+                return new SeatInventory("ABCDEF", capacity);
+        }
+    }
+
+    public String getLetters() {
+        return letters;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of rows in the layout, counting a partly filled last row.
+     *
+     * @return the number of rows
+     */
+    public int getRows() {
+        return (capacity + letters.length() - 1) / letters.length();
+    }
+
+    /**
+     * Changes the number of seats in the cabin. Occupied seats that no longer
+     * exist are kept as unmapped seat numbers, so they are still counted and
+     * can still be released. Capacity changes are serialized with each other
+     * but do not block reservations.
+     *
+     * @param capacity the new number of seats
+     */
+    public synchronized void setCapacity(int capacity) {
+        capacity = Math.max(0, capacity);
+        if (capacity > this.capacity) {
+            // Publish the words before the capacity that makes them reachable
+            words = grow(words, capacity);
+            this.capacity = capacity;
+            return;
+        }
+        this.capacity = capacity;
+        AtomicLong[] current = words;
+        for (int seat = capacity; seat < current.length * 64; seat++) {
+            unmap(current, seat);
+        }
+    }
+
+    /**
+     * Returns the number of places taken: occupied seats, unmapped seats and
+     * bookings without a seat number.
+     *
+     * @return the number of booked places
+     */
+    public int getBooked() {
+        return booked.get();
+    }
+
+    /**
+     * Returns the number of places still free, never less than zero.
+     *
+     * @return the number of available places
+     */
+    public int getAvailable() {
+        return Math.max(0, capacity - getBooked());
+    }
+
+    /**
+     * Returns whether a seat number is free. Blank seat numbers are always free.
+     *
+     * @param seatNumber the seat number, e.g. {@code "12C"}
+     * @return true if no one holds the seat
+     */
+    public boolean isFree(String seatNumber) {
+        if (isBlank(seatNumber)) {
+            return true;
+        }
+        int seat = encode(seatNumber);
+        if (seat >= 0) {
+            return !isSet(words, seat);
+        }
+        Set<String> unmapped = this.unmapped;
+        return unmapped == null || !unmapped.contains(seatNumber.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Returns whether a seat of the layout is occupied.
+     *
+     * @param row the row, from 1
+     * @param letterIndex the position of the seat letter in the row, from 0
+     * @return true if the seat is occupied
+     */
+    public boolean isOccupied(int row, int letterIndex) {
+        int seat = (row - 1) * letters.length() + letterIndex;
+        return row >= 1 && letterIndex >= 0 && letterIndex < letters.length() && seat < capacity
+                && isSet(words, seat);
+    }
+
+    /**
+     * Takes a place in the cabin and, unless the seat number is blank, that
+     * seat, as one lock-free step. Fails without changing anything if the
+     * cabin is full or the seat is already taken.
+     *
+     * @param seatNumber the seat number, or null for a booking without a seat
+     * @return true if the place and seat were taken
+     */
+    public boolean tryReserve(String seatNumber) {
+        int taken;
+        do {
+            taken = booked.get();
+            if (taken >= capacity) {
+                return false;
+            }
+        } while (!booked.compareAndSet(taken, taken + 1));
+
+        if (isBlank(seatNumber)) {
+            unseated.incrementAndGet();
+            return true;
+        }
+        if (!occupy(seatNumber)) {
+            booked.decrementAndGet();  // the seat was taken meanwhile
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Marks a seat number as occupied, even beyond the capacity, as when
+     * loading stored bookings. Blank seat numbers are ignored.
+     *
+     * @param seatNumber the seat number
+     * @return true if the seat was free before
+     */
+    public boolean reserve(String seatNumber) {
+        if (isBlank(seatNumber)) {
+            return false;
+        }
+        if (occupy(seatNumber)) {
+            booked.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Frees a seat number. Blank seat numbers are ignored.
+     *
+     * @param seatNumber the seat number
+     * @return true if the seat was occupied before
+     */
+    public boolean release(String seatNumber) {
+        if (isBlank(seatNumber)) {
+            return false;
+        }
+        int seat = encode(seatNumber);
+        boolean held;
+        if (seat >= 0) {
+            held = clear(words, seat);
+            if (!held && seat >= capacity) {
+                // Moved to the unmapped seats by a concurrent capacity change
+                held = removeUnmapped(seatName(seat));
+            }
+        } else {
+            held = removeUnmapped(seatNumber.trim().toUpperCase(Locale.ROOT));
+        }
+        if (held) {
+            booked.decrementAndGet();
+        }
+        return held;
+    }
+
+    /** Takes a place for a booking without a seat number. */
+    public void addUnseated() {
+        unseated.incrementAndGet();
+        booked.incrementAndGet();
+    }
+
+    /** Gives back a place taken by a booking without a seat number. */
+    public void removeUnseated() {
+        int count;
+        do {
+            count = unseated.get();
+            if (count == 0) {
+                return;
+            }
+        } while (!unseated.compareAndSet(count, count - 1));
+        booked.decrementAndGet();
+    }
+
+    /**
+     * Returns the lowest free seat of the layout.
+     *
+     * @return the seat number, or null if every seat is occupied
+     */
+    public String nextFreeSeat() {
+        AtomicLong[] current = words;
+        int capacity = this.capacity;
+        for (int w = 0; w < current.length && w * 64 < capacity; w++) {
+            long free = ~current[w].get();
+            if (free != 0) {
+                int seat = w * 64 + Long.numberOfTrailingZeros(free);
+                return seat < capacity ? seatName(seat) : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the seat map, one line per row starting with the row number,
+     * with free seats shown by their letter and occupied seats by {@code X}.
+     *
+     * @return the seat map
+     */
+    public String getSeatMap() {
+        StringBuilder map = new StringBuilder();
+        AtomicLong[] current = words;
+        int capacity = Math.min(this.capacity, current.length * 64);
+        int width = letters.length();
+        for (int row = 1, seat = 0; seat < capacity; row++) {
+            map.append(String.format("%3d ", row));
+            for (int i = 0; i < width && seat < capacity; i++, seat++) {
+                map.append(isSet(current, seat) ? 'X' : letters.charAt(i));
+            }
+            map.append('\n');
+        }
+        return map.toString();
+    }
+
+    /**
+     * Encodes a seat number such as {@code "12C"} as its position in the
+     * layout, ignoring case and surrounding spaces.
+     *
+     * @param seatNumber the seat number
+     * @return the seat position, or -1 if the seat number is not in the layout
+     */
+    public int encode(String seatNumber) {
+        if (seatNumber == null) {
+            return -1;
+        }
+        int end = seatNumber.length();
+        while (end > 0 && Character.isWhitespace(seatNumber.charAt(end - 1))) {
+            end--;
+        }
+        int start = 0;
+        while (start < end && Character.isWhitespace(seatNumber.charAt(start))) {
+            start++;
+        }
+        if (end - start < 2) {
+            return -1;
+        }
+        int letter = letters.indexOf(Character.toUpperCase(seatNumber.charAt(end - 1)));
+        if (letter < 0) {
+            return -1;
+        }
+        int row = 0;
+        for (int i = start; i < end - 1; i++) {
+            char c = seatNumber.charAt(i);
+            if (c < '0' || c > '9' || row > capacity) {
+                return -1;
+            }
+            row = row * 10 + (c - '0');
+        }
+        int seat = (row - 1) * letters.length() + letter;
+        return row >= 1 && seat < capacity ? seat : -1;
+    }
+
+    /**
+     * Returns the seat number of a position in the layout.
+     *
+     * @param seat the seat position
+     * @return the seat number, e.g. {@code "12C"}
+     */
+    public String seatName(int seat) {
+        return (seat / letters.length() + 1) + String.valueOf(letters.charAt(seat % letters.length()));
+    }
+
+    /** Sets a seat's bit, or adds an unmapped seat number; true if it was free. */
+    private boolean occupy(String seatNumber) {
+        int seat = encode(seatNumber);
+        if (seat < 0) {
+            return unmapped().add(seatNumber.trim().toUpperCase(Locale.ROOT));
+        }
+        AtomicLong[] current = words;
+        if (!set(current, seat)) {
+            return false;
+        }
+        if (seat >= capacity) {
+            // The cabin shrank meanwhile; keep the seat as an unmapped number
+            unmap(current, seat);
+        }
+        return true;
+    }
+
+    /** Moves an occupied seat beyond the capacity to the unmapped seat numbers. */
+    private void unmap(AtomicLong[] current, int seat) {
+        if (seat >>> 6 < current.length && clear(current, seat)) {
+            unmapped().add(seatName(seat));
+        }
+    }
+
+    private boolean removeUnmapped(String seatNumber) {
+        Set<String> unmapped = this.unmapped;
+        return unmapped != null && unmapped.remove(seatNumber);
+    }
+
+    private Set<String> unmapped() {
+        Set<String> set = unmapped;
+        if (set == null) {
+            synchronized (this) {
+                set = unmapped;
+                if (set == null) {
+                    set = ConcurrentHashMap.newKeySet();
+                    unmapped = set;
+                }
+            }
+        }
+        return set;
+    }
+
+    private static boolean isSet(AtomicLong[] words, int seat) {
+        return seat >>> 6 < words.length && (words[seat >>> 6].get() & (1L << seat)) != 0;
+    }
+
+    /** Sets a bit by compare-and-set; true if this call set it. */
+    private static boolean set(AtomicLong[] words, int seat) {
+        AtomicLong word = words[seat >>> 6];
+        long bit = 1L << seat;
+        long old;
+        do {
+            old = word.get();
+            if ((old & bit) != 0) {
+                return false;
+            }
+        } while (!word.compareAndSet(old, old | bit));
+        return true;
+    }
+
+    /** Clears a bit by compare-and-set; true if this call cleared it. */
+    private static boolean clear(AtomicLong[] words, int seat) {
+        if (seat >>> 6 >= words.length) {
+            return false;
+        }
+        AtomicLong word = words[seat >>> 6];
+        long bit = 1L << seat;
+        long old;
+        do {
+            old = word.get();
+            if ((old & bit) == 0) {
+                return false;
+            }
+        } while (!word.compareAndSet(old, old & ~bit));
+        return true;
+    }
+
+    /** Returns bitmap words covering a capacity, sharing the existing words. */
+    private static AtomicLong[] grow(AtomicLong[] words, int capacity) {
+        int needed = (capacity + 63) >>> 6;
+        if (needed <= words.length) {
+            return words;
+        }
+        AtomicLong[] grown = new AtomicLong[needed];
+        System.arraycopy(words, 0, grown, 0, words.length);
+        for (int i = words.length; i < needed; i++) {
+            grown[i] = new AtomicLong();
+        }
+        return grown;
+    }
+
+    private static boolean isBlank(String seatNumber) {
+        return seatNumber == null || seatNumber.trim().isEmpty();
+    }
+}
@@ -0,0 +1,78 @@
+package bcu.cmp5332.bookingsystem.model;
+
+/**
+ * A canonical name held in the {@link SymbolTable}, such as an airport,
+ * airline or country.
+ * <p>
+ * Each distinct spelling has exactly one Symbol instance, so the text is
+ * stored once however many flights or customers use it. Spellings that
+ * differ only in case or surrounding spaces ("Kathmandu", "kathmandu ")
+ * share the same integer code, so comparing two names ignoring case is a
+ * single int comparison.
+ * </p>
+ *
+ * @author Ashok
+ */
+public final class Symbol {
+
+    private final String text;
+    private final int code;
+
+    Symbol(String text, int code) {
+        this.text = text;
+        this.code = code;
+    }
+
+    /**
+     * Returns the name as it was spelled.
+     *
+     * @return the text of the symbol
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the code shared by every spelling of this name.
+     *
+     * @return the case-insensitive code of the symbol
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Returns whether the other symbol names the same thing, ignoring case.
+     *
+     * @param other the symbol to compare with, may be null
+     * @return true if both symbols have the same code
+     */
+    public boolean sameAs(Symbol other) {
+        return other != null && other.code == code;
+    }
+
+    /**
+     * Returns the code of a possibly missing symbol.
+     *
+     * @param symbol the symbol, may be null
+     * @return the symbol's code, or {@link SymbolTable#NO_CODE} if it is null
+     */
+    static int codeOf(Symbol symbol) {
+        return symbol == null ? SymbolTable.NO_CODE : symbol.code;
+    }
+
+    /**
+     * Returns the text of a possibly missing symbol.
+     *
+     * @param symbol the symbol, may be null
+     * @return the symbol's text, or null if it is null
+     */
+    static String textOf(Symbol symbol) {
+        return symbol == null ? null : symbol.text;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,127 @@
+package bcu.cmp5332.bookingsystem.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of the airport, airline and country names used by flights and
+ * customers.
+ * <p>
+ * Names are interned: every spelling maps to one shared {@link Symbol}, and
+ * every name, after trimming and upper-casing, to one integer code. Large
+ * flight and customer tables therefore hold a single copy of each name, and
+ * case-insensitive comparisons and index lookups work on ints instead of
+ * strings.
+ * </p>
+ * <p>
+ * There is one table for the whole application. Interning is thread-safe, so
+ * the data loaders can intern from several threads at once; lookups of names
+ * that are already known take no lock.
+ * </p>
+ *
+ * @author Ashok
+ */
+public final class SymbolTable {
+
+    /** Code returned for names that are missing or not in the table. */
+    public static final int NO_CODE = -1;
+
+    private static final SymbolTable INSTANCE = new SymbolTable();
+
+    private final Map<String, Symbol> bySpelling = new ConcurrentHashMap<>();
+    // Guarded by this: normalised name -> code, and code -> normalised name
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    private SymbolTable() {
+    }
+
+    /**
+     * Returns the table shared by the whole application.
+     *
+     * @return the symbol table
+     */
+    public static SymbolTable getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the symbol for a name, adding it if it is new.
+     *
+     * @param text the name as spelled
+     * @return the shared symbol for that spelling, or null if the name is null
+     */
+    public Symbol intern(String text) {
+        if (text == null) {
+            return null;
+        }
+        Symbol symbol = bySpelling.get(text);
+        if (symbol != null) {
+            return symbol;
+        }
+        synchronized (this) {
+            symbol = bySpelling.get(text);
+            if (symbol == null) {
+                String name = normalise(text);
+                Integer code = codes.get(name);
+                if (code == null) {
+                    code = names.size();
+                    codes.put(name, code);
+                    names.add(name);
+                }
+                // Keep the map key and the symbol on the same String instance
+                symbol = new Symbol(text, code);
+                bySpelling.put(text, symbol);
+            }
+            return symbol;
+        }
+    }
+
+    /**
+     * Returns the code of a name without adding it, e.g. for a search term.
+     *
+     * @param text the name, in any case
+     * @return the name's code, or {@link #NO_CODE} if no flight or customer uses it
+     */
+    public int find(String text) {
+        if (text == null) {
+            return NO_CODE;
+        }
+        Symbol symbol = bySpelling.get(text);
+        if (symbol != null) {
+            return symbol.getCode();
+        }
+        synchronized (this) {
+            Integer code = codes.get(normalise(text));
+            return code == null ? NO_CODE : code;
+        }
+    }
+
+    /**
+     * Returns the normalised form of the name with the given code.
+     *
+     * @param code the code
+     * @return the trimmed, upper-case name
+     * @throws IndexOutOfBoundsException if no name has that code
+     */
+    public synchronized String name(int code) {
+        return names.get(code);
+    }
+
+    /**
+     * Returns the number of distinct names, ignoring case.
+     *
+     * @return the number of codes handed out
+     */
+    public synchronized int size() {
+        return names.size();
+    }
+
+    private static String normalise(String text) {
+        return text.trim().toUpperCase(Locale.ROOT);
+    }
+}